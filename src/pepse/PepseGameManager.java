@@ -9,19 +9,44 @@ import danogl.gui.UserInputListener;
 import danogl.gui.WindowController;
 import danogl.gui.rendering.Camera;
 import danogl.util.Vector2;
+import pepse.util.input.FrameInput;
+import pepse.util.input.InputRecorder;
+import pepse.util.input.InputReplay;
+import pepse.util.input.LiveInput;
+import pepse.util.memory.MemoryBudget;
+import pepse.util.profiling.FrameUpdateEvent;
 import pepse.world.*;
+import pepse.world.creatures.Creatures;
+import pepse.world.events.WorldEvents;
+import pepse.world.daynight.DayPhase;
 import pepse.world.daynight.Night;
 import pepse.world.daynight.Sun;
 import pepse.world.daynight.SunHalo;
+import pepse.world.hud.*;
+import pepse.world.infiniteworld.AdaptiveLoadWindow;
 import pepse.world.infiniteworld.GroundHeightAt;
 import pepse.world.infiniteworld.Scrollable;
+import pepse.world.pickups.PickupSystem;
 import pepse.world.trees.Flora;
 import pepse.world.trees.Tree;
+import pepse.world.water.Water;
+import pepse.world.weather.Weather;
 
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.event.KeyEvent;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import java.util.function.Supplier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class of the game.
@@ -29,7 +54,7 @@ import java.util.function.Supplier;
  * It extends the GameManager class from the danogl library.
  * The game is a side-scrolling platformer where the player controls an avatar that can move and jump.
  * The game features a procedurally generated terrain, trees, and a day-night cycle.
- * The game also features an energy bar that depletes over time and can be replenished by collecting fruits from trees.
+ * The game also features a HUD showing the avatar's energy, which depletes over time and can be replenished by collecting fruits from trees.
  * note that this is more of a simulation than a game, as there are no win or lose conditions.
  * @see GameManager
  * @see Terrain
@@ -46,24 +71,115 @@ public class PepseGameManager extends GameManager {
     public final static int GAME_BLOCK_SIZE = 30;// Top-left corner, adjust as needed
 
     private static final int SEED = 5;
+    private static final String RECORD_FLAG = "--record";
+    private static final String REPLAY_FLAG = "--replay";
+    private static final String PRERENDER_FLAG = "--prerender";
+    private static final String WORLD_FLAG = "--world";
+    private static final String MEMORY_BUDGET_FLAG = "--memory-budget";
+    private static final String LOAD_FLAG = "--load";
+    private static final String SAVE_FLAG = "--save";
+    private static final long DEFAULT_MEMORY_BUDGET_MB = 64;
+    private static final int CREATURE_COUNT = 48;
+    private static final float MINIMAP_MARGIN = 20;
+    private static final Vector2 HUD_POSITION = new Vector2(20, 20);
+    private static final int HUD_WIDTH = 200;
+    private static final Font HUD_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 16);
+    private static final int DIG_KEY = KeyEvent.VK_DOWN;
+    private static final int PLACE_KEY = KeyEvent.VK_UP;
+    private static final int SAVE_KEY = KeyEvent.VK_F5;
+    // Teleports the avatar back to where a new game starts.
+    private static final int SPAWN_KEY = KeyEvent.VK_HOME;
+    private static final float SPAWN_X = 0;
+    private static final float AUTOSAVE_INTERVAL_SECONDS = 60;
+    // The step the day-night cycle is fast-forwarded by when a saved game is loaded.
+    private static final float DAY_NIGHT_FAST_FORWARD_STEP = 1 / 30f;
     private ImageReader imageReader;
     private UserInputListener inputListener;
+    private FrameInput frameInput;
+    private String recordPath;
+    private String replayPath;
+    private String worldPath;
+    private String loadPath;
+    private String savePath;
+    // Writes saved games in the background; at most one save is in progress at a time.
+    private ExecutorService saver;
+    private Future<?> pendingSave;
+    private float timeSinceSave;
+    private boolean saveKeyWasPressed;
+    private long memoryBudgetMb = DEFAULT_MEMORY_BUDGET_MB;
+    private MemoryBudget memoryBudget;
+    private boolean prerenderStatics;
     private WindowController windowController;
     private Avatar avatar;
+    private Terrain terrain;
+    private Water water;
+    private Creatures creatures;
+    private Weather weather;
+    private Minimap minimap;
+    // The revision of the terrain edits the ground height caches were last refreshed at.
+    private int groundRevision;
+    private FrameRateElement frameRate;
+    private CoordinatesElement coordinates;
+    private ClockElement clock;
+    private GameObject sun;
+    private GameObject sunHalo;
+    private GameObject night;
+    private boolean digKeyWasPressed;
+    private boolean placeKeyWasPressed;
+    private boolean spawnKeyWasPressed;
+    private boolean avatarFacesLeft;
     private final List<Scrollable<?>> scrollables = new ArrayList<>();
+    // The objects the world is streamed around (the avatar, and any extra cameras or spectators).
+    private final List<GameObject> viewers = new ArrayList<>();
+    private float[] viewerXs = new float[1];
+    private AdaptiveLoadWindow loadWindow;
+    // The bus the world's events are published on, drained once at the end of every frame.
+    private final WorldEvents events = new WorldEvents();
+    private final PickupSystem pickupSystem = new PickupSystem(events);
+    private DayPhase dayPhase;
+    private final WorldClock worldClock = new WorldClock();
     GroundHeightAt groundHeightAt;
 
     /**
      * The entry point of the game.
      * runs the game by creating an instance of PepseGameManager and calling its run method.
-     * @param args command line arguments (not used).
+     * @param args command line arguments: {@code --record <file>} records the session's input to a log,
+     *             {@code --replay <file>} replays a recorded log deterministically,
+     *             {@code --prerender} draws the static terrain of every chunk as a single image,
+     *             {@code --world <file>} streams chunks from a world archive generated ahead of time by
+     *             {@link pepse.tools.WorldPregenerator},
+     *             {@code --memory-budget <MB>} bounds the memory of the world's caches and stores
+     *             (e.g. on low-memory machines),
+     *             {@code --load <file>} resumes a saved game,
+     *             {@code --save <file>} saves the game there every minute and when F5 is pressed (by default,
+     *             where it was loaded from).
      */
     public static void main(String[] args) {
-        new PepseGameManager().run();
+        PepseGameManager gameManager = new PepseGameManager();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(PRERENDER_FLAG)) {
+                gameManager.prerenderStatics = true;
+            } else if (i + 1 >= args.length) {
+                break;
+            } else if (args[i].equals(RECORD_FLAG)) {
+                gameManager.recordPath = args[++i];
+            } else if (args[i].equals(REPLAY_FLAG)) {
+                gameManager.replayPath = args[++i];
+            } else if (args[i].equals(WORLD_FLAG)) {
+                gameManager.worldPath = args[++i];
+            } else if (args[i].equals(MEMORY_BUDGET_FLAG)) {
+                gameManager.memoryBudgetMb = Long.parseLong(args[++i]);
+            } else if (args[i].equals(LOAD_FLAG)) {
+                gameManager.loadPath = args[++i];
+            } else if (args[i].equals(SAVE_FLAG)) {
+                gameManager.savePath = args[++i];
+            }
+        }
+        gameManager.run();
     }
 
     /**
-     * Initializes the game by creating the terrain, background objects, avatar, and energy bar.
+     * Initializes the game by creating the terrain, background objects, avatar, and HUD.
      * This method is called by the danogl library when the game starts.
      * @param imageReader   used to read images from files.
      * @param soundReader   used to read sounds from files.
@@ -76,41 +192,233 @@ public class PepseGameManager extends GameManager {
         this.imageReader = imageReader;
         this.inputListener = inputListener;
         this.windowController = windowController;
+        this.frameInput = makeFrameInput();
         makeGameObjects(windowController);
     }
 
+    /*
+     * Creates the source of per-frame input: the live keyboard, a recorder wrapping it,
+     * or a replay of a previously recorded session, depending on the command line.
+     * @return the frame input the avatar is controlled by.
+     */
+    private FrameInput makeFrameInput() {
+        FrameInput live = new LiveInput(inputListener);
+        try {
+            if (replayPath != null) {
+                return closeOnExit(new InputReplay(new File(replayPath), SEED));
+            }
+            if (recordPath != null) {
+                return closeOnExit(new InputRecorder(live, new File(recordPath), SEED));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return live;
+    }
+
+    /*
+     * Closes the given input log when the JVM exits, so recordings are flushed to disk.
+     * @return the given input.
+     */
+    private static <T extends FrameInput & Closeable> T closeOnExit(T input) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+                // Nothing left to do on exit.
+            }
+        }));
+        return input;
+    }
+
     /*
      * Creates and adds the main game objects to the game.
-     * This includes the terrain, background objects, avatar, and energy bar.
+     * This includes the terrain, background objects, avatar, and HUD.
      * @param windowController used to get the dimensions of the game window.
      */
     private void makeGameObjects(WindowController windowController) {
+        configureLayerCollisions();
         makeBackgroundObjects();
-        Terrain terrain = new Terrain(windowController.getWindowDimensions(), SEED);
+        terrain = new Terrain(windowController.getWindowDimensions(), SEED);
         groundHeightAt = terrain::groundHeightAt;
+        Flora flora = new Flora(SEED, groundHeightAt, terrain::treeChanceAt);
         scrollables.add(terrain);
-        scrollables.add(new Flora(SEED, groundHeightAt));
-        updateScrollables(0);
-        this.avatar = makeAvatar();
-        makeEnergyBar(avatar::getEnergy);
+        scrollables.add(flora);
+        water = new Water(SEED, terrain::surfaceHeightAt);
+        scrollables.add(water);
+        memoryBudget = new MemoryBudget(memoryBudgetMb * 1024 * 1024);
+        if (worldPath != null) {
+            WorldArchive archive = loadWorldArchive(terrain.getGroundHeightAtX0());
+            terrain.setArchive(archive);
+            flora.setArchive(archive);
+            if (archive != null) {
+                memoryBudget.register(archive);
+            }
+        }
+        loadWindow = new AdaptiveLoadWindow(Scrollable.CHUNK_SIZE, windowController.getWindowDimensions().x());
+        loadWindow.setDeterministic(recordPath != null || replayPath != null);
+        for (Scrollable<?> scrollable : scrollables) {
+            scrollable.setPrerenderStatics(prerenderStatics);
+            loadWindow.attach(scrollable);
+            scrollable.setPickupSystem(pickupSystem);
+            scrollable.setWorldClock(worldClock);
+            scrollable.setEvents(events);
+            scrollable.registerMemory(memoryBudget);
+        }
+        memoryBudget.register(loadWindow);
+        WorldSnapshot snapshot = loadPath == null ? null : loadSnapshot(terrain.getGroundHeightAtX0());
+        Vector2 avatarPosition = new Vector2(SPAWN_X, terrain.surfaceHeightAt(SPAWN_X) - Avatar.AVATAR_SIZE);
+        if (snapshot != null) {
+            snapshot.restore(terrain, worldClock, scrollables);
+            avatarPosition = new Vector2(snapshot.getAvatarX(), snapshot.getAvatarY());
+            fastForwardDayNight((float) (snapshot.getWorldTime() % Sun.CYCLE_LENGTH_OF_DAY));
+        } else {
+            updateScrollables(avatarPosition.x());
+        }
+        this.avatar = makeAvatar(avatarPosition);
+        if (snapshot != null) {
+            // The saved place loads progressively around the frozen avatar, like any other teleport.
+            teleportAvatar(avatarPosition);
+            avatar.setEnergy(snapshot.getAvatarEnergy());
+        }
+        if (savePath == null) {
+            savePath = loadPath;
+        }
+        creatures = new Creatures(SEED, terrain::surfaceHeightAt, CREATURE_COUNT);
+        weather = new Weather(SEED, terrain::surfaceHeightAt, windowController.getWindowDimensions(), events);
+        weather.addToGame(this::addGameObject);
+        addViewer(avatar);
+        makeHud();
+        makeMinimap(flora);
         setCamera(new Camera(avatar, Vector2.ZERO, windowController.getWindowDimensions(),
                 windowController.getWindowDimensions()));
     }
 
+    /*
+     * Loads the world archive given on the command line. An archive of another seed or window height
+     * would not match the generated world around it, so it is ignored.
+     * @return the archive, or null if it does not belong to this world.
+     */
+    private WorldArchive loadWorldArchive(int groundHeightAtX0) {
+        WorldArchive archive;
+        try {
+            archive = WorldArchive.read(new File(worldPath));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (archive.getSeed() != SEED || archive.getGroundHeightAtX0() != groundHeightAtX0) {
+            System.err.println(worldPath + " was generated for another seed or window height; ignoring it");
+            return null;
+        }
+        return archive;
+    }
+
+    /*
+     * Loads the saved game given on the command line. A save of another seed or window height would not
+     * match the world regenerated around it, so it is ignored, as is a missing save (a new game to be saved
+     * there).
+     * @return the snapshot, or null to start a new game.
+     */
+    private WorldSnapshot loadSnapshot(int groundHeightAtX0) {
+        File file = new File(loadPath);
+        if (!file.exists()) {
+            return null;
+        }
+        WorldSnapshot snapshot;
+        try {
+            snapshot = WorldSnapshot.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!snapshot.matches(SEED, groundHeightAtX0)) {
+            System.err.println(loadPath + " was saved for another seed or window height; ignoring it");
+            return null;
+        }
+        return snapshot;
+    }
+
+    /*
+     * Advances the sun, its halo and the night by the given time, in small steps so that their
+     * transitions loop and turn back exactly as they do frame by frame.
+     */
+    private void fastForwardDayNight(float seconds) {
+        for (float left = seconds; left > 0; left -= DAY_NIGHT_FAST_FORWARD_STEP) {
+            float step = Math.min(left, DAY_NIGHT_FAST_FORWARD_STEP);
+            sun.update(step);
+            sunHalo.update(step);
+            night.update(step);
+        }
+    }
+
+    /*
+     * Saves the game in the background: the world is encoded on the game thread, which takes a fraction of
+     * a millisecond, and written to disk by the saver thread. A save requested while the previous one is
+     * still being written is skipped.
+     */
+    private void saveInBackground() {
+        if (pendingSave != null && !pendingSave.isDone()) {
+            return;
+        }
+        if (saver == null) {
+            saver = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "world-saver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        ByteBuffer snapshot = WorldSnapshot.capture(SEED, terrain, worldClock.now(), avatar, scrollables);
+        File file = new File(savePath);
+        pendingSave = saver.submit(() -> {
+            try {
+                WorldSnapshot.write(snapshot, file);
+            } catch (IOException e) {
+                System.err.println("Could not save the game to " + file + ": " + e);
+            }
+        });
+        timeSinceSave = 0;
+    }
+
+    /*
+     * Saves the game when the save key is pressed, and every so often.
+     */
+    private void saveWhenDue(float deltaTime) {
+        if (savePath == null) {
+            return;
+        }
+        timeSinceSave += deltaTime;
+        boolean save = frameInput.isKeyPressed(SAVE_KEY);
+        if (save && !saveKeyWasPressed || timeSinceSave >= AUTOSAVE_INTERVAL_SECONDS) {
+            saveInBackground();
+        }
+        saveKeyWasPressed = save;
+    }
+
+    /*
+     * Restricts physics collisions to the pairs of layers that need them.
+     * Static objects never move, so they are never tested against each other, and background objects
+     * (sky, leaves, fruits...) are never tested against the avatar; fruits are collected through the
+     * pickup system instead.
+     */
+    private void configureLayerCollisions() {
+        gameObjects().layers().shouldLayersCollide(Layer.STATIC_OBJECTS, Layer.STATIC_OBJECTS, false);
+        gameObjects().layers().shouldLayersCollide(Layer.DEFAULT, Layer.BACKGROUND, false);
+        gameObjects().layers().shouldLayersCollide(Layer.BACKGROUND, Layer.BACKGROUND, false);
+    }
+
     /*
      * Creates and adds background objects to the game.
-     * The background objects include the sky, sun, sun halo, and night overlay.
+     * The background objects include the sky, sun, sun halo, and the night, which lights the palette.
      * These objects create a dynamic day-night cycle in the game.
      */
     private void makeBackgroundObjects() {
         GameObject sky = Sky.create(windowController.getWindowDimensions());
         gameObjects().addGameObject(sky, Layer.BACKGROUND);
-        GameObject sun = Sun.create(windowController.getWindowDimensions(), Sun.CYCLE_LENGTH_OF_DAY);
-        GameObject sunHalo = SunHalo.create(sun);
+        sun = Sun.create(windowController.getWindowDimensions(), Sun.CYCLE_LENGTH_OF_DAY);
+        sunHalo = SunHalo.create(sun);
         gameObjects().addGameObject(sunHalo, Layer.BACKGROUND);
         gameObjects().addGameObject(sun, Layer.BACKGROUND);
-        GameObject night = Night.create(windowController.getWindowDimensions(), Sun.CYCLE_LENGTH_OF_DAY);
-        gameObjects().addGameObject(night, Layer.FOREGROUND);
+        night = Night.create(Sun.CYCLE_LENGTH_OF_DAY);
+        gameObjects().addGameObject(night, Layer.BACKGROUND);
     }
 
 
@@ -126,29 +434,134 @@ public class PepseGameManager extends GameManager {
         }
     }
 
+    /*
+     * Updates all scrollable objects around every registered viewer.
+     * Chunks shared by several viewers are generated once and kept while any viewer still needs them.
+     */
+    private void updateScrollablesAroundViewers() {
+        if (viewerXs.length < viewers.size()) {
+            viewerXs = new float[viewers.size()];
+        }
+        for (int i = 0; i < viewers.size(); i++) {
+            viewerXs[i] = viewers.get(i).getCenter().x();
+        }
+        for (Scrollable<?> scrollable : scrollables) {
+            scrollable.updateAroundViewers(viewerXs, viewers.size(), this::addGameObject, this::removeGameObject);
+        }
+    }
+
+    /**
+     * Registers an additional viewer (e.g. a split-screen avatar or a spectator camera) that the world
+     * should be streamed around, in addition to the avatar.
+     * @param viewer the game object whose position defines an additional window of loaded chunks.
+     */
+    public void addViewer(GameObject viewer) {
+        if (!viewers.contains(viewer)) {
+            viewers.add(viewer);
+        }
+    }
+
+    /**
+     * Unregisters a viewer. Chunks that only this viewer needed are unloaded on the next update.
+     * @param viewer the viewer to remove.
+     */
+    public void removeViewer(GameObject viewer) {
+        viewers.remove(viewer);
+    }
+
     /*
      * Creates and adds the avatar to the game.
      * The avatar is the main character controlled by the player.
+     * @param initialPosition the top-left corner of the avatar: on the ground at the origin in a new game.
      * @return the created avatar.
      */
-    private Avatar makeAvatar() {
-        //todo decide on initial position of avatar
-        float startingY = groundHeightAt.accept(0f) - Avatar.AVATAR_SIZE;
-        Vector2 initialPosition = new Vector2(0, startingY);
-        var avatar = new Avatar(initialPosition, inputListener, imageReader);
+    private Avatar makeAvatar(Vector2 initialPosition) {
+        var avatar = new Avatar(initialPosition, frameInput, imageReader);
+        avatar.setEvents(events);
         gameObjects().addGameObject(avatar, Layer.DEFAULT);
         return avatar;
     }
 
     /*
-     * Creates and adds an energy bar to the game.
-     * The energy bar displays the avatar's current energy level.
-     * @param energySupplier a supplier that provides the current energy level of the avatar.
+     * Creates and adds the HUD to the top-left corner of the screen: the avatar's energy, as published on
+     * the event bus, then the frame rate, the avatar's block coordinates and the time of day.
+     */
+    private void makeHud() {
+        GlyphCache energyGlyphs = new GlyphCache(HUD_FONT, Color.GREEN);
+        GlyphCache infoGlyphs = new GlyphCache(HUD_FONT, Color.WHITE);
+        int line = infoGlyphs.getHeight();
+        Hud hud = new Hud(HUD_POSITION, new Vector2(HUD_WIDTH, 4 * line));
+        hud.add(new EnergyElement(0, 0, energyGlyphs, Avatar.MAX_ENERGY, events));
+        frameRate = hud.add(new FrameRateElement(0, line, infoGlyphs));
+        coordinates = hud.add(new CoordinatesElement(0, 2 * line, infoGlyphs));
+        clock = hud.add(new ClockElement(0, 3 * line, infoGlyphs));
+        gameObjects().addGameObject(hud, Layer.UI);
+    }
+
+    /*
+     * Creates and adds a minimap of the terrain and trees around the avatar to the top-right corner of
+     * the screen.
+     * @param flora decides where the trees on the map grow.
+     */
+    private void makeMinimap(Flora flora) {
+        Vector2 windowDimensions = windowController.getWindowDimensions();
+        float width = Minimap.MAP_COLUMNS * Minimap.PIXEL_SCALE;
+        Vector2 topLeft = new Vector2(windowDimensions.x() - width - MINIMAP_MARGIN, MINIMAP_MARGIN);
+        minimap = new Minimap(topLeft, windowDimensions.y(), groundHeightAt, terrain::surfaceHeightAt, flora,
+                () -> avatar.getCenter().x());
+        gameObjects().addGameObject(minimap, Layer.UI);
+    }
+
+    /**
+     * Teleports the avatar onto the ground at the given x-coordinate (e.g. a respawn, checkpoint or debug
+     * warp; the Home key teleports it back to the spawn point). It stands on the higher of the ground under
+     * its two edges, so it is never sunk into a step.
+     * @param x the x-coordinate the avatar's centre is teleported to.
+     * @see #teleportAvatar(Vector2)
      */
-    private void makeEnergyBar(Supplier<Float> energySupplier) {
-        EnergyBar energyBar = new EnergyBar(EnergyBar.ENERGY_BAR_POSITION, Avatar.MAX_ENERGY,
-                energySupplier);
-        gameObjects().addGameObject(energyBar, Layer.UI);
+    public void teleportAvatar(float x) {
+        float halfWidth = avatar.getDimensions().x() / 2;
+        float ground = Math.min(terrain.surfaceHeightAt(x - halfWidth), terrain.surfaceHeightAt(x + halfWidth - 1));
+        teleportAvatar(new Vector2(x - halfWidth, ground - avatar.getDimensions().y()));
+    }
+
+    /**
+     * Teleports the avatar to the given position (e.g. where a saved game left it).
+     * The avatar is frozen until the chunks under it are loaded; the rest of the new window then loads
+     * centre-out over the following frames, while the old window is unloaded a few chunks at a time.
+     * @param topLeftCorner the avatar's new top-left corner.
+     */
+    public void teleportAvatar(Vector2 topLeftCorner) {
+        avatar.setTopLeftCorner(topLeftCorner);
+        avatar.setFrozen(true);
+    }
+
+    /*
+     * Teleports the avatar back to the spawn point when the spawn key is pressed.
+     */
+    private void teleportWhenRequested() {
+        boolean spawn = frameInput.isKeyPressed(SPAWN_KEY);
+        if (spawn && !spawnKeyWasPressed) {
+            teleportAvatar(SPAWN_X);
+        }
+        spawnKeyWasPressed = spawn;
+    }
+
+    /*
+     * Releases a frozen avatar once the chunks under both of its edges are loaded in every scrollable.
+     */
+    private void releaseAvatarWhenLanded() {
+        if (!avatar.isFrozen()) {
+            return;
+        }
+        float left = avatar.getTopLeftCorner().x();
+        float right = left + avatar.getDimensions().x();
+        for (Scrollable<?> scrollable : scrollables) {
+            if (!scrollable.isLoadedAt(left) || !scrollable.isLoadedAt(right)) {
+                return;
+            }
+        }
+        avatar.setFrozen(false);
     }
 
     /**
@@ -173,13 +586,145 @@ public class PepseGameManager extends GameManager {
     /**
      * Updates the game state.
      * This method is called once per frame by the danogl library.
-     * It updates the scrollable objects based on the avatar's position.
+     * It updates the scrollable objects based on the positions of the avatar and any other viewers.
+     * When replaying a recorded session, the recorded frame time is used instead of the real one.
+     * The events published during the frame are passed to their listeners at its end.
      * @param deltaTime The time, in seconds, that passed since the last invocation
      * of this method (i.e., since the last frame).
      */
     @Override
     public void update(float deltaTime) {
-        super.update(deltaTime);
-        updateScrollables(avatar.getCenter().x());
+        float frameDelta = frameInput.beginFrame(deltaTime);
+        if (frameInput.isFinished()) {
+            windowController.closeWindow();
+            return;
+        }
+        FrameUpdateEvent simulation = new FrameUpdateEvent();
+        simulation.begin();
+        worldClock.advance(frameDelta);
+        publishDayPhase();
+        super.update(frameDelta);
+        pickupSystem.update(avatar);
+        water.update(frameDelta);
+        updateCreatures(frameDelta);
+        updateWeather(frameDelta);
+        editTerrain();
+        refreshGround();
+        updateHud(deltaTime);
+        commitFramePhase(simulation, FrameUpdateEvent.SIMULATION, frameDelta);
+
+        FrameUpdateEvent streaming = new FrameUpdateEvent();
+        streaming.begin();
+        teleportWhenRequested();
+        loadWindow.update(avatar.getVelocity().x(), frameDelta);
+        updateScrollablesAroundViewers();
+        releaseAvatarWhenLanded();
+        memoryBudget.enforce();
+        saveWhenDue(frameDelta);
+        commitFramePhase(streaming, FrameUpdateEvent.STREAMING, frameDelta);
+        events.drain();
+    }
+
+    /*
+     * Publishes the phase of the day-night cycle when it changes (and on the first frame).
+     */
+    private void publishDayPhase() {
+        DayPhase phase = DayPhase.at(worldClock.now(), Sun.CYCLE_LENGTH_OF_DAY);
+        if (phase != dayPhase) {
+            events.publishDayPhaseChanged(phase);
+            dayPhase = phase;
+        }
+    }
+
+    /*
+     * Updates the creatures around the avatar; the camera is centred on the avatar, so the screen spans half
+     * a window on each side of it.
+     */
+    private void updateCreatures(float deltaTime) {
+        float avatarX = avatar.getCenter().x();
+        float halfScreen = windowController.getWindowDimensions().x() / 2;
+        creatures.update(deltaTime, avatarX, avatarX - halfScreen, avatarX + halfScreen,
+                this::addGameObject, this::removeGameObject);
+    }
+
+    /*
+     * Updates the rain and snow around the screen, which the camera centres on the avatar.
+     */
+    private void updateWeather(float deltaTime) {
+        Vector2 screenTopLeft = avatar.getCenter().subtract(windowController.getWindowDimensions().mult(0.5f));
+        weather.update(deltaTime, screenTopLeft.x(), screenTopLeft.y());
+    }
+
+    /*
+     * Passes the frame time, the avatar's position and the world time to the HUD, whose elements only
+     * redraw when what they show changes. The frame rate is measured in real time, also when replaying.
+     */
+    private void updateHud(float deltaTime) {
+        frameRate.frame(deltaTime);
+        Vector2 avatarCenter = avatar.getCenter();
+        coordinates.setPosition(avatarCenter.x(), avatarCenter.y());
+        clock.setTime(worldClock.now(), Sun.CYCLE_LENGTH_OF_DAY);
+    }
+
+    /*
+     * Digs or places a block when the matching key is pressed (once per press, not per frame held).
+     * The block below the avatar is dug; a block is placed in front of the avatar's feet, so the avatar
+     * can build its way up. The edited chunk is regenerated right away.
+     */
+    private void editTerrain() {
+        if (avatar.getVelocity().x() != 0) {
+            avatarFacesLeft = avatar.getVelocity().x() < 0;
+        }
+        boolean dig = frameInput.isKeyPressed(DIG_KEY);
+        boolean place = frameInput.isKeyPressed(PLACE_KEY);
+        if (dig && !digKeyWasPressed) {
+            Vector2 target = avatarFeet().add(new Vector2(0, GAME_BLOCK_SIZE / 2f));
+            if (terrain.dig(target)) {
+                terrain.reloadChunkAt(target.x(), this::addGameObject, this::removeGameObject);
+            }
+        }
+        if (place && !placeKeyWasPressed) {
+            float side = avatarFacesLeft ? -1 : 1;
+            Vector2 target = avatarFeet().add(new Vector2(
+                    side * (avatar.getDimensions().x() / 2 + GAME_BLOCK_SIZE / 2f), -GAME_BLOCK_SIZE / 2f));
+            if (terrain.place(target)) {
+                terrain.reloadChunkAt(target.x(), this::addGameObject, this::removeGameObject);
+            }
+        }
+        digKeyWasPressed = dig;
+        placeKeyWasPressed = place;
+    }
+
+    /*
+     * Returns the middle of the bottom edge of the avatar.
+     */
+    private Vector2 avatarFeet() {
+        return avatar.getCenter().add(new Vector2(0, avatar.getDimensions().y() / 2));
+    }
+
+    /*
+     * Makes the water, the creatures, the weather and the minimap follow the ground again once the terrain
+     * edits changed, whether dug or placed here, or restored from a save.
+     */
+    private void refreshGround() {
+        int revision = terrain.getEdits().getRevision();
+        if (revision != groundRevision) {
+            groundRevision = revision;
+            water.groundChanged();
+            creatures.groundChanged();
+            weather.groundChanged();
+            minimap.groundChanged();
+        }
+    }
+
+    /*
+     * Commits a frame phase event to Flight Recorder, if it is being recorded.
+     */
+    private static void commitFramePhase(FrameUpdateEvent event, String phase, float deltaTime) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.deltaTime = (long) (deltaTime * TimeUnit.SECONDS.toNanos(1));
+            event.commit();
+        }
     }
 }
@@ -0,0 +1,358 @@
+package pepse.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The state of the entities in one client's interest at one server tick, kept as parallel primitive
+ * arrays sorted by entity id so that two snapshots are compared in a single merge pass.
+ * A snapshot is sent as a delta against a base snapshot the client acknowledged: the ids of the entities
+ * that left, and for every entity that entered or changed, a bit mask of the fields that differ followed by
+ * only those fields. An entity that did not change costs nothing; without a base, every field is sent.
+ * Snapshots are reused from tick to tick and allocate only when their capacity grows.
+ * @author Aron Isaacs
+ */
+public class EntitySnapshot {
+    /** The kind of an avatar entity, whose value is its energy. */
+    public static final byte KIND_AVATAR = 0;
+    /** The kind of a fruit entity, whose value is 1 while it is on its tree and 0 once eaten. */
+    public static final byte KIND_FRUIT = 1;
+
+    private static final int FIELD_KIND = 1;
+    private static final int FIELD_X = 1 << 1;
+    private static final int FIELD_Y = 1 << 2;
+    private static final int FIELD_VALUE = 1 << 3;
+    private static final int ALL_FIELDS = FIELD_KIND | FIELD_X | FIELD_Y | FIELD_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int tick = Protocol.NO_TICK;
+    private int count;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private float[] xs = new float[INITIAL_CAPACITY];
+    private float[] ys = new float[INITIAL_CAPACITY];
+    private float[] values = new float[INITIAL_CAPACITY];
+    // Scratch space for sorting, and for the entries of a delta being read.
+    private long[] sortKeys = new long[INITIAL_CAPACITY];
+    private byte[] changedFields = new byte[INITIAL_CAPACITY];
+    private EntitySnapshot scratch;
+
+    /**
+     * Empties the snapshot and sets the tick it describes.
+     * @param tick The server tick.
+     */
+    public void reset(int tick) {
+        this.tick = tick;
+        count = 0;
+    }
+
+    /**
+     * Adds an entity. Entities may be added in any order; call {@link #sortById()} once all are added.
+     * @param id The entity's id, unique among the entities of the world.
+     * @param kind {@link #KIND_AVATAR} or {@link #KIND_FRUIT}.
+     * @param x The x-coordinate of the entity.
+     * @param y The y-coordinate of the entity.
+     * @param value The kind-specific value of the entity.
+     */
+    public void add(int id, byte kind, float x, float y, float value) {
+        if (count == ids.length) {
+            grow(count * 2);
+        }
+        ids[count] = id;
+        kinds[count] = kind;
+        xs[count] = x;
+        ys[count] = y;
+        values[count] = value;
+        count++;
+    }
+
+    /**
+     * Sorts the entities by id, as delta encoding requires.
+     */
+    public void sortById() {
+        if (sortKeys.length < count) {
+            sortKeys = new long[ids.length];
+        }
+        // The id in the high half orders the keys; the low half remembers where the entity was.
+        for (int i = 0; i < count; i++) {
+            sortKeys[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+        EntitySnapshot sorted = scratch();
+        sorted.reset(tick);
+        for (int i = 0; i < count; i++) {
+            int from = (int) sortKeys[i];
+            sorted.add(ids[from], kinds[from], xs[from], ys[from], values[from]);
+        }
+        swapArrays(sorted);
+    }
+
+    /**
+     * Writes the difference between this snapshot and a base snapshot; both must be sorted by id.
+     * @param out The buffer to write to.
+     * @param base The snapshot the receiver already has, or null to send every entity in full.
+     */
+    public void writeDelta(ByteBuffer out, EntitySnapshot base) {
+        int baseCount = base == null ? 0 : base.count;
+        int removedAt = out.position();
+        out.putShort((short) 0);
+        int removed = 0;
+        for (int i = 0, j = 0; i < baseCount; i++) {
+            while (j < count && ids[j] < base.ids[i]) {
+                j++;
+            }
+            if (j == count || ids[j] != base.ids[i]) {
+                out.putInt(base.ids[i]);
+                removed++;
+            }
+        }
+        out.putShort(removedAt, (short) removed);
+        int changedAt = out.position();
+        out.putShort((short) 0);
+        int changed = 0;
+        for (int i = 0, j = 0; i < count; i++) {
+            while (j < baseCount && base.ids[j] < ids[i]) {
+                j++;
+            }
+            int fields = ALL_FIELDS;
+            if (j < baseCount && base.ids[j] == ids[i]) {
+                fields = changedFields(i, base, j);
+            }
+            if (fields != 0) {
+                writeFields(out, i, fields);
+                changed++;
+            }
+        }
+        out.putShort(changedAt, (short) changed);
+    }
+
+    /**
+     * Replaces this snapshot with the result of applying a delta to its base.
+     * @param in The buffer holding a delta written by {@link #writeDelta(ByteBuffer, EntitySnapshot)}.
+     * @param tick The tick the delta describes.
+     * @param base The base the delta was written against, or null if it was written in full; not this
+     *             snapshot.
+     * @throws ProtocolException if the delta refers to an entity the base does not hold.
+     */
+    public void readDelta(ByteBuffer in, int tick, EntitySnapshot base) throws ProtocolException {
+        int baseCount = base == null ? 0 : base.count;
+        EntitySnapshot changes = scratch();
+        changes.reset(tick);
+        int removed = in.getShort() & 0xFFFF;
+        int removedStart = in.position();
+        in.position(removedStart + removed * Integer.BYTES);
+        int changed = in.getShort() & 0xFFFF;
+        if (changedFields.length < changed) {
+            changedFields = new byte[changed];
+        }
+        for (int n = 0; n < changed; n++) {
+            int id = in.getInt();
+            byte fields = in.get();
+            changedFields[n] = fields;
+            changes.add(id, (fields & FIELD_KIND) != 0 ? in.get() : 0,
+                    (fields & FIELD_X) != 0 ? in.getFloat() : 0,
+                    (fields & FIELD_Y) != 0 ? in.getFloat() : 0,
+                    (fields & FIELD_VALUE) != 0 ? in.getFloat() : 0);
+        }
+        int end = in.position();
+        reset(tick);
+        int r = 0;
+        int c = 0;
+        for (int i = 0; i < baseCount; i++) {
+            int id = base.ids[i];
+            while (c < changed && changes.ids[c] < id) {
+                addNew(changes, c++);
+            }
+            while (r < removed && in.getInt(removedStart + r * Integer.BYTES) < id) {
+                r++;
+            }
+            if (r < removed && in.getInt(removedStart + r * Integer.BYTES) == id) {
+                continue;
+            }
+            if (c < changed && changes.ids[c] == id) {
+                addChanged(base, i, changes, c++);
+            } else {
+                add(id, base.kinds[i], base.xs[i], base.ys[i], base.values[i]);
+            }
+        }
+        while (c < changed) {
+            addNew(changes, c++);
+        }
+        in.position(end);
+    }
+
+    /**
+     * Returns the tick the snapshot describes.
+     * @return The server tick, or {@link Protocol#NO_TICK} for a snapshot never filled.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the number of entities.
+     * @return The entity count.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the index of an entity.
+     * @param id The entity's id.
+     * @return The index of the entity, or a negative number if it is not in the snapshot.
+     */
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, 0, count, id);
+    }
+
+    /**
+     * Returns the id of the entity at an index.
+     * @param index The index, in [0, {@link #size()}).
+     * @return The id.
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the kind of the entity at an index.
+     * @param index The index, in [0, {@link #size()}).
+     * @return The kind.
+     */
+    public byte kindAt(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Returns the x-coordinate of the entity at an index.
+     * @param index The index, in [0, {@link #size()}).
+     * @return The x-coordinate.
+     */
+    public float xAt(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Returns the y-coordinate of the entity at an index.
+     * @param index The index, in [0, {@link #size()}).
+     * @return The y-coordinate.
+     */
+    public float yAt(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Returns the kind-specific value of the entity at an index.
+     * @param index The index, in [0, {@link #size()}).
+     * @return The value.
+     */
+    public float valueAt(int index) {
+        return values[index];
+    }
+
+    /*
+     * Returns the fields of entity i that differ from entity j of the base.
+     */
+    private int changedFields(int i, EntitySnapshot base, int j) {
+        int fields = 0;
+        if (kinds[i] != base.kinds[j]) {
+            fields |= FIELD_KIND;
+        }
+        if (xs[i] != base.xs[j]) {
+            fields |= FIELD_X;
+        }
+        if (ys[i] != base.ys[j]) {
+            fields |= FIELD_Y;
+        }
+        if (values[i] != base.values[j]) {
+            fields |= FIELD_VALUE;
+        }
+        return fields;
+    }
+
+    /*
+     * Writes the id of entity i, the mask of the given fields and the fields themselves.
+     */
+    private void writeFields(ByteBuffer out, int i, int fields) {
+        out.putInt(ids[i]);
+        out.put((byte) fields);
+        if ((fields & FIELD_KIND) != 0) {
+            out.put(kinds[i]);
+        }
+        if ((fields & FIELD_X) != 0) {
+            out.putFloat(xs[i]);
+        }
+        if ((fields & FIELD_Y) != 0) {
+            out.putFloat(ys[i]);
+        }
+        if ((fields & FIELD_VALUE) != 0) {
+            out.putFloat(values[i]);
+        }
+    }
+
+    /*
+     * Adds an entity that entered the snapshot; every field must have been sent.
+     */
+    private void addNew(EntitySnapshot changes, int c) throws ProtocolException {
+        if (changedFields[c] != ALL_FIELDS) {
+            throw new ProtocolException("Partial update of unknown entity " + changes.ids[c]);
+        }
+        add(changes.ids[c], changes.kinds[c], changes.xs[c], changes.ys[c], changes.values[c]);
+    }
+
+    /*
+     * Adds entity i of the base with the fields sent in change c applied.
+     */
+    private void addChanged(EntitySnapshot base, int i, EntitySnapshot changes, int c) {
+        int fields = changedFields[c];
+        add(base.ids[i],
+                (fields & FIELD_KIND) != 0 ? changes.kinds[c] : base.kinds[i],
+                (fields & FIELD_X) != 0 ? changes.xs[c] : base.xs[i],
+                (fields & FIELD_Y) != 0 ? changes.ys[c] : base.ys[i],
+                (fields & FIELD_VALUE) != 0 ? changes.values[c] : base.values[i]);
+    }
+
+    /*
+     * Returns the snapshot used as scratch space, creating it the first time.
+     */
+    private EntitySnapshot scratch() {
+        if (scratch == null) {
+            scratch = new EntitySnapshot();
+        }
+        return scratch;
+    }
+
+    /*
+     * Exchanges the entity arrays of this snapshot with another's.
+     */
+    private void swapArrays(EntitySnapshot other) {
+        int[] otherIds = other.ids;
+        byte[] otherKinds = other.kinds;
+        float[] otherXs = other.xs;
+        float[] otherYs = other.ys;
+        float[] otherValues = other.values;
+        other.ids = ids;
+        other.kinds = kinds;
+        other.xs = xs;
+        other.ys = ys;
+        other.values = values;
+        ids = otherIds;
+        kinds = otherKinds;
+        xs = otherXs;
+        ys = otherYs;
+        values = otherValues;
+    }
+
+    /*
+     * Grows the entity arrays to the given capacity.
+     */
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
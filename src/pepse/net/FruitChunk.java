@@ -0,0 +1,181 @@
+package pepse.net;
+
+import danogl.GameObject;
+import pepse.world.infiniteworld.ChunkLoadable;
+import pepse.world.infiniteworld.GroundHeightAt;
+import pepse.world.trees.Flora;
+import pepse.world.trees.TreeLayout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * The fruits of one chunk as the server simulates them: their positions and the time left until each
+ * eaten fruit grows back, without any game objects. The fruits are those of the trees the game creates,
+ * in the same order, so their ids match on every side of the connection.
+ * Chunks are streamed by a {@link pepse.world.infiniteworld.ChunkManager} following every client's avatar,
+ * which keeps the respawn times of unloaded chunks and lets them catch up when they return.
+ * @author Aron Isaacs
+ */
+class FruitChunk implements ChunkLoadable {
+    // Fruit ids are the column of their tree, shifted left, plus their order on the tree.
+    private static final int FRUIT_ID_BITS = 5;
+
+    private int count;
+    private int[] ids = new int[8];
+    private float[] xs = new float[8];
+    private float[] ys = new float[8];
+    private float[] respawnIn = new float[8];
+
+    /**
+     * Creates the fruit chunk between the given bounds, as the chunk placer of a ChunkManager.
+     * @param flora Decides where trees grow.
+     * @param groundHeightAt The ground height of a column.
+     * @param minX The left bound of the chunk.
+     * @return A single-element list holding the chunk.
+     */
+    static List<FruitChunk> place(Flora flora, GroundHeightAt groundHeightAt, int minX) {
+        FruitChunk chunk = new FruitChunk();
+        for (int x = minX; x < minX + CHUNK_SIZE; x += GAME_BLOCK_SIZE) {
+            if (flora.hasTreeAt(x)) {
+                chunk.addTree(x, groundHeightAt.accept(x));
+            }
+        }
+        return List.of(chunk);
+    }
+
+    /*
+     * Adds the fruits of the tree growing at the given position, in the order the game creates them.
+     */
+    private void addTree(int x, float y) {
+        TreeLayout layout = new TreeLayout(x, y);
+        int fruit = 0;
+        for (int i = 0; i < TreeLayout.FOLIAGE_WIDTH_BLOCKS; i++) {
+            for (int j = 0; j < TreeLayout.FOLIAGE_HEIGHT_BLOCKS; j++) {
+                if (layout.foliageAt(i, j) != TreeLayout.FRUIT) {
+                    continue;
+                }
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    xs = Arrays.copyOf(xs, count * 2);
+                    ys = Arrays.copyOf(ys, count * 2);
+                    respawnIn = Arrays.copyOf(respawnIn, count * 2);
+                }
+                ids[count] = (Math.floorDiv(x, GAME_BLOCK_SIZE) << FRUIT_ID_BITS) | fruit++;
+                xs[count] = layout.getFoliageLeft() + i * TreeLayout.CELL_SIZE;
+                ys[count] = layout.getFoliageTop() + j * TreeLayout.CELL_SIZE;
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Counts down to the respawn of the eaten fruits.
+     * @param deltaTime The time, in seconds, since the last update.
+     */
+    void update(float deltaTime) {
+        for (int i = 0; i < count; i++) {
+            respawnIn[i] = Math.max(0, respawnIn[i] - deltaTime);
+        }
+    }
+
+    /**
+     * Returns the number of fruits.
+     * @return The fruit count.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the id of a fruit.
+     * @param i The index of the fruit.
+     * @return The id.
+     */
+    int idAt(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Returns the x-coordinate of a fruit's top-left corner.
+     * @param i The index of the fruit.
+     * @return The x-coordinate.
+     */
+    float xAt(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Returns the y-coordinate of a fruit's top-left corner.
+     * @param i The index of the fruit.
+     * @return The y-coordinate.
+     */
+    float yAt(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Returns whether a fruit is on its tree.
+     * @param i The index of the fruit.
+     * @return true if the fruit can be eaten.
+     */
+    boolean isAvailable(int i) {
+        return respawnIn[i] == 0;
+    }
+
+    /**
+     * Eats a fruit, which grows back after the game's respawn time.
+     * @param i The index of the fruit.
+     * @param seconds The time until it grows back.
+     */
+    void eat(int i, float seconds) {
+        respawnIn[i] = seconds;
+    }
+
+    /**
+     * Server chunks have no game objects.
+     * @param addGameObject Unused.
+     */
+    @Override
+    public void addToGame(BiConsumer<GameObject, Integer> addGameObject) {
+    }
+
+    /**
+     * Server chunks have no game objects.
+     * @param destroyGameObject Unused.
+     */
+    @Override
+    public void destroy(BiConsumer<GameObject, Integer> destroyGameObject) {
+    }
+
+    /**
+     * The time left until each eaten fruit respawns; null if every fruit is on its tree.
+     * @return The respawn times, or null.
+     */
+    @Override
+    public Object captureState() {
+        for (int i = 0; i < count; i++) {
+            if (respawnIn[i] > 0) {
+                return Arrays.copyOf(respawnIn, count);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restores the respawn times, less the time that passed since they were captured.
+     * @param state The respawn times.
+     * @param elapsedSeconds The world time, in seconds, that passed since the state was captured.
+     */
+    @Override
+    public void restoreState(Object state, float elapsedSeconds) {
+        float[] saved = (float[]) state;
+        for (int i = 0; i < Math.min(count, saved.length); i++) {
+            respawnIn[i] = Math.max(0, saved[i] - elapsedSeconds);
+        }
+    }
+}
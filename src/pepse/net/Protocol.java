@@ -0,0 +1,94 @@
+package pepse.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * The messages exchanged between a {@link WorldServer} and its {@link WorldClient}s.
+ * Every message is framed as its length (an int, excluding itself), a type byte and the payload:
+ * <ul>
+ *     <li>{@link #HELLO} (server to client): the client's id, the world seed, the window height the world
+ *     is generated for and the tick rate.</li>
+ *     <li>{@link #CHUNK} (server to client): a chunk entered the client's interest or was edited. The terrain
+ *     is regenerated from the seed, so only the chunk index, its revision and its edits are sent.</li>
+ *     <li>{@link #DROP_CHUNK} (server to client): a chunk left the client's interest.</li>
+ *     <li>{@link #SNAPSHOT} (server to client): the entities in the client's interest, delta-compressed
+ *     against the last snapshot the client acknowledged.</li>
+ *     <li>{@link #INPUT} (client to server): the buttons held, and the last snapshot received.</li>
+ * </ul>
+ * @author Aron Isaacs
+ */
+public final class Protocol {
+    /** The first message of a connection. */
+    public static final byte HELLO = 1;
+    /** The edits of a chunk in the client's interest. */
+    public static final byte CHUNK = 2;
+    /** A chunk that left the client's interest. */
+    public static final byte DROP_CHUNK = 3;
+    /** The entities in the client's interest. */
+    public static final byte SNAPSHOT = 4;
+    /** The input of a client. */
+    public static final byte INPUT = 5;
+
+    /** Input button: run left. */
+    public static final int BUTTON_LEFT = 1;
+    /** Input button: run right. */
+    public static final int BUTTON_RIGHT = 1 << 1;
+    /** Input button: jump. */
+    public static final int BUTTON_JUMP = 1 << 2;
+    /** Input button: dig the block below the avatar (once per press). */
+    public static final int BUTTON_DIG = 1 << 3;
+    /** Input button: place a block in front of the avatar (once per press). */
+    public static final int BUTTON_PLACE = 1 << 4;
+
+    /** The tick a client acknowledges before it received any snapshot. */
+    public static final int NO_TICK = -1;
+    /** The largest message either side accepts, in bytes. */
+    public static final int MAX_MESSAGE_BYTES = 1 << 16;
+    /** The bytes framing every message: its length and type. */
+    public static final int FRAME_BYTES = Integer.BYTES + Byte.BYTES;
+    /** The length of an {@link #INPUT} message: its type, the acknowledged tick and the buttons. */
+    public static final int INPUT_LENGTH = Byte.BYTES + Integer.BYTES + Byte.BYTES;
+
+    private Protocol() {
+    }
+
+    /**
+     * Starts a message: reserves its length and writes its type.
+     * @param out The buffer to write to.
+     * @param type The message type.
+     * @return The position of the message, to be passed to {@link #endMessage(ByteBuffer, int)}.
+     */
+    public static int beginMessage(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putInt(0);
+        out.put(type);
+        return start;
+    }
+
+    /**
+     * Ends a message started with {@link #beginMessage(ByteBuffer, byte)}, filling in its length.
+     * @param out The buffer written to.
+     * @param start The position of the message.
+     */
+    public static void endMessage(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - Integer.BYTES);
+    }
+
+    /**
+     * Returns whether a whole message is available at the buffer's position.
+     * @param in A buffer being read.
+     * @return true if the length and every byte of the next message are available.
+     * @throws ProtocolException if the message announces an invalid length.
+     */
+    public static boolean hasMessage(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < Integer.BYTES) {
+            return false;
+        }
+        int length = in.getInt(in.position());
+        if (length < Byte.BYTES || length > MAX_MESSAGE_BYTES) {
+            throw new ProtocolException("Invalid message length " + length);
+        }
+        return in.remaining() >= Integer.BYTES + length;
+    }
+}
@@ -0,0 +1,47 @@
+package pepse.net;
+
+/**
+ * The most recent snapshots of one client, by tick, in a fixed ring of reused snapshots.
+ * The server keeps the snapshots it sent, so it can find the one a client acknowledged to send the next as
+ * a delta against it; the client keeps the ones it received, since the server may still be using an older
+ * one as the base of its deltas. A snapshot older than the ring is gone, and the next one is sent in full.
+ * @author Aron Isaacs
+ */
+public class SnapshotRing {
+    private final EntitySnapshot[] snapshots;
+
+    /**
+     * Creates a ring of snapshots.
+     * @param capacity The number of most recent ticks kept.
+     */
+    public SnapshotRing(int capacity) {
+        snapshots = new EntitySnapshot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            snapshots[i] = new EntitySnapshot();
+        }
+    }
+
+    /**
+     * Returns the snapshot to fill for a tick, emptied. It replaces the snapshot of the tick one ring older.
+     * @param tick The tick.
+     * @return The emptied snapshot.
+     */
+    public EntitySnapshot slotFor(int tick) {
+        EntitySnapshot snapshot = snapshots[Math.floorMod(tick, snapshots.length)];
+        snapshot.reset(tick);
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot of a tick, if it is still kept.
+     * @param tick The tick.
+     * @return The snapshot, or null if the tick is {@link Protocol#NO_TICK} or no longer in the ring.
+     */
+    public EntitySnapshot get(int tick) {
+        if (tick == Protocol.NO_TICK) {
+            return null;
+        }
+        EntitySnapshot snapshot = snapshots[Math.floorMod(tick, snapshots.length)];
+        return snapshot.getTick() == tick ? snapshot : null;
+    }
+}
@@ -0,0 +1,274 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.world.Terrain;
+import pepse.world.TerrainEdits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A connection to a {@link WorldServer}, holding the client's view of the world: the terrain, regenerated
+ * from the seed the server sent, with the edits of every chunk in the client's interest applied, and the
+ * entities of the latest snapshot.
+ * The client never blocks once connected: {@link #poll()} handles whatever arrived, and
+ * {@link #sendInput(int)} queues the input for the server, acknowledging the latest snapshot so the server
+ * sends the next ones as deltas against it. Many clients may therefore be driven by a single thread.
+ * <p>
+ * Like the {@link WorldServer}, this is a headless prototype: the game itself has no client mode yet, so
+ * the client's view is not rendered, and the chunk listener is only used by
+ * {@link pepse.tools.NetworkLoadTest}.
+ * @author Aron Isaacs
+ */
+public class WorldClient implements Closeable {
+    private static final int SNAPSHOT_HISTORY = 32;
+    private static final int WINDOW_WIDTH = 1024;
+    private static final int INPUT_BYTES = Integer.BYTES + Protocol.INPUT_LENGTH;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.FRAME_BYTES + Protocol.MAX_MESSAGE_BYTES);
+    private final ByteBuffer out = ByteBuffer.allocate(16 * INPUT_BYTES);
+    private final SnapshotRing snapshots = new SnapshotRing(SNAPSHOT_HISTORY);
+    // The revision of every chunk of the interest, by chunk index.
+    private final Map<Integer, Integer> chunkRevisions = new HashMap<>();
+    private Terrain terrain;
+    private int avatarId;
+    private int seed;
+    private int ticksPerSecond;
+    private EntitySnapshot latest;
+    private IntConsumer chunkListener;
+    private long bytesReceived;
+    private long snapshotsReceived;
+
+    /*
+     * Wraps a connected channel.
+     */
+    private WorldClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Connects to a server. Connecting blocks; everything afterwards does not.
+     * @param address The server's address.
+     * @return The connected client; it is ready once the server's greeting was polled.
+     * @throws IOException if the server cannot be reached.
+     */
+    public static WorldClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        return new WorldClient(channel);
+    }
+
+    /**
+     * Sets the listener notified with the index of every chunk whose edits arrived or were dropped, e.g. to
+     * regenerate the chunk's blocks.
+     * @param chunkListener The listener, or null for none.
+     */
+    public void setChunkListener(IntConsumer chunkListener) {
+        this.chunkListener = chunkListener;
+    }
+
+    /**
+     * Handles every whole message the server sent since the last poll.
+     * @throws IOException if the connection failed or the server sent something invalid.
+     */
+    public void poll() throws IOException {
+        int read;
+        while ((read = channel.read(in)) > 0) {
+            bytesReceived += read;
+            in.flip();
+            while (Protocol.hasMessage(in)) {
+                int end = in.position() + Integer.BYTES + in.getInt();
+                handle(in.get());
+                in.position(end);
+            }
+            in.compact();
+        }
+        if (read < 0) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /*
+     * Handles one message, whose type was just read.
+     */
+    private void handle(byte type) throws ProtocolException {
+        switch (type) {
+            case Protocol.HELLO:
+                avatarId = in.getInt();
+                seed = in.getInt();
+                int windowHeight = in.getInt();
+                ticksPerSecond = in.getInt();
+                terrain = new Terrain(new Vector2(WINDOW_WIDTH, windowHeight), seed);
+                break;
+            case Protocol.CHUNK:
+                readChunk();
+                break;
+            case Protocol.DROP_CHUNK:
+                int chunk = in.getInt();
+                chunkRevisions.remove(chunk);
+                terrain.getEdits().clearChunk(chunk);
+                notifyChunk(chunk);
+                break;
+            case Protocol.SNAPSHOT:
+                int tick = in.getInt();
+                int baseTick = in.getInt();
+                EntitySnapshot base = snapshots.get(baseTick);
+                if (base == null && baseTick != Protocol.NO_TICK) {
+                    throw new ProtocolException("Snapshot " + tick + " is based on unknown snapshot " + baseTick);
+                }
+                EntitySnapshot snapshot = snapshots.slotFor(tick);
+                snapshot.readDelta(in, tick, base);
+                latest = snapshot;
+                snapshotsReceived++;
+                break;
+            default:
+                throw new ProtocolException("Unexpected message type " + type);
+        }
+    }
+
+    /*
+     * Replaces the edits of a chunk with those the server sent.
+     */
+    private void readChunk() {
+        int chunk = in.getInt();
+        int revision = in.getInt();
+        int count = in.getShort() & 0xFFFF;
+        TerrainEdits edits = terrain.getEdits();
+        edits.clearChunk(chunk);
+        for (int i = 0; i < count; i++) {
+            long key = in.getLong();
+            edits.setEdit(TerrainEdits.columnOf(key), TerrainEdits.rowOf(key), in.get());
+        }
+        chunkRevisions.put(chunk, revision);
+        notifyChunk(chunk);
+    }
+
+    /*
+     * Notifies the chunk listener, if there is one.
+     */
+    private void notifyChunk(int chunk) {
+        if (chunkListener != null) {
+            chunkListener.accept(chunk);
+        }
+    }
+
+    /**
+     * Sends the buttons held to the server, acknowledging the latest snapshot received. Input that the
+     * socket does not take at once is kept and sent before later input.
+     * @param buttons The {@code Protocol.BUTTON_*} flags of the buttons held.
+     * @throws IOException if the connection failed.
+     */
+    public void sendInput(int buttons) throws IOException {
+        if (out.remaining() >= INPUT_BYTES) {
+            int start = Protocol.beginMessage(out, Protocol.INPUT);
+            out.putInt(latest == null ? Protocol.NO_TICK : latest.getTick());
+            out.put((byte) buttons);
+            Protocol.endMessage(out, start);
+        }
+        out.flip();
+        channel.write(out);
+        out.compact();
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException if the connection cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns whether the server's greeting arrived, so the world can be generated.
+     * @return true once the terrain is available.
+     */
+    public boolean isReady() {
+        return terrain != null;
+    }
+
+    /**
+     * Returns the client's view of the terrain, with the edits of the chunks in its interest.
+     * @return The terrain, or null before the client is ready.
+     */
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * Returns the entity id of the client's own avatar.
+     * @return The avatar's id.
+     */
+    public int getAvatarId() {
+        return avatarId;
+    }
+
+    /**
+     * Returns the seed of the world served.
+     * @return The seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the rate at which the server sends snapshots.
+     * @return The server's ticks per second.
+     */
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    /**
+     * Returns the entities of the latest snapshot received.
+     * @return The snapshot, or null if none was received yet.
+     */
+    public EntitySnapshot getSnapshot() {
+        return latest;
+    }
+
+    /**
+     * Returns the revision of a chunk in the client's interest.
+     * @param chunkIndex The index of the chunk.
+     * @return The revision, or -1 if the chunk is not held.
+     */
+    public int chunkRevision(int chunkIndex) {
+        return chunkRevisions.getOrDefault(chunkIndex, -1);
+    }
+
+    /**
+     * Passes the index of every chunk the client holds.
+     * @param consumer Receives the chunk indices.
+     */
+    public void forEachChunk(IntConsumer consumer) {
+        for (int chunk : chunkRevisions.keySet()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    /**
+     * Returns the number of bytes received from the server.
+     * @return The bytes received.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of snapshots received.
+     * @return The snapshot count.
+     */
+    public long getSnapshotsReceived() {
+        return snapshotsReceived;
+    }
+}
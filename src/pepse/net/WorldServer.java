@@ -0,0 +1,659 @@
+package pepse.net;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.world.Avatar;
+import pepse.world.Terrain;
+import pepse.world.WorldClock;
+import pepse.world.infiniteworld.ChunkManager;
+import pepse.world.trees.Flora;
+import pepse.world.trees.Fruit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * An authoritative world server: it owns the terrain and its edits, the fruits and every client's avatar,
+ * simulates them at a fixed tick rate, and streams to each client only what is in its interest, the
+ * window of chunks around the client's avatar.
+ * <ul>
+ *     <li>Chunks are never sent as objects: the client regenerates the terrain from the seed it received
+ *     on connection, so a chunk costs its index, a revision number and the player's edits in it. A chunk
+ *     is sent again only when it is edited.</li>
+ *     <li>Entities (avatars and fruits) are sent every tick as a delta against the last snapshot the
+ *     client acknowledged, so idle entities cost nothing.</li>
+ *     <li>Fruit chunks are streamed by a {@link ChunkManager} whose viewers are all the avatars: a chunk
+ *     shared by several clients is generated once, and eaten fruits keep counting down while nobody is
+ *     near.</li>
+ * </ul>
+ * The server runs on its own thread with a single non-blocking selector, and is not otherwise
+ * thread-safe: its world may only be inspected once it is closed.
+ * <p>
+ * This is a headless prototype of the multiplayer server. The game does not connect to it yet; only
+ * {@link pepse.tools.NetworkLoadTest} drives it with bot clients. Its avatars are kinematic stand-ins with
+ * the game's speeds and energy costs, not the game's {@link Avatar} physics: they do not collide with
+ * blocks beside them, and their jumps are not the game's jumps.
+ * <p>
+ * Usage: {@code java pepse.net.WorldServer <port> <seed> [windowHeight]}
+ * @author Aron Isaacs
+ */
+public class WorldServer implements Closeable {
+    /** The number of simulation ticks per second. */
+    public static final int TICKS_PER_SECOND = 20;
+    /** The number of chunks on each side of an avatar that are in its client's interest. */
+    public static final int INTEREST_CHUNKS = 3;
+
+    private static final float TICK_SECONDS = 1f / TICKS_PER_SECOND;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+    // A chunk is dropped only once it is this many chunks outside the interest, so an avatar pacing along a
+    // chunk boundary does not make it drop and resend the same chunks.
+    private static final int DROP_MARGIN_CHUNKS = 1;
+    private static final int MAX_CHUNKS_PER_TICK = 4;
+    private static final int SNAPSHOT_HISTORY = 32;
+    private static final int MAX_SNAPSHOT_ENTITIES = 2048;
+    // Messages queued for a client that reads too slowly; past this, its ticks are skipped.
+    private static final int MAX_PENDING_BYTES = 4 * Protocol.MAX_MESSAGE_BYTES;
+    private static final int CONNECTION_BACKLOG = 256;
+    private static final int DEFAULT_WINDOW_HEIGHT = 768;
+    private static final int WINDOW_WIDTH = 1024;
+    private static final BiConsumer<GameObject, Integer> NO_GAME = (gameObject, layer) -> { };
+
+    /*
+     * A connected client and its avatar.
+     */
+    private static class Session {
+        private final SocketChannel channel;
+        private final int avatarId;
+        private final ByteBuffer in = ByteBuffer.allocate(Protocol.FRAME_BYTES + Protocol.MAX_MESSAGE_BYTES);
+        private final ByteBuffer out = ByteBuffer.allocate(MAX_PENDING_BYTES);
+        private final SnapshotRing sentSnapshots = new SnapshotRing(SNAPSHOT_HISTORY);
+        // The revision of every chunk of the client's interest it was sent, by chunk index.
+        private final Map<Integer, Integer> sentChunks = new HashMap<>();
+        private SelectionKey key;
+        private float x;
+        private float y;
+        private float velocityY;
+        private float energy = Avatar.MAX_ENERGY;
+        private boolean facesLeft;
+        private int buttons;
+        // Edit buttons pressed since the last tick, so a tap shorter than a tick is not lost.
+        private int pressedButtons;
+        private int ackTick = Protocol.NO_TICK;
+
+        private Session(SocketChannel channel, int avatarId) {
+            this.channel = channel;
+            this.avatarId = avatarId;
+        }
+
+        private float centerX() {
+            return x + Avatar.AVATAR_SIZE / 2;
+        }
+    }
+
+    private final int seed;
+    private final int windowHeight;
+    private final Terrain terrain;
+    private final ChunkManager<FruitChunk> fruits;
+    private final WorldClock worldClock = new WorldClock();
+    private final List<Session> sessions = new ArrayList<>();
+    // The revision of every edited chunk, by chunk index; chunks never edited are at revision 0.
+    private final Map<Integer, Integer> chunkRevisions = new HashMap<>();
+    private float[] viewerXs = new float[16];
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+    private int tick;
+    private int nextClientNumber;
+    // Statistics, written by the server thread only.
+    private volatile long tickCount;
+    private volatile long totalTickNanos;
+    private volatile long maxTickNanos;
+    private volatile long bytesSent;
+    private volatile long fullSnapshots;
+    private volatile long deltaSnapshots;
+    private volatile long chunkMessages;
+    private volatile long skippedSends;
+
+    /**
+     * Creates a server for the given world. It does not accept connections until started.
+     * @param seed The world seed.
+     * @param windowHeight The window height the world is generated for, which sets the base ground height.
+     */
+    public WorldServer(int seed, int windowHeight) {
+        this.seed = seed;
+        this.windowHeight = windowHeight;
+        this.terrain = new Terrain(new Vector2(WINDOW_WIDTH, windowHeight), seed);
+        Flora flora = new Flora(seed, terrain::groundHeightAt, terrain::treeChanceAt);
+        this.fruits = new ChunkManager<>("server fruits", CHUNK_SIZE, INTEREST_CHUNKS, INTEREST_CHUNKS,
+                (left, right) -> FruitChunk.place(flora, terrain::groundHeightAt, left));
+        fruits.setWorldClock(worldClock);
+    }
+
+    /**
+     * Runs a server until the process is killed.
+     * @param args The port, the seed, and optionally the window height the clients run with.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: WorldServer <port> <seed> [windowHeight]");
+            System.exit(2);
+        }
+        int windowHeight = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WINDOW_HEIGHT;
+        WorldServer server = new WorldServer(Integer.parseInt(args[1]), windowHeight);
+        int port = server.start(Integer.parseInt(args[0]));
+        System.out.printf("Serving world %d on port %d%n", server.seed, port);
+    }
+
+    /**
+     * Binds the server and starts its thread.
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The port listened on.
+     * @throws IOException if the port cannot be bound.
+     */
+    public int start(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), CONNECTION_BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "world-server");
+        thread.start();
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server, disconnects every client and waits for the server thread to finish.
+     * @throws IOException if the server cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Session session : sessions) {
+            session.channel.close();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    /*
+     * The server loop: serves the network between ticks, and ticks at a fixed rate. A tick that runs late
+     * is not made up for by ticking faster afterwards.
+     */
+    private void run() {
+        long nextTick = System.nanoTime();
+        try {
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                } else {
+                    selector.selectNow();
+                }
+                serveNetwork();
+                long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick();
+                    long nanos = System.nanoTime() - now;
+                    tickCount++;
+                    totalTickNanos += nanos;
+                    maxTickNanos = Math.max(maxTickNanos, nanos);
+                    nextTick = Math.max(nextTick + TICK_NANOS, now);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("World server stopped: " + e);
+        }
+    }
+
+    /*
+     * Accepts new clients, reads the input of the others, and writes what is pending to the slow ones.
+     */
+    private void serveNetwork() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                while (accept()) {
+                    // Every waiting client is accepted at once.
+                }
+                continue;
+            }
+            Session session = (Session) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(session);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(session);
+                }
+            } catch (IOException | RuntimeException e) {
+                // A failed connection or a malformed message only costs its own client.
+                disconnect(session);
+            }
+        }
+    }
+
+    /*
+     * Accepts a client, spawns its avatar at the world's origin and greets it. A client whose connection
+     * fails while it is being greeted is dropped.
+     * Returns false if no client was waiting.
+     */
+    private boolean accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return false;
+        }
+        Session session = new Session(channel, avatarEntityId(nextClientNumber++));
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            session.y = terrain.surfaceHeightAt(session.centerX()) - Avatar.AVATAR_SIZE;
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            sessions.add(session);
+            int start = Protocol.beginMessage(session.out, Protocol.HELLO);
+            session.out.putInt(session.avatarId);
+            session.out.putInt(seed);
+            session.out.putInt(windowHeight);
+            session.out.putInt(TICKS_PER_SECOND);
+            Protocol.endMessage(session.out, start);
+            flush(session);
+        } catch (IOException e) {
+            disconnect(session);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entity id of the avatar of a client.
+     * Fruit ids end with their order on their tree, which never reaches 31, so avatar ids never collide
+     * with them.
+     * @param clientNumber The order in which the client connected.
+     * @return The avatar's entity id.
+     */
+    static int avatarEntityId(int clientNumber) {
+        return clientNumber << 5 | 31;
+    }
+
+    /*
+     * Reads and handles every whole message a client sent. A message of another type than INPUT, or of
+     * another length, is a protocol error.
+     */
+    private void read(Session session) throws IOException {
+        if (session.channel.read(session.in) < 0) {
+            throw new ClosedChannelException();
+        }
+        session.in.flip();
+        while (Protocol.hasMessage(session.in)) {
+            int length = session.in.getInt();
+            int end = session.in.position() + length;
+            byte type = session.in.get();
+            if (type != Protocol.INPUT) {
+                throw new ProtocolException("Unexpected message type " + type);
+            }
+            if (length != Protocol.INPUT_LENGTH) {
+                throw new ProtocolException("Invalid input message length " + length);
+            }
+            int ackTick = session.in.getInt();
+            int buttons = session.in.get();
+            if (ackTick > session.ackTick && ackTick <= tick) {
+                session.ackTick = ackTick;
+            }
+            session.pressedButtons |= buttons & ~session.buttons;
+            session.buttons = buttons;
+            session.in.position(end);
+        }
+        session.in.compact();
+    }
+
+    /*
+     * Writes as much of a client's pending messages as the socket takes, and waits for the socket to be
+     * writable again if some are left.
+     */
+    private void flush(Session session) throws IOException {
+        session.out.flip();
+        bytesSent += session.channel.write(session.out);
+        boolean pending = session.out.hasRemaining();
+        session.out.compact();
+        session.key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /*
+     * Forgets a client whose connection failed or closed; its avatar leaves the world.
+     */
+    private void disconnect(Session session) {
+        sessions.remove(session);
+        if (session.key != null) {
+            session.key.cancel();
+        }
+        try {
+            session.channel.close();
+        } catch (IOException ignored) {
+            // The connection is gone either way.
+        }
+    }
+
+    /*
+     * Advances the world by one tick, then streams it to every client.
+     */
+    private void tick() {
+        tick++;
+        worldClock.advance(TICK_SECONDS);
+        for (Session session : sessions) {
+            moveAvatar(session);
+            editTerrain(session);
+        }
+        if (viewerXs.length < sessions.size()) {
+            viewerXs = new float[sessions.size() * 2];
+        }
+        for (int i = 0; i < sessions.size(); i++) {
+            viewerXs[i] = sessions.get(i).centerX();
+        }
+        fruits.update(viewerXs, sessions.size(), NO_GAME, NO_GAME);
+        fruits.forEachLoaded(fruitChunk -> fruitChunk.update(TICK_SECONDS));
+        for (Session session : sessions) {
+            eatFruits(session);
+        }
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            Session session = sessions.get(i);
+            if (session.out.remaining() < 2 * Protocol.MAX_MESSAGE_BYTES) {
+                skippedSends++;
+                continue;
+            }
+            streamChunks(session);
+            sendSnapshot(session);
+            try {
+                flush(session);
+            } catch (IOException e) {
+                disconnect(session);
+            }
+        }
+    }
+
+    /*
+     * Moves an avatar by its client's buttons, with the game's speeds and energy costs. Server avatars are
+     * kinematic: they walk on the ground as edited by every client and fall back to it after a jump.
+     */
+    private void moveAvatar(Session session) {
+        int direction = ((session.buttons & Protocol.BUTTON_RIGHT) != 0 ? 1 : 0)
+                - ((session.buttons & Protocol.BUTTON_LEFT) != 0 ? 1 : 0);
+        if (direction != 0 && session.energy >= Avatar.ENERGY_LOSS_MOVE) {
+            session.x += direction * Avatar.VELOCITY_X * TICK_SECONDS;
+            session.energy = Math.max(0, session.energy - Avatar.ENERGY_LOSS_MOVE * TICK_SECONDS);
+            session.facesLeft = direction < 0;
+        } else {
+            direction = 0;
+        }
+        float ground = terrain.surfaceHeightAt(session.centerX()) - Avatar.AVATAR_SIZE;
+        boolean onGround = session.velocityY >= 0 && session.y >= ground;
+        if (onGround && (session.buttons & Protocol.BUTTON_JUMP) != 0
+                && session.energy >= Avatar.ENERGY_LOSS_JUMP) {
+            session.velocityY = Avatar.VELOCITY_Y;
+            session.energy -= Avatar.ENERGY_LOSS_JUMP;
+            onGround = false;
+        }
+        if (onGround) {
+            session.y = ground;
+            session.velocityY = 0;
+            if (direction == 0) {
+                session.energy = Math.min(Avatar.MAX_ENERGY,
+                        session.energy + Avatar.ENERGY_GAIN_RATE * TICK_SECONDS);
+            }
+            return;
+        }
+        session.velocityY += Avatar.GRAVITY * TICK_SECONDS;
+        session.y += session.velocityY * TICK_SECONDS;
+        if (session.y >= ground) {
+            session.y = ground;
+            session.velocityY = 0;
+        }
+    }
+
+    /*
+     * Digs below, or places a block in front of, an avatar whose client pressed the matching button, as the
+     * game does, and bumps the revision of the edited chunk so it is sent again.
+     */
+    private void editTerrain(Session session) {
+        float feetY = session.y + Avatar.AVATAR_SIZE;
+        if ((session.pressedButtons & Protocol.BUTTON_DIG) != 0) {
+            Vector2 target = new Vector2(session.centerX(), feetY + GAME_BLOCK_SIZE / 2f);
+            if (terrain.dig(target)) {
+                chunkRevisions.merge(chunkContaining(target.x()), 1, Integer::sum);
+            }
+        }
+        if ((session.pressedButtons & Protocol.BUTTON_PLACE) != 0) {
+            float side = session.facesLeft ? -1 : 1;
+            Vector2 target = new Vector2(
+                    session.centerX() + side * (Avatar.AVATAR_SIZE / 2 + GAME_BLOCK_SIZE / 2f),
+                    feetY - GAME_BLOCK_SIZE / 2f);
+            if (terrain.place(target)) {
+                chunkRevisions.merge(chunkContaining(target.x()), 1, Integer::sum);
+            }
+        }
+        session.pressedButtons = 0;
+    }
+
+    /*
+     * Lets an avatar eat the fruits it touches in its own and the neighbouring chunks.
+     */
+    private void eatFruits(Session session) {
+        int chunk = chunkContaining(session.centerX());
+        for (int c = chunk - 1; c <= chunk + 1; c++) {
+            for (FruitChunk fruitChunk : fruits.objectsInChunk(c)) {
+                for (int i = 0; i < fruitChunk.size(); i++) {
+                    if (fruitChunk.isAvailable(i) && touches(session, fruitChunk.xAt(i), fruitChunk.yAt(i))) {
+                        fruitChunk.eat(i, Fruit.RESPAWN_TIME_SECONDS);
+                        session.energy = Math.min(Avatar.MAX_ENERGY, session.energy + Fruit.ENERGY_VALUE);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns whether an avatar overlaps the fruit whose top-left corner is given.
+     */
+    private static boolean touches(Session session, float fruitX, float fruitY) {
+        return fruitX < session.x + Avatar.AVATAR_SIZE && session.x < fruitX + GAME_BLOCK_SIZE
+                && fruitY < session.y + Avatar.AVATAR_SIZE && session.y < fruitY + GAME_BLOCK_SIZE;
+    }
+
+    /*
+     * Sends the chunks of a client's interest it does not hold at their current revision, nearest first and
+     * a few per tick, and tells it to drop those that left its interest. A chunk kept just outside the
+     * interest is dropped as well once it is edited, rather than sent again.
+     */
+    private void streamChunks(Session session) {
+        int center = chunkContaining(session.centerX());
+        Iterator<Map.Entry<Integer, Integer>> sent = session.sentChunks.entrySet().iterator();
+        while (sent.hasNext()) {
+            Map.Entry<Integer, Integer> entry = sent.next();
+            int chunk = entry.getKey();
+            int distance = Math.abs(chunk - center);
+            boolean stale = !entry.getValue().equals(chunkRevisions.getOrDefault(chunk, 0));
+            if (distance > INTEREST_CHUNKS + DROP_MARGIN_CHUNKS || distance > INTEREST_CHUNKS && stale) {
+                sent.remove();
+                int start = Protocol.beginMessage(session.out, Protocol.DROP_CHUNK);
+                session.out.putInt(chunk);
+                Protocol.endMessage(session.out, start);
+            }
+        }
+        int sentThisTick = 0;
+        for (int distance = 0; distance <= INTEREST_CHUNKS; distance++) {
+            for (int chunk = center - distance; chunk <= center + distance; chunk += Math.max(1, 2 * distance)) {
+                // Room is left for the snapshot that follows.
+                if (sentThisTick == MAX_CHUNKS_PER_TICK
+                        || session.out.remaining() < 2 * Protocol.MAX_MESSAGE_BYTES) {
+                    return;
+                }
+                int revision = chunkRevisions.getOrDefault(chunk, 0);
+                Integer sentRevision = session.sentChunks.get(chunk);
+                if (sentRevision == null || sentRevision != revision) {
+                    writeChunk(session.out, chunk, revision);
+                    session.sentChunks.put(chunk, revision);
+                    chunkMessages++;
+                    sentThisTick++;
+                }
+            }
+        }
+    }
+
+    /*
+     * Writes a chunk message: the chunk index, its revision and its edits.
+     */
+    private void writeChunk(ByteBuffer out, int chunk, int revision) {
+        int start = Protocol.beginMessage(out, Protocol.CHUNK);
+        out.putInt(chunk);
+        out.putInt(revision);
+        int countAt = out.position();
+        out.putShort((short) 0);
+        int[] count = new int[1];
+        terrain.getEdits().forEachInChunk(chunk, (key, edit) -> {
+            out.putLong(key);
+            out.put(edit);
+            count[0]++;
+        });
+        out.putShort(countAt, (short) count[0]);
+        Protocol.endMessage(out, start);
+    }
+
+    /*
+     * Sends the entities in a client's interest, as a delta against the last snapshot it acknowledged if
+     * that one is still kept, or in full otherwise.
+     */
+    private void sendSnapshot(Session session) {
+        EntitySnapshot snapshot = session.sentSnapshots.slotFor(tick);
+        int center = chunkContaining(session.centerX());
+        for (Session other : sessions) {
+            if (Math.abs(chunkContaining(other.centerX()) - center) <= INTEREST_CHUNKS) {
+                snapshot.add(other.avatarId, EntitySnapshot.KIND_AVATAR, other.x, other.y, other.energy);
+            }
+        }
+        for (int chunk = center - INTEREST_CHUNKS; chunk <= center + INTEREST_CHUNKS; chunk++) {
+            for (FruitChunk fruitChunk : fruits.objectsInChunk(chunk)) {
+                for (int i = 0; i < fruitChunk.size() && snapshot.size() < MAX_SNAPSHOT_ENTITIES; i++) {
+                    snapshot.add(fruitChunk.idAt(i), EntitySnapshot.KIND_FRUIT, fruitChunk.xAt(i),
+                            fruitChunk.yAt(i), fruitChunk.isAvailable(i) ? 1 : 0);
+                }
+            }
+        }
+        snapshot.sortById();
+        // Looked up after the slot was taken, so a base as old as the ring is never used.
+        EntitySnapshot base = session.sentSnapshots.get(session.ackTick);
+        int start = Protocol.beginMessage(session.out, Protocol.SNAPSHOT);
+        session.out.putInt(tick);
+        session.out.putInt(base == null ? Protocol.NO_TICK : base.getTick());
+        snapshot.writeDelta(session.out, base);
+        Protocol.endMessage(session.out, start);
+        if (base == null) {
+            fullSnapshots++;
+        } else {
+            deltaSnapshots++;
+        }
+    }
+
+    /*
+     * Returns the index of the chunk whose bounds contain the given x-coordinate.
+     */
+    private static int chunkContaining(float x) {
+        return Math.floorDiv((int) Math.floor(x), CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the terrain the server owns, including the edits of every client.
+     * Only safe to inspect once the server is closed.
+     * @return The terrain.
+     */
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * Returns the number of ticks run.
+     * @return The tick count.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the average time a tick took to simulate and stream the world.
+     * @return The average tick time, in nanoseconds.
+     */
+    public long getAverageTickNanos() {
+        return tickCount == 0 ? 0 : totalTickNanos / tickCount;
+    }
+
+    /**
+     * Returns the longest time a tick took.
+     * @return The longest tick time, in nanoseconds.
+     */
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    /**
+     * Returns the number of bytes written to every client.
+     * @return The bytes sent.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the number of snapshots sent in full, for lack of an acknowledged base.
+     * @return The full snapshot count.
+     */
+    public long getFullSnapshots() {
+        return fullSnapshots;
+    }
+
+    /**
+     * Returns the number of snapshots sent as deltas.
+     * @return The delta snapshot count.
+     */
+    public long getDeltaSnapshots() {
+        return deltaSnapshots;
+    }
+
+    /**
+     * Returns the number of chunk messages sent.
+     * @return The chunk message count.
+     */
+    public long getChunkMessages() {
+        return chunkMessages;
+    }
+
+    /**
+     * Returns the number of times a client was skipped for a tick because it read too slowly.
+     * @return The skipped send count.
+     */
+    public long getSkippedSends() {
+        return skippedSends;
+    }
+}
@@ -0,0 +1,295 @@
+package pepse.tools;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.util.memory.MemoryBudget;
+import pepse.world.Avatar;
+import pepse.world.Terrain;
+import pepse.world.WorldClock;
+import pepse.world.creatures.Creatures;
+import pepse.world.daynight.DayPhase;
+import pepse.world.events.WorldEvents;
+import pepse.world.hud.*;
+import pepse.world.infiniteworld.AdaptiveLoadWindow;
+import pepse.world.infiniteworld.Scrollable;
+import pepse.world.trees.Flora;
+import pepse.world.water.Water;
+import pepse.world.weather.ParticleSystem;
+import pepse.world.weather.Weather;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A steady-state allocation check for the world's per-frame hot paths.
+ * Runs the world headless (no window: the game objects are kept in a plain list and updated directly)
+ * for a number of frames, once with the avatar idle and once with it running, and measures the bytes
+ * allocated per frame with the thread allocation counter, attributed to call sites. The frame calls the
+ * game's own per-frame methods in the order {@code PepseGameManager.update} does: the world clock and day
+ * phase, the update of each kind of game object, the water, the creatures, the weather, the HUD (drawn into
+ * an off-screen image), the adaptive load window, the chunk window of each scrollable around the viewers,
+ * the memory budget, and the event bus. A full pool of raindrops is updated as well, as a worst case.
+ * <p>
+ * The avatar is not a game object here: it needs the window's image reader, and without the engine's
+ * collisions it would fall through the ground. It is stood in for by a point running along the surface,
+ * which publishes its energy on the event bus; {@code Avatar.update} and the pickup system, which collides
+ * it with fruits, are not measured.
+ * <p>
+ * Generating and unloading chunks necessarily allocates, so a scrollable's update on a frame that loaded or
+ * unloaded chunks is counted as chunk streaming instead, and reported per streamed chunk with a budget of
+ * its own; every other byte counts towards the steady-state budget per frame.
+ * Exits with status 1, listing the call sites that allocate the most, if a scenario exceeds a budget.
+ * <p>
+ * Usage: {@code java pepse.tools.AllocationBudget [frames] [idleBudgetBytes] [runningBudgetBytes]
+ * [streamingBudgetBytes]}
+ * @author Aron Isaacs
+ */
+public class AllocationBudget {
+    private static final int SEED = 5;
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1024, 768);
+    private static final float FRAME_TIME = 1 / 60f;
+    private static final float RUNNING_VELOCITY = 400;
+    // Long enough for the JIT to compile the hot paths; until then, allocations it would eliminate (e.g. in
+    // Java2D's image copies) are counted.
+    private static final int WARMUP_FRAMES = 3000;
+    private static final int DEFAULT_FRAMES = 1200;
+    // Bytes per frame, not counting chunk streaming.
+    private static final long DEFAULT_IDLE_BUDGET = 512;
+    private static final long DEFAULT_RUNNING_BUDGET = 1024;
+    // Bytes per chunk loaded or unloaded.
+    private static final long DEFAULT_STREAMING_BUDGET = 512 * 1024;
+    private static final int TOP_SITES = 10;
+    private static final int RAIN_CAPACITY = 4000;
+    private static final float RAIN_RATE = 1500;
+    private static final Font HUD_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 16);
+    private static final float CYCLE_LENGTH = 15;
+    private static final int CREATURE_COUNT = 48;
+    private static final long MEMORY_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<GameObject> liveObjects = new ArrayList<>();
+    private final List<Scrollable<?>> scrollables = new ArrayList<>();
+    private final List<String> windowSites = new ArrayList<>();
+    private final List<String> streamingSites = new ArrayList<>();
+    private final BiConsumer<GameObject, Integer> addGameObject = (obj, layer) -> liveObjects.add(obj);
+    private final BiConsumer<GameObject, Integer> removeGameObject = (obj, layer) -> liveObjects.remove(obj);
+    // Bytes allocated by each call site, in insertion order.
+    private final Map<String, long[]> siteBytes = new LinkedHashMap<>();
+    private final WorldEvents events = new WorldEvents();
+    private final WorldClock worldClock = new WorldClock();
+    private final Terrain terrain;
+    private final Water water;
+    private final Creatures creatures;
+    private final Weather weather;
+    private final ParticleSystem rain;
+    private final AdaptiveLoadWindow loadWindow;
+    private final MemoryBudget memoryBudget = new MemoryBudget(MEMORY_BUDGET_BYTES);
+    private final float[] viewerXs = new float[1];
+    private DayPhase dayPhase;
+    private float avatarX;
+    private float energy = 100;
+    // The chunks loaded and unloaded, as counted from the event bus.
+    private long streamedChunks;
+    private Hud hud;
+    private FrameRateElement frameRate;
+    private CoordinatesElement coordinates;
+    private ClockElement clock;
+    private Graphics2D screen;
+
+    /*
+     * Builds a headless world as the game does: terrain, flora and water streamed through an adaptive load
+     * window under a memory budget, creatures and weather.
+     */
+    private AllocationBudget() {
+        terrain = new Terrain(WINDOW_DIMENSIONS, SEED);
+        water = new Water(SEED, terrain::surfaceHeightAt);
+        scrollables.add(terrain);
+        scrollables.add(new Flora(SEED, terrain::groundHeightAt, terrain::treeChanceAt));
+        scrollables.add(water);
+        loadWindow = new AdaptiveLoadWindow(Scrollable.CHUNK_SIZE, WINDOW_DIMENSIONS.x());
+        for (Scrollable<?> scrollable : scrollables) {
+            loadWindow.attach(scrollable);
+            scrollable.setWorldClock(worldClock);
+            scrollable.setEvents(events);
+            scrollable.registerMemory(memoryBudget);
+            windowSites.add(scrollable.getClass().getSimpleName() + " chunk window");
+            streamingSites.add(scrollable.getClass().getSimpleName() + " chunk streaming");
+        }
+        memoryBudget.register(loadWindow);
+        creatures = new Creatures(SEED, terrain::surfaceHeightAt, CREATURE_COUNT);
+        weather = new Weather(SEED, terrain::surfaceHeightAt, WINDOW_DIMENSIONS, events);
+        weather.addToGame(addGameObject);
+        rain = ParticleSystem.rain(RAIN_CAPACITY, terrain::surfaceHeightAt, WINDOW_DIMENSIONS, SEED);
+        rain.setSpawnRate(RAIN_RATE);
+        events.onChunkLoaded((name, chunk) -> streamedChunks++);
+        events.onChunkUnloaded((name, chunk) -> streamedChunks++);
+    }
+
+    /**
+     * Runs the idle and running scenarios and exits with status 1 if either exceeds its budgets.
+     * @param args optional: the number of measured frames, the idle and running budgets (bytes per frame,
+     *             not counting chunk streaming) and the streaming budget (bytes per chunk loaded or unloaded).
+     */
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+        long idleBudget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_IDLE_BUDGET;
+        long runningBudget = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_RUNNING_BUDGET;
+        long streamingBudget = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_STREAMING_BUDGET;
+
+        boolean idleOk = new AllocationBudget().run("idle", 0, frames, idleBudget, streamingBudget);
+        boolean runningOk = new AllocationBudget().run("running", RUNNING_VELOCITY, frames, runningBudget,
+                streamingBudget);
+        if (!idleOk || !runningOk) {
+            System.exit(1);
+        }
+    }
+
+    /*
+     * Runs one scenario and prints its steady-state allocation per frame and its streaming allocation per
+     * chunk.
+     * @return true if the scenario stayed within both budgets.
+     */
+    private boolean run(String scenario, float velocityX, int frames, long budgetPerFrame,
+                        long budgetPerChunk) {
+        makeHud();
+        for (int frame = 0; frame < WARMUP_FRAMES + frames; frame++) {
+            if (frame == WARMUP_FRAMES) {
+                siteBytes.clear();
+                streamedChunks = 0;
+            }
+            avatarX += velocityX * FRAME_TIME;
+            energy = velocityX == 0 ? 100 : 100 - (frame % 100);
+            runFrame(velocityX);
+        }
+
+        long steady = 0;
+        long streaming = 0;
+        for (Map.Entry<String, long[]> site : siteBytes.entrySet()) {
+            if (streamingSites.contains(site.getKey())) {
+                streaming += site.getValue()[0];
+            } else {
+                steady += site.getValue()[0];
+            }
+        }
+        long perFrame = steady / frames;
+        long perChunk = streamedChunks == 0 ? 0 : streaming / streamedChunks;
+        boolean ok = perFrame <= budgetPerFrame && perChunk <= budgetPerChunk;
+        System.out.printf("%s: %d bytes/frame (budget %d), %d chunks streamed at %d bytes/chunk (budget %d) %s%n",
+                scenario, perFrame, budgetPerFrame, streamedChunks, perChunk, budgetPerChunk,
+                ok ? "OK" : "OVER BUDGET");
+        if (!ok) {
+            printTopSites(frames);
+        }
+        return ok;
+    }
+
+    /*
+     * Runs one headless frame in the order of PepseGameManager.update, attributing the bytes allocated to
+     * each call site. A scrollable's update counts as streaming if it loaded or unloaded chunks.
+     */
+    private void runFrame(float velocityX) {
+        float halfWidth = WINDOW_DIMENSIONS.x() / 2;
+        float screenTop = terrain.surfaceHeightAt(avatarX) - Avatar.AVATAR_SIZE / 2 - WINDOW_DIMENSIONS.y() / 2;
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        worldClock.advance(FRAME_TIME);
+        DayPhase phase = DayPhase.at(worldClock.now(), CYCLE_LENGTH);
+        if (phase != dayPhase) {
+            events.publishDayPhaseChanged(phase);
+            dayPhase = phase;
+        }
+        attribute("WorldClock + day phase", before);
+        for (int i = 0; i < liveObjects.size(); i++) {
+            GameObject obj = liveObjects.get(i);
+            before = threadBean.getCurrentThreadAllocatedBytes();
+            obj.update(FRAME_TIME);
+            attribute(obj.getTag(), before);
+        }
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        water.update(FRAME_TIME);
+        attribute("Water.update", before);
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        creatures.update(FRAME_TIME, avatarX, avatarX - halfWidth, avatarX + halfWidth, addGameObject,
+                removeGameObject);
+        attribute("Creatures.update", before);
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        weather.update(FRAME_TIME, avatarX - halfWidth, screenTop);
+        attribute("Weather.update", before);
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        rain.update(FRAME_TIME, avatarX - halfWidth, screenTop);
+        attribute("ParticleSystem.update (full pool)", before);
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        frameRate.frame(FRAME_TIME);
+        coordinates.setPosition(avatarX, 0);
+        clock.setTime(worldClock.now(), CYCLE_LENGTH);
+        hud.renderer().getRenderable().render(screen, hud.getTopLeftCorner(), hud.getDimensions(), 0, false,
+                false, 1);
+        attribute("HUD", before);
+
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        loadWindow.update(velocityX, FRAME_TIME);
+        attribute("AdaptiveLoadWindow.update", before);
+        viewerXs[0] = avatarX;
+        for (int i = 0; i < scrollables.size(); i++) {
+            long streamedBefore = streamedChunks;
+            before = threadBean.getCurrentThreadAllocatedBytes();
+            scrollables.get(i).updateAroundViewers(viewerXs, 1, addGameObject, removeGameObject);
+            // Counts the chunks this update loaded and unloaded.
+            events.drain();
+            attribute(streamedChunks == streamedBefore ? windowSites.get(i) : streamingSites.get(i), before);
+        }
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        memoryBudget.enforce();
+        attribute("MemoryBudget.enforce", before);
+        before = threadBean.getCurrentThreadAllocatedBytes();
+        events.publishEnergyChanged(null, energy);
+        events.drain();
+        attribute("WorldEvents.drain", before);
+    }
+
+    /*
+     * Creates the game's HUD elements, and the off-screen image standing in for the window they are drawn to.
+     */
+    private void makeHud() {
+        GlyphCache glyphs = new GlyphCache(HUD_FONT, Color.WHITE);
+        int line = glyphs.getHeight();
+        hud = new Hud(new Vector2(20, 20), new Vector2(200, 4 * line));
+        hud.add(new EnergyElement(0, 0, glyphs, 100, events));
+        frameRate = hud.add(new FrameRateElement(0, line, glyphs));
+        coordinates = hud.add(new CoordinatesElement(0, 2 * line, glyphs));
+        clock = hud.add(new ClockElement(0, 3 * line, glyphs));
+        screen = new BufferedImage((int) WINDOW_DIMENSIONS.x(), (int) WINDOW_DIMENSIONS.y(),
+                BufferedImage.TYPE_INT_RGB).createGraphics();
+    }
+
+    /*
+     * Adds the bytes allocated since the given counter value to the given call site.
+     */
+    private void attribute(String site, long allocatedBefore) {
+        long bytes = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        long[] total = siteBytes.get(site);
+        if (total == null) {
+            total = new long[1];
+            siteBytes.put(site, total);
+        }
+        total[0] += bytes;
+    }
+
+    /*
+     * Prints the call sites by decreasing allocation per frame.
+     */
+    private void printTopSites(int frames) {
+        List<Map.Entry<String, long[]>> sites = new ArrayList<>(siteBytes.entrySet());
+        sites.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (int i = 0; i < Math.min(TOP_SITES, sites.size()); i++) {
+            System.out.printf("    %-32s %d bytes/frame%n", sites.get(i).getKey(),
+                    sites.get(i).getValue()[0] / frames);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package pepse.tools;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.Terrain;
+import pepse.world.trees.Flora;
+import pepse.world.trees.Tree;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.WorldArchive.COLUMNS_PER_CHUNK;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * Guards world generation against unintended changes by hashing the generated content of a large range of
+ * chunks for several seeds and comparing the hashes with golden values recorded earlier.
+ * A chunk's hash covers the ground height of every column, the position of every block, and the position,
+ * size and kind of every object of every tree (trunk, leaves and fruits), as produced by the same
+ * {@code createInRange} calls the chunk managers make. The objects of a chunk are combined in any order, so
+ * generation may be reordered, but not changed. Chunks are hashed in segments on a pool of worker threads,
+ * each segment with its own terrain and flora (their noise caches are not thread-safe); the golden file
+ * holds one hash per segment, so a mismatch points at the chunks that changed.
+ * <p>
+ * The golden values of the current generation are kept in {@code golden-chunks.txt}; run {@code verify}
+ * against it after changing the generation code, and {@code record} only when the world is meant to change.
+ * Verification exits with status 1 if any segment differs.
+ * <p>
+ * Usage: {@code java pepse.tools.GoldenChecksums record <file> [chunksPerSeed] [threads] [seeds...]}, or
+ * {@code java pepse.tools.GoldenChecksums verify <file> [threads]}
+ * @author Aron Isaacs
+ */
+public class GoldenChecksums {
+    private static final int[] DEFAULT_SEEDS = {0, 1, 42, 20240101, -987654321};
+    private static final int DEFAULT_CHUNKS_PER_SEED = 8192;
+    private static final int SEGMENT_CHUNKS = 512;
+    // The window dimensions the game runs with by default; the ground height is a fraction of its height.
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1024, 768);
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /*
+     * A range of chunks of one world, and its hash.
+     */
+    private static class Segment {
+        private final int seed;
+        private final int fromChunk;
+        private final int toChunk;
+        private final long hash;
+
+        private Segment(int seed, int fromChunk, int toChunk, long hash) {
+            this.seed = seed;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.hash = hash;
+        }
+    }
+
+    private GoldenChecksums() {
+    }
+
+    /**
+     * Records the golden hashes, or verifies the current generation against them.
+     * @param args {@code record}, the golden file, and optionally the number of chunks per seed (centred on
+     *             the start of the world), the number of worker threads and the seeds; or {@code verify},
+     *             the golden file, and optionally the number of worker threads.
+     * @throws IOException if the golden file cannot be read or written.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2 || !(args[0].equals("record") || args[0].equals("verify"))) {
+            System.err.println("Usage: GoldenChecksums record <file> [chunksPerSeed] [threads] [seeds...]");
+            System.err.println("       GoldenChecksums verify <file> [threads]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args[0].equals("record")) {
+            int chunksPerSeed = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHUNKS_PER_SEED;
+            if (args.length > 3) {
+                threads = Integer.parseInt(args[3]);
+            }
+            int[] seeds = DEFAULT_SEEDS;
+            if (args.length > 4) {
+                seeds = new int[args.length - 4];
+                for (int i = 0; i < seeds.length; i++) {
+                    seeds[i] = Integer.parseInt(args[4 + i]);
+                }
+            }
+            record(file, seeds, chunksPerSeed, threads);
+        } else {
+            if (args.length > 2) {
+                threads = Integer.parseInt(args[2]);
+            }
+            if (!verify(file, threads)) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /*
+     * Hashes the chunk range of every seed and writes the hashes to the golden file.
+     */
+    private static void record(Path file, int[] seeds, int chunksPerSeed, int threads)
+            throws IOException, InterruptedException {
+        List<Segment> segments = new ArrayList<>();
+        int fromChunk = -chunksPerSeed / 2;
+        int toChunk = fromChunk + chunksPerSeed - 1;
+        for (int seed : seeds) {
+            for (int from = fromChunk; from <= toChunk; from += SEGMENT_CHUNKS) {
+                segments.add(new Segment(seed, from, Math.min(toChunk, from + SEGMENT_CHUNKS - 1), 0));
+            }
+        }
+        long[] hashes = hashAll(segments, threads);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("# seed fromChunk toChunk hash");
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                out.printf("%d %d %d %016x%n", segment.seed, segment.fromChunk, segment.toChunk, hashes[i]);
+            }
+        }
+        System.out.printf("Recorded %d segments to %s%n", segments.size(), file);
+    }
+
+    /*
+     * Hashes every segment listed in the golden file and reports those whose hash differs.
+     * @return whether every segment matched.
+     */
+    private static boolean verify(Path file, int threads) throws IOException, InterruptedException {
+        List<Segment> golden = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.trim().split("\\s+");
+            golden.add(new Segment(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), Long.parseUnsignedLong(fields[3], 16)));
+        }
+        long[] hashes = hashAll(golden, threads);
+        int mismatches = 0;
+        for (int i = 0; i < golden.size(); i++) {
+            Segment segment = golden.get(i);
+            if (hashes[i] != segment.hash) {
+                mismatches++;
+                System.out.printf("MISMATCH seed %d chunks %d..%d: expected %016x, got %016x%n", segment.seed,
+                        segment.fromChunk, segment.toChunk, segment.hash, hashes[i]);
+            }
+        }
+        System.out.printf("%d of %d segments match%n", golden.size() - mismatches, golden.size());
+        return mismatches == 0;
+    }
+
+    /*
+     * Hashes the segments on a pool of worker threads, reporting the throughput when done.
+     * @return the hash of each segment, by index.
+     */
+    private static long[] hashAll(List<Segment> segments, int threads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> done = new ExecutorCompletionService<>(pool);
+        long[] hashes = new long[segments.size()];
+        int chunks = 0;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                int index = i;
+                Segment segment = segments.get(i);
+                chunks += segment.toChunk - segment.fromChunk + 1;
+                done.submit(() -> {
+                    hashes[index] = hashSegment(segment);
+                    return index;
+                });
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                done.take().get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Chunk generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Hashed %d chunks in %.2f s on %d threads, %.0f chunks/s%n", chunks, seconds,
+                threads, chunks / seconds);
+        return hashes;
+    }
+
+    /*
+     * Hashes a segment of chunks, in order, with a terrain and flora of its own.
+     */
+    private static long hashSegment(Segment segment) {
+        Terrain terrain = new Terrain(WINDOW_DIMENSIONS, segment.seed);
+        Flora flora = new Flora(segment.seed, terrain::groundHeightAt, terrain::treeChanceAt);
+        long hash = mix(segment.seed, segment.fromChunk);
+        for (int chunk = segment.fromChunk; chunk <= segment.toChunk; chunk++) {
+            hash = mix(hash, hashChunk(terrain, flora, chunk));
+        }
+        return hash;
+    }
+
+    /*
+     * Hashes the content of one chunk: the heights of its columns in order, and its blocks and tree objects
+     * in any order.
+     */
+    private static long hashChunk(Terrain terrain, Flora flora, int chunk) {
+        int left = chunk * CHUNK_SIZE;
+        int right = left + CHUNK_SIZE - 1;
+        long hash = chunk;
+        for (int column = 0; column < COLUMNS_PER_CHUNK; column++) {
+            hash = mix(hash, Float.floatToIntBits(terrain.groundHeightAt(left + column * GAME_BLOCK_SIZE)));
+        }
+        List<Block> blocks = terrain.createInRange(left, right);
+        long blockSum = 0;
+        for (Block block : blocks) {
+            blockSum += hashObject(block, 0);
+        }
+        hash = mix(mix(hash, blocks.size()), blockSum);
+        List<Tree> trees = flora.createInRange(left, right);
+        long[] treeSum = new long[2];
+        for (Tree tree : trees) {
+            tree.addToGame((object, layer) -> {
+                treeSum[0] += hashObject(object, layer);
+                treeSum[1]++;
+            });
+        }
+        return mix(mix(mix(hash, trees.size()), treeSum[1]), treeSum[0]);
+    }
+
+    /*
+     * Hashes the kind, layer, position and size of a game object.
+     */
+    private static long hashObject(GameObject object, int layer) {
+        Vector2 topLeft = object.getTopLeftCorner();
+        Vector2 dimensions = object.getDimensions();
+        String tag = object.getTag();
+        long hash = mix(layer, tag == null ? 0 : tag.hashCode());
+        hash = mix(hash, Float.floatToIntBits(topLeft.x()));
+        hash = mix(hash, Float.floatToIntBits(topLeft.y()));
+        hash = mix(hash, Float.floatToIntBits(dimensions.x()));
+        return mix(hash, Float.floatToIntBits(dimensions.y()));
+    }
+
+    /*
+     * Combines a value into a hash; the result depends on the order values are combined in.
+     */
+    private static long mix(long hash, long value) {
+        hash = Long.rotateLeft(hash ^ (value * HASH_MULTIPLIER), 29) * HASH_MULTIPLIER;
+        return hash ^ (hash >>> 32);
+    }
+}
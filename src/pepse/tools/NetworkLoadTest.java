@@ -0,0 +1,162 @@
+package pepse.tools;
+
+import pepse.net.EntitySnapshot;
+import pepse.net.Protocol;
+import pepse.net.WorldClient;
+import pepse.net.WorldServer;
+import pepse.world.TerrainEdits;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link WorldServer} on localhost with many simulated clients, and reports how it holds up.
+ * Every client is a bot that runs left and right, jumps, digs and places blocks at random, all driven by one
+ * thread. The bots stop editing shortly before the end, and once the last edits have arrived every
+ * client's view is checked against the server's world: each client must hold the server's edits of every
+ * chunk it holds, and see its own avatar. The run fails (exit status 1) if any view is wrong.
+ * <p>
+ * Usage: {@code java pepse.tools.NetworkLoadTest [clients] [seconds] [seed]}
+ * @author Aron Isaacs
+ */
+public class NetworkLoadTest {
+    private static final int DEFAULT_CLIENTS = 64;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_SEED = 1234;
+    private static final int WINDOW_HEIGHT = 768;
+    private static final long INPUT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / WorldServer.TICKS_PER_SECOND;
+    // Edits stop this long before the end, so every client has received the last ones when views are checked.
+    private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final float CHANCE_TO_TURN = 0.02f;
+    private static final float CHANCE_TO_JUMP = 0.05f;
+    private static final float CHANCE_TO_EDIT = 0.02f;
+
+    /**
+     * Runs the load test.
+     * @param args optionally the number of clients, the duration in seconds and the world seed.
+     * @throws IOException if the server cannot be started or a client cannot connect.
+     * @throws InterruptedException if interrupted while pacing the clients.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int seed = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SEED;
+        WorldServer server = new WorldServer(seed, WINDOW_HEIGHT);
+        InetSocketAddress address = new InetSocketAddress("localhost", server.start(0));
+        WorldClient[] clients = new WorldClient[clientCount];
+        int[] held = new int[clientCount];
+        Random random = new Random(seed);
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                clients[i] = WorldClient.connect(address);
+            }
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            long nextInput = start;
+            while (System.nanoTime() - end < 0) {
+                for (WorldClient client : clients) {
+                    client.poll();
+                }
+                long now = System.nanoTime();
+                if (now - nextInput >= 0) {
+                    boolean editing = end - now > SETTLE_NANOS;
+                    for (int i = 0; i < clientCount; i++) {
+                        held[i] = nextButtons(held[i], random, editing);
+                        clients[i].sendInput(held[i]);
+                    }
+                    nextInput += INPUT_INTERVAL_NANOS;
+                }
+                Thread.sleep(1);
+            }
+            for (WorldClient client : clients) {
+                client.poll();
+            }
+        } finally {
+            server.close();
+        }
+        report(server, clients, seconds);
+        int wrongViews = checkViews(server, clients);
+        for (WorldClient client : clients) {
+            client.close();
+        }
+        System.out.printf("%d of %d client views match the server%n", clientCount - wrongViews, clientCount);
+        if (wrongViews > 0) {
+            System.exit(1);
+        }
+    }
+
+    /*
+     * Returns a bot's buttons for the next input: it keeps running in a direction and now and then turns
+     * or stops, and taps jump, dig and place at random. Edit buttons are held for one input only.
+     */
+    private static int nextButtons(int buttons, Random random, boolean editing) {
+        int run = buttons & (Protocol.BUTTON_LEFT | Protocol.BUTTON_RIGHT);
+        if (random.nextFloat() < CHANCE_TO_TURN) {
+            int[] choices = {0, Protocol.BUTTON_LEFT, Protocol.BUTTON_RIGHT};
+            run = choices[random.nextInt(choices.length)];
+        }
+        int next = run;
+        if (random.nextFloat() < CHANCE_TO_JUMP) {
+            next |= Protocol.BUTTON_JUMP;
+        }
+        if (editing && random.nextFloat() < CHANCE_TO_EDIT) {
+            next |= random.nextBoolean() ? Protocol.BUTTON_DIG : Protocol.BUTTON_PLACE;
+        }
+        return next;
+    }
+
+    /*
+     * Prints the server's tick times and the traffic per client.
+     */
+    private static void report(WorldServer server, WorldClient[] clients, int seconds) {
+        long received = 0;
+        long snapshots = 0;
+        for (WorldClient client : clients) {
+            received += client.getBytesReceived();
+            snapshots += client.getSnapshotsReceived();
+        }
+        System.out.printf("%d clients, %d ticks, tick %.2f ms average, %.2f ms max%n", clients.length,
+                server.getTickCount(), server.getAverageTickNanos() / 1e6, server.getMaxTickNanos() / 1e6);
+        System.out.printf("%.1f KB/s per client, %.0f bytes per snapshot, %d full and %d delta snapshots, "
+                        + "%d chunk messages, %d sends skipped%n",
+                received / 1024.0 / seconds / clients.length, received / (double) Math.max(1, snapshots),
+                server.getFullSnapshots(), server.getDeltaSnapshots(), server.getChunkMessages(),
+                server.getSkippedSends());
+    }
+
+    /*
+     * Returns the number of clients whose view differs from the server's world.
+     */
+    private static int checkViews(WorldServer server, WorldClient[] clients) {
+        TerrainEdits serverEdits = server.getTerrain().getEdits();
+        int wrong = 0;
+        for (WorldClient client : clients) {
+            EntitySnapshot snapshot = client.getSnapshot();
+            boolean[] matches = {snapshot != null && snapshot.indexOf(client.getAvatarId()) >= 0};
+            TerrainEdits clientEdits = client.getTerrain().getEdits();
+            client.forEachChunk(chunk -> {
+                matches[0] &= sameEdits(serverEdits, clientEdits, chunk);
+            });
+            if (!matches[0]) {
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+
+    /*
+     * Returns whether two sets of edits agree on a chunk.
+     */
+    private static boolean sameEdits(TerrainEdits expected, TerrainEdits actual, int chunk) {
+        int[] counts = new int[2];
+        boolean[] same = {true};
+        expected.forEachInChunk(chunk, (key, edit) -> {
+            counts[0]++;
+            same[0] &= actual.editAt(TerrainEdits.columnOf(key), TerrainEdits.rowOf(key)) == edit;
+        });
+        actual.forEachInChunk(chunk, (key, edit) -> counts[1]++);
+        return same[0] && counts[0] == counts[1];
+    }
+}
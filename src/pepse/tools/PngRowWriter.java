@@ -0,0 +1,133 @@
+package pepse.tools;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes an RGB image as PNG one row at a time, so an image need never be held whole in memory.
+ * Each row is written with the PNG "sub" filter, which suits the runs of equal colours the world is drawn
+ * with, and the compressed rows are written out as IDAT chunks whenever the buffer fills.
+ * @author Aron Isaacs
+ */
+class PngRowWriter implements Closeable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int FILTER_SUB = 1;
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int IDAT_BUFFER_BYTES = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream compressed;
+    private final byte[] row;
+    private int rowsWritten;
+
+    /**
+     * Writes the PNG header of an image of the given size.
+     * @param out the stream the image is written to; closed with this writer.
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     * @throws IOException if the header cannot be written.
+     */
+    PngRowWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * BYTES_PER_PIXEL];
+        this.compressed = new DeflaterOutputStream(new IdatOutputStream(), deflater, IDAT_BUFFER_BYTES);
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream fields = new DataOutputStream(header);
+        fields.writeInt(width);
+        fields.writeInt(height);
+        fields.writeByte(BIT_DEPTH);
+        fields.writeByte(COLOR_TYPE_RGB);
+        fields.writeByte(0); // Deflate compression.
+        fields.writeByte(0); // Adaptive filtering, chosen per row.
+        fields.writeByte(0); // No interlacing.
+        writeChunk("IHDR", header.toByteArray(), header.size());
+    }
+
+    /**
+     * Encodes the next row of the image, top to bottom.
+     * @param rgb the colours of the row's pixels, as packed RGB integers; the alpha byte is ignored.
+     * @param offset the index of the row's first pixel in the array.
+     * @throws IOException if the row cannot be written.
+     */
+    void writeRow(int[] rgb, int offset) throws IOException {
+        if (rowsWritten == height) {
+            throw new IllegalStateException("All " + height + " rows were written");
+        }
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int x = 0, i = 1; x < width; x++, i += BYTES_PER_PIXEL) {
+            int pixel = rgb[offset + x];
+            row[i] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[i + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[i + 2] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+        compressed.write(row);
+        rowsWritten++;
+    }
+
+    /**
+     * Flushes the compressed rows and writes the end of the image.
+     * @throws IOException if not every row was written, or if the image cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height) {
+                throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+            }
+            compressed.finish();
+            writeChunk("IEND", new byte[0], 0);
+            out.flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /*
+     * Writes a chunk of the given type with the first length bytes of data, followed by its checksum.
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /*
+     * Wraps every block of compressed data it is given in an IDAT chunk.
+     */
+    private class IdatOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (off == 0) {
+                writeChunk("IDAT", b, len);
+            } else {
+                byte[] copy = new byte[len];
+                System.arraycopy(b, off, copy, 0, len);
+                writeChunk("IDAT", copy, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package pepse.tools;
+
+import danogl.util.Vector2;
+import pepse.world.Sky;
+import pepse.world.Terrain;
+import pepse.world.trees.Flora;
+import pepse.world.trees.Fruit;
+import pepse.world.trees.Leaf;
+import pepse.world.trees.TreeLayout;
+import pepse.world.trees.Trunk;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.*;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * Renders a long stretch of a world (sky, terrain and trees) into a row of PNG tiles, e.g. for panoramas
+ * and seed reviews, without running the game or walking the avatar across it.
+ * The tiles are drawn straight from the generators ({@link Terrain}, {@link Flora}, {@link TreeLayout})
+ * with the game's colours, without creating any game objects. Each tile is rendered and encoded to its file
+ * by a worker thread with its own terrain and flora; at most two tiles per worker are in flight at once,
+ * so memory stays bounded however long the exported range is. A tile is rendered a strip of rows at a time
+ * and every strip encoded by a {@link PngRowWriter} before the next is drawn, so no worker holds a whole
+ * tile's pixels either. The last tile ends with the last chunk of the range.
+ * <p>
+ * Usage: {@code java pepse.tools.WorldImageExporter <seed> <fromChunk> <toChunk> <outputDir>
+ * [chunksPerTile] [threads] [windowHeight]}
+ * @author Aron Isaacs
+ */
+public class WorldImageExporter {
+    private static final int DEFAULT_CHUNKS_PER_TILE = 8;
+    private static final int DEFAULT_WINDOW_HEIGHT = 768;
+    private static final int WINDOW_WIDTH = 1024;
+    // The rows of a tile rendered and encoded at once.
+    private static final int STRIP_HEIGHT = 64;
+    // Trees in this many columns beyond a tile's edges may have foliage over the tile.
+    private static final int FOLIAGE_REACH = TreeLayout.FOLIAGE_WIDTH_BLOCKS / 2;
+
+    private final int tileHeight;
+    private final ThreadLocal<Terrain> terrains;
+    private final ThreadLocal<Flora> floras;
+
+    /*
+     * Creates an exporter of the given world, with tiles as high as the window.
+     */
+    private WorldImageExporter(int seed, int windowHeight) {
+        Vector2 windowDimensions = new Vector2(WINDOW_WIDTH, windowHeight);
+        this.tileHeight = windowHeight;
+        this.terrains = ThreadLocal.withInitial(() -> new Terrain(windowDimensions, seed));
+        this.floras = ThreadLocal.withInitial(() -> {
+            Terrain terrain = terrains.get();
+            return new Flora(seed, terrain::groundHeightAt, terrain::treeChanceAt);
+        });
+    }
+
+    /**
+     * Exports the requested chunk range as tiles named {@code tile_<firstChunk>.png}.
+     * @param args the seed, the first and last chunk indices (inclusive), the output directory, and
+     *             optionally the number of chunks per tile, the number of worker threads and the window
+     *             height the world is generated for.
+     * @throws IOException if a tile cannot be written.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4) {
+            System.err.println("Usage: WorldImageExporter <seed> <fromChunk> <toChunk> <outputDir> "
+                    + "[chunksPerTile] [threads] [windowHeight]");
+            System.exit(2);
+        }
+        int fromChunk = Integer.parseInt(args[1]);
+        int toChunk = Integer.parseInt(args[2]);
+        File outputDir = new File(args[3]);
+        int chunksPerTile = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_CHUNKS_PER_TILE;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        int windowHeight = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_WINDOW_HEIGHT;
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create " + outputDir);
+        }
+        new WorldImageExporter(Integer.parseInt(args[0]), windowHeight)
+                .export(fromChunk, toChunk, chunksPerTile, outputDir, threads);
+    }
+
+    /*
+     * Renders and writes every tile of the range on a pool of workers, reporting the progress.
+     */
+    private void export(int fromChunk, int toChunk, int chunksPerTile, File outputDir, int threads)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<File> tiles = new ExecutorCompletionService<>(pool);
+        int tileCount = (toChunk - fromChunk) / chunksPerTile + 1;
+        int nextTile = 0;
+        int inFlight = 0;
+        int written = 0;
+        long start = System.nanoTime();
+        try {
+            while (written < tileCount) {
+                while (inFlight < threads * 2 && nextTile < tileCount) {
+                    int firstChunk = fromChunk + nextTile * chunksPerTile;
+                    int width = Math.min(chunksPerTile, toChunk - firstChunk + 1) * CHUNK_SIZE;
+                    File file = new File(outputDir, "tile_" + firstChunk + ".png");
+                    tiles.submit(() -> writeTile(firstChunk * CHUNK_SIZE, width, file));
+                    nextTile++;
+                    inFlight++;
+                }
+                tiles.take().get();
+                inFlight--;
+                written++;
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Tile export failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d tiles written to %s in %.1f s (%.1f tiles/s)%n", written, outputDir, seconds,
+                written / seconds);
+    }
+
+    /*
+     * Renders the tile of the given width starting at the given x-coordinate, a strip of rows at a time,
+     * encoding every strip to the tile's file before drawing the next.
+     */
+    private File writeTile(int left, int width, File file) throws IOException {
+        BufferedImage strip = new BufferedImage(width, STRIP_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[width * STRIP_HEIGHT];
+        try (PngRowWriter png = new PngRowWriter(
+                new BufferedOutputStream(new FileOutputStream(file)), width, tileHeight)) {
+            for (int top = 0; top < tileHeight; top += STRIP_HEIGHT) {
+                int rows = Math.min(STRIP_HEIGHT, tileHeight - top);
+                Graphics2D g = strip.createGraphics();
+                g.translate(-left, -top);
+                g.setColor(Sky.BASIC_SKY_COLOR);
+                g.fillRect(left, top, width, STRIP_HEIGHT);
+                drawTrees(g, left, width);
+                drawTerrain(g, left, width, top + rows);
+                g.dispose();
+                strip.getRGB(0, 0, width, rows, pixels, 0, width);
+                for (int row = 0; row < rows; row++) {
+                    png.writeRow(pixels, row * width);
+                }
+            }
+        }
+        return file;
+    }
+
+    /*
+     * Draws the trees growing in or next to the tile: foliage first, as leaves are behind the trunks in
+     * the game, then the trunks.
+     */
+    private void drawTrees(Graphics2D g, int left, int width) {
+        Terrain terrain = terrains.get();
+        Flora flora = floras.get();
+        int firstColumn = left / GAME_BLOCK_SIZE - FOLIAGE_REACH;
+        int lastColumn = (left + width) / GAME_BLOCK_SIZE + FOLIAGE_REACH;
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            int x = column * GAME_BLOCK_SIZE;
+            if (!flora.hasTreeAt(x)) {
+                continue;
+            }
+            float y = terrain.groundHeightAt(x);
+            TreeLayout layout = new TreeLayout(x, y);
+            for (int i = 0; i < TreeLayout.FOLIAGE_WIDTH_BLOCKS; i++) {
+                for (int j = 0; j < TreeLayout.FOLIAGE_HEIGHT_BLOCKS; j++) {
+                    int cellX = layout.getFoliageLeft() + i * TreeLayout.CELL_SIZE;
+                    int cellY = layout.getFoliageTop() + j * TreeLayout.CELL_SIZE;
+                    byte cell = layout.foliageAt(i, j);
+                    if (cell == TreeLayout.LEAF) {
+                        g.setColor(Leaf.LEAF_COLOR);
+                        g.fillRect(cellX, cellY, TreeLayout.CELL_SIZE, TreeLayout.CELL_SIZE);
+                    } else if (cell == TreeLayout.FRUIT) {
+                        g.setColor(Fruit.FRUIT_COLOR);
+                        g.fillOval(cellX, cellY, TreeLayout.CELL_SIZE, TreeLayout.CELL_SIZE);
+                    }
+                }
+            }
+            g.setColor(Trunk.TRUNK_COLOR);
+            g.fillRect(x, (int) y - layout.getTrunkHeight(), TreeLayout.CELL_SIZE, layout.getTrunkHeight());
+        }
+    }
+
+    /*
+     * Draws the ground blocks of the tile down to the given bottom, each in its own shade of the ground
+     * colour.
+     */
+    private void drawTerrain(Graphics2D g, int left, int width, int bottom) {
+        Terrain terrain = terrains.get();
+        for (int x = left; x < left + width; x += GAME_BLOCK_SIZE) {
+            int column = Math.floorDiv(x, GAME_BLOCK_SIZE);
+            for (int y = (int) terrain.groundHeightAt(x); y < bottom; y += GAME_BLOCK_SIZE) {
+                g.setColor(Terrain.groundColorAt(column, Math.floorDiv(y, GAME_BLOCK_SIZE)));
+                g.fillRect(x, y, GAME_BLOCK_SIZE, GAME_BLOCK_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package pepse.tools;
+
+import danogl.util.Vector2;
+import pepse.world.Terrain;
+import pepse.world.WorldArchive;
+import pepse.world.trees.Flora;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.*;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.WorldArchive.COLUMNS_PER_CHUNK;
+import static pepse.world.WorldArchive.RECORD_BYTES;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * Generates a range of chunks ahead of time into a {@link WorldArchive}, which the game loads with
+ * {@code --world <file>} instead of evaluating noise while streaming.
+ * Chunks are generated in batches on a pool of worker threads, each with its own terrain and flora
+ * (their noise caches are not thread-safe), while the main thread appends the finished records to the
+ * file and reports the throughput. Records carry a checksum, so an interrupted run is resumed by running
+ * the same command again: intact records are kept, a partially written tail is truncated, and only the
+ * missing chunks are generated.
+ * <p>
+ * Usage: {@code java pepse.tools.WorldPregenerator <seed> <fromChunk> <toChunk> <file> [threads]
+ * [windowHeight]}
+ * @author Aron Isaacs
+ */
+public class WorldPregenerator {
+    private static final int BATCH_CHUNKS = 256;
+    private static final int DEFAULT_WINDOW_HEIGHT = 768;
+    private static final int WINDOW_WIDTH = 1024;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int seed;
+    private final int fromChunk;
+    private final int toChunk;
+    private final Vector2 windowDimensions;
+    private final ThreadLocal<Terrain> terrains;
+    private final ThreadLocal<Flora> floras;
+
+    /*
+     * Creates a pre-generator for the given world and chunk range.
+     */
+    private WorldPregenerator(int seed, int fromChunk, int toChunk, int windowHeight) {
+        this.seed = seed;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+        this.windowDimensions = new Vector2(WINDOW_WIDTH, windowHeight);
+        this.terrains = ThreadLocal.withInitial(() -> new Terrain(windowDimensions, seed));
+        this.floras = ThreadLocal.withInitial(() -> {
+            Terrain terrain = terrains.get();
+            return new Flora(seed, terrain::groundHeightAt, terrain::treeChanceAt);
+        });
+    }
+
+    /**
+     * Generates the requested chunk range, resuming an existing archive of the same world if there is one.
+     * @param args the seed, the first and last chunk indices (inclusive), the archive file, and optionally
+     *             the number of worker threads and the window height the game runs with.
+     * @throws IOException if the archive cannot be read or written.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4) {
+            System.err.println("Usage: WorldPregenerator <seed> <fromChunk> <toChunk> <file> [threads] "
+                    + "[windowHeight]");
+            System.exit(2);
+        }
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        int windowHeight = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_WINDOW_HEIGHT;
+        int fromChunk = Integer.parseInt(args[1]);
+        int toChunk = Integer.parseInt(args[2]);
+        if (toChunk < fromChunk) {
+            throw new IllegalArgumentException("toChunk must not be smaller than fromChunk");
+        }
+        new WorldPregenerator(Integer.parseInt(args[0]), fromChunk, toChunk, windowHeight)
+                .generate(new File(args[3]), threads);
+    }
+
+    /*
+     * Opens or creates the archive, then generates every chunk of the range it does not hold yet.
+     */
+    private void generate(File file, int threads) throws IOException, InterruptedException {
+        int groundHeightAtX0 = terrains.get().getGroundHeightAtX0();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            BitSet done = new BitSet(toChunk - fromChunk + 1);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(WorldArchive.HEADER_BYTES);
+                WorldArchive.writeHeader(header, seed, groundHeightAtX0, fromChunk, toChunk);
+                header.flip();
+                channel.write(header);
+            } else {
+                if (!WorldArchive.headerMatches(channel, seed, groundHeightAtX0, fromChunk, toChunk)) {
+                    throw new IOException(file + " holds a different world or chunk range");
+                }
+                long intactLength = WorldArchive.scanRecords(channel,
+                        record -> done.set(record.getInt() - fromChunk));
+                channel.truncate(intactLength);
+                channel.position(intactLength);
+            }
+            int total = toChunk - fromChunk + 1;
+            int missing = total - done.cardinality();
+            System.out.printf("%d of %d chunks already generated, generating %d on %d threads%n",
+                    total - missing, total, missing, threads);
+            writeMissingChunks(channel, done, threads, missing);
+        }
+    }
+
+    /*
+     * Generates the chunks missing from the done set in batches, keeping at most two batches per worker
+     * in flight so memory stays bounded, and appends each finished batch to the archive.
+     */
+    private void writeMissingChunks(FileChannel channel, BitSet done, int threads, int missing)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<ByteBuffer> batches = new ExecutorCompletionService<>(pool);
+        int total = toChunk - fromChunk + 1;
+        int nextOffset = done.nextClearBit(0);
+        int inFlight = 0;
+        int written = 0;
+        long start = System.nanoTime();
+        long lastReport = start;
+        try {
+            while (true) {
+                while (inFlight < threads * 2 && nextOffset < total) {
+                    int[] batch = new int[BATCH_CHUNKS];
+                    int batchSize = 0;
+                    while (batchSize < BATCH_CHUNKS && nextOffset < total) {
+                        batch[batchSize++] = fromChunk + nextOffset;
+                        nextOffset = done.nextClearBit(nextOffset + 1);
+                    }
+                    int size = batchSize;
+                    batches.submit(() -> generateBatch(batch, size));
+                    inFlight++;
+                }
+                if (inFlight == 0) {
+                    break;
+                }
+                ByteBuffer records = batches.take().get();
+                inFlight--;
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                written += records.limit() / RECORD_BYTES;
+                long now = System.nanoTime();
+                if (now - lastReport >= REPORT_INTERVAL_NANOS || inFlight == 0) {
+                    lastReport = now;
+                    System.out.printf("%d/%d chunks, %.0f chunks/s%n", written, missing,
+                            written / ((now - start) / 1e9));
+                }
+            }
+            channel.force(false);
+        } catch (ExecutionException e) {
+            throw new IOException("Chunk generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * Generates the records of a batch of chunks on the calling worker thread.
+     */
+    private ByteBuffer generateBatch(int[] chunkIndices, int count) {
+        Terrain terrain = terrains.get();
+        Flora flora = floras.get();
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_BYTES);
+        float[] heights = new float[COLUMNS_PER_CHUNK];
+        for (int i = 0; i < count; i++) {
+            int chunkX = chunkIndices[i] * CHUNK_SIZE;
+            int treeMask = 0;
+            for (int column = 0; column < COLUMNS_PER_CHUNK; column++) {
+                int x = chunkX + column * GAME_BLOCK_SIZE;
+                heights[column] = terrain.groundHeightAt(x);
+                if (flora.hasTreeAt(x)) {
+                    treeMask |= 1 << column;
+                }
+            }
+            WorldArchive.writeRecord(records, chunkIndices[i], heights, treeMask);
+        }
+        records.flip();
+        return records;
+    }
+}
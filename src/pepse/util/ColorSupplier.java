@@ -31,7 +31,7 @@ public final class ColorSupplier {
      * @return A color similar to baseColor.
      */
     public static Color approximateMonoColor(Color baseColor, int colorDelta){
-        int channel = randomChannelInRange(baseColor.getRed()-colorDelta, baseColor.getRed()+colorDelta);
+        int channel = randomChannelInRange(random, baseColor.getRed()-colorDelta, baseColor.getRed()+colorDelta);
         return new Color(channel, channel, channel);
     }
 
@@ -57,21 +57,41 @@ public final class ColorSupplier {
      * @return A color similar to baseColor.
      */
     public static Color approximateColor(Color baseColor, int colorDelta) {
+        return approximateColor(baseColor, colorDelta, random);
+    }
 
+    /**
+     * Returns a color similar to baseColor, with a default delta, drawn from the given random generator,
+     * so a seeded generator always yields the same colors.
+     *
+     * @param baseColor A color that we wish to approximate.
+     * @param random The random generator to sample from.
+     * @return A color similar to baseColor.
+     */
+    public static Color approximateColor(Color baseColor, Random random) {
+        return approximateColor(baseColor, DEFAULT_COLOR_DELTA, random);
+    }
+
+    /*
+     * Returns a color similar to baseColor, with a difference of at most colorDelta, drawn from the given
+     * random generator.
+     */
+    private static Color approximateColor(Color baseColor, int colorDelta, Random random) {
         return new Color(
-                randomChannelInRange(baseColor.getRed()-colorDelta, baseColor.getRed()+colorDelta),
-                randomChannelInRange(baseColor.getGreen()-colorDelta, baseColor.getGreen()+colorDelta),
-                randomChannelInRange(baseColor.getBlue()-colorDelta, baseColor.getBlue()+colorDelta));
+                randomChannelInRange(random, baseColor.getRed()-colorDelta, baseColor.getRed()+colorDelta),
+                randomChannelInRange(random, baseColor.getGreen()-colorDelta, baseColor.getGreen()+colorDelta),
+                randomChannelInRange(random, baseColor.getBlue()-colorDelta, baseColor.getBlue()+colorDelta));
     }
 
     /**
      * This method generates a random value for a color channel within the given range [min, max].
      *
+     * @param random The random generator to sample from.
      * @param min The lower bound of the given range.
      * @param max The upper bound of the given range.
      * @return A random number in the range [min, max], clipped to [0,255].
      */
-    private static int randomChannelInRange(int min, int max) {
+    private static int randomChannelInRange(Random random, int min, int max) {
         int channel = random.nextInt(max-min+1) + min;
         return Math.min(255, Math.max(channel, 0));
     }
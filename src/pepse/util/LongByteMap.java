@@ -0,0 +1,162 @@
+package pepse.util;
+
+/**
+ * An open-addressing hash map from long keys to non-zero byte values, stored in two primitive arrays.
+ * A value of 0 means "no entry": getting a missing key returns 0, and putting 0 removes the key.
+ * Lookups and updates never allocate, and removal shifts the following entries back (no tombstones),
+ * so the map stays compact however many times entries are overwritten.
+ * Not thread-safe.
+ * @author Aron Isaacs
+ */
+public class LongByteMap {
+    private static final int MIN_CAPACITY = 8;
+    // The map grows once it is more than half full, keeping probe sequences short.
+    private static final int MAX_LOAD_NUMERATOR = 1;
+    private static final int MAX_LOAD_DENOMINATOR = 2;
+
+    /**
+     * Receives the entries of a map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, byte value);
+    }
+
+    private long[] keys;
+    private byte[] values;
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    public LongByteMap() {
+        keys = new long[MIN_CAPACITY];
+        values = new byte[MIN_CAPACITY];
+    }
+
+    /**
+     * Returns the value of a key.
+     * @param key the key.
+     * @return the value, or 0 if the key has no entry.
+     */
+    public byte get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the value of a key.
+     * @param key the key.
+     * @param value the value; 0 removes the key's entry.
+     */
+    public void put(long key, byte value) {
+        if (value == 0) {
+            remove(key);
+            return;
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        for (; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * MAX_LOAD_DENOMINATOR > keys.length * MAX_LOAD_NUMERATOR) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the entry of a key, if there is one.
+     * @param key the key.
+     */
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key || values[slot] == 0) {
+            if (values[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Shift back every following entry of the probe run that may not stay behind the hole.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = 0;
+        size--;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots of the map's arrays, which determines the memory it retains.
+     * @return the capacity.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Passes every entry of the map to the given consumer, in no particular order.
+     * The map must not be modified while iterating.
+     * @param consumer receives the entries.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /*
+     * Rehashes every entry into arrays of the given capacity (a power of two).
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = new long[capacity];
+        values = new byte[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /*
+     * Returns the home slot of a key: a Fibonacci hash of both of its halves, reduced by the mask.
+     */
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,32 @@
+package pepse.util.input;
+
+/**
+ * A per-frame source of user input.
+ * The game manager calls {@link #beginFrame(float)} once at the start of every frame; during the rest of
+ * the frame, game objects query key states through {@link #isKeyPressed(int)}.
+ * Implementations may read a live keyboard, record it, or replay a previously recorded session.
+ * @author Aron Isaacs
+ */
+public interface FrameInput {
+    /**
+     * Starts a new frame.
+     * @param deltaTime the time, in seconds, that really passed since the last frame.
+     * @return the time step the world should be simulated with for this frame.
+     */
+    float beginFrame(float deltaTime);
+
+    /**
+     * Returns whether the given key is pressed in the current frame.
+     * @param keyCode the key code, as defined in {@link java.awt.event.KeyEvent}.
+     * @return true if the key is pressed.
+     */
+    boolean isKeyPressed(int keyCode);
+
+    /**
+     * Returns whether this source has no more frames to provide (e.g. a replay reached its end).
+     * @return true if the session is over.
+     */
+    default boolean isFinished() {
+        return false;
+    }
+}
@@ -0,0 +1,33 @@
+package pepse.util.input;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Constants describing the binary input log shared by {@link InputRecorder} and {@link InputReplay}.
+ * <p>
+ * Layout: a header of {@code int MAGIC, short VERSION, int seed}, followed by one record per frame of
+ * {@code float deltaTime, byte keyMask}, where bit i of the mask is the state of {@code TRACKED_KEYS[i]}.
+ * @author Aron Isaacs
+ */
+final class InputLog {
+    static final int MAGIC = 0x50455052; // "PEPR"
+    static final short VERSION = 1;
+    /** The keys whose states are recorded, by bit index in the key mask (at most 8). */
+    static final int[] TRACKED_KEYS = {KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_SPACE,
+            KeyEvent.VK_DOWN, KeyEvent.VK_UP, KeyEvent.VK_F5, KeyEvent.VK_HOME};
+
+    private InputLog() {
+    }
+
+    /*
+     * Returns the bit of the given key in the key mask, or 0 if the key is not tracked.
+     */
+    static int bitOf(int keyCode) {
+        for (int i = 0; i < TRACKED_KEYS.length; i++) {
+            if (TRACKED_KEYS[i] == keyCode) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+}
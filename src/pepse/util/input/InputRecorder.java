@@ -0,0 +1,63 @@
+package pepse.util.input;
+
+import java.io.*;
+
+/**
+ * Records the key states and frame times of a live session into a compact binary log
+ * (5 bytes per frame), so the exact same traversal can later be replayed with {@link InputReplay}.
+ * Key states are sampled once per frame, and the sampled states are the ones the game sees,
+ * so the recording matches what was simulated.
+ * @author Aron Isaacs
+ */
+public class InputRecorder implements FrameInput, Closeable {
+    private final FrameInput source;
+    private final DataOutputStream out;
+    private int keyMask;
+
+    /**
+     * Constructs a recorder that samples the given source and writes to the given file.
+     * @param source the input to record (normally a {@link LiveInput}).
+     * @param file the log file to create.
+     * @param seed the world seed, stored in the header so replays can check they run the same world.
+     * @throws IOException if the file cannot be created.
+     */
+    public InputRecorder(FrameInput source, File file, int seed) throws IOException {
+        this.source = source;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(InputLog.MAGIC);
+        out.writeShort(InputLog.VERSION);
+        out.writeInt(seed);
+    }
+
+    @Override
+    public float beginFrame(float deltaTime) {
+        float frameDelta = source.beginFrame(deltaTime);
+        keyMask = 0;
+        for (int i = 0; i < InputLog.TRACKED_KEYS.length; i++) {
+            if (source.isKeyPressed(InputLog.TRACKED_KEYS[i])) {
+                keyMask |= 1 << i;
+            }
+        }
+        try {
+            out.writeFloat(frameDelta);
+            out.writeByte(keyMask);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frameDelta;
+    }
+
+    @Override
+    public boolean isKeyPressed(int keyCode) {
+        return (keyMask & InputLog.bitOf(keyCode)) != 0;
+    }
+
+    /**
+     * Flushes and closes the log.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
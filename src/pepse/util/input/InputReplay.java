@@ -0,0 +1,96 @@
+package pepse.util.input;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Replays a log written by {@link InputRecorder}: every frame is simulated with the recorded frame time
+ * and key states, regardless of real timing, so runs of different builds traverse the world identically.
+ * When the log ends, a summary of wall-clock frame time and allocated bytes is printed, for comparing
+ * builds against each other.
+ * @author Aron Isaacs
+ */
+public class InputReplay implements FrameInput, Closeable {
+    private final DataInputStream in;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private int keyMask;
+    private boolean finished;
+    private int frames;
+    private long startNanos;
+    private long startAllocatedBytes;
+
+    /**
+     * Constructs a replay of the given log.
+     * @param file the log file to replay.
+     * @param seed the world seed; must match the seed the log was recorded with.
+     * @throws IOException if the file cannot be read or is not an input log.
+     */
+    public InputReplay(File file, int seed) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != InputLog.MAGIC || in.readShort() != InputLog.VERSION) {
+            in.close();
+            throw new IOException("Not a supported input log: " + file);
+        }
+        int recordedSeed = in.readInt();
+        if (recordedSeed != seed) {
+            in.close();
+            throw new IOException("Input log was recorded with seed " + recordedSeed + ", not " + seed);
+        }
+        this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    @Override
+    public float beginFrame(float deltaTime) {
+        if (finished) {
+            return 0;
+        }
+        if (frames == 0) {
+            startNanos = System.nanoTime();
+            startAllocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+        }
+        try {
+            float frameDelta = in.readFloat();
+            keyMask = in.readUnsignedByte();
+            frames++;
+            return frameDelta;
+        } catch (EOFException e) {
+            finish();
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isKeyPressed(int keyCode) {
+        return (keyMask & InputLog.bitOf(keyCode)) != 0;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /*
+     * Marks the replay as finished and prints the run's frame time and allocation summary.
+     */
+    private void finish() {
+        finished = true;
+        keyMask = 0;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+        if (frames > 0) {
+            System.out.printf("Replay finished: %d frames, %.3f ms/frame, %d bytes allocated/frame%n",
+                    frames, elapsedNanos / 1e6 / frames, allocated / frames);
+        }
+    }
+
+    /**
+     * Closes the log.
+     * @throws IOException if closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,29 @@
+package pepse.util.input;
+
+import danogl.gui.UserInputListener;
+
+/**
+ * Frame input read directly from the keyboard, with the real frame time.
+ * @author Aron Isaacs
+ */
+public class LiveInput implements FrameInput {
+    private final UserInputListener inputListener;
+
+    /**
+     * Constructs a LiveInput reading from the given listener.
+     * @param inputListener the danogl listener to read key states from.
+     */
+    public LiveInput(UserInputListener inputListener) {
+        this.inputListener = inputListener;
+    }
+
+    @Override
+    public float beginFrame(float deltaTime) {
+        return deltaTime;
+    }
+
+    @Override
+    public boolean isKeyPressed(int keyCode) {
+        return inputListener.isKeyPressed(keyCode);
+    }
+}
@@ -0,0 +1,162 @@
+package pepse.util.memory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A budget for the memory held by the world's caches and stores, shared by every registered
+ * {@link MemoryConsumer}.
+ * Once per frame, {@link #enforce()} adds up the consumers' usage and, when it exceeds the budget, asks the
+ * cheapest consumers to give memory back: a consumer is cheaper the less its content costs to lose and the
+ * longer ago it was used. The budget also listens to the JVM's heap pools: when a garbage collection leaves
+ * a pool above its threshold, the next enforcement trims the consumers well below the budget, so the heap
+ * recovers before the collector starts thrashing. Notifications arrive on another thread; all trimming
+ * happens on the game thread.
+ * @author Aron Isaacs
+ */
+public class MemoryBudget {
+    // The share of a heap pool's maximum above which a collection counts as memory pressure.
+    private static final double PRESSURE_THRESHOLD = 0.8;
+    // Under memory pressure, consumers are trimmed down to this share of the budget.
+    private static final double PRESSURE_TARGET = 0.5;
+
+    private final long budgetBytes;
+    private final List<MemoryConsumer> consumers = new ArrayList<>();
+    // Reused by enforce() to remember consumers that could not free anything.
+    private final List<MemoryConsumer> exhausted = new ArrayList<>();
+    private volatile boolean underPressure;
+    private long evictedBytes;
+
+    /**
+     * Constructs a budget and starts listening for heap pressure.
+     * @param budgetBytes The most memory, in bytes, the registered consumers may retain together.
+     */
+    public MemoryBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        listenForHeapPressure();
+    }
+
+    /**
+     * Registers a consumer whose memory counts against the budget.
+     * @param consumer The consumer.
+     */
+    public void register(MemoryConsumer consumer) {
+        if (!consumers.contains(consumer)) {
+            consumers.add(consumer);
+        }
+    }
+
+    /**
+     * Unregisters a consumer.
+     * @param consumer The consumer.
+     */
+    public void unregister(MemoryConsumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Evicts memory from the consumers if they exceed the budget, or if the heap was found under pressure
+     * since the last call. Called once per frame on the game thread.
+     */
+    public void enforce() {
+        long target = budgetBytes;
+        if (underPressure) {
+            underPressure = false;
+            target = (long) (budgetBytes * PRESSURE_TARGET);
+        }
+        long used = usedBytes();
+        while (used > target) {
+            MemoryConsumer cheapest = cheapestConsumer();
+            if (cheapest == null) {
+                break;
+            }
+            long freed = cheapest.trim(used - target);
+            if (freed <= 0) {
+                exhausted.add(cheapest);
+            }
+            evictedBytes += Math.max(0, freed);
+            used -= Math.max(0, freed);
+        }
+        exhausted.clear();
+    }
+
+    /*
+     * Returns the evictable consumer whose memory is cheapest to lose, weighing its eviction cost by how
+     * recently it was used, or null if none is left.
+     */
+    private MemoryConsumer cheapestConsumer() {
+        long now = System.nanoTime();
+        MemoryConsumer cheapest = null;
+        double cheapestScore = Double.MAX_VALUE;
+        for (MemoryConsumer consumer : consumers) {
+            if (exhausted.contains(consumer) || consumer.retainedBytes() <= 0
+                    || Float.isInfinite(consumer.evictionCost())) {
+                continue;
+            }
+            double idleSeconds = Math.max(0, (now - consumer.lastUsedNanos()) / 1e9);
+            double score = consumer.evictionCost() / (1 + idleSeconds);
+            if (score < cheapestScore) {
+                cheapestScore = score;
+                cheapest = consumer;
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * Returns the memory retained by all registered consumers together.
+     * @return The used memory, in bytes.
+     */
+    public long usedBytes() {
+        long used = 0;
+        for (MemoryConsumer consumer : consumers) {
+            used += consumer.retainedBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Returns the total memory the budget evicted so far.
+     * @return The evicted memory, in bytes.
+     */
+    public long evictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Passes the name and current usage of every registered consumer to the given consumer.
+     * @param usageConsumer Receives each consumer's name and retained bytes.
+     */
+    public void forEachUsage(ObjLongConsumer<String> usageConsumer) {
+        for (MemoryConsumer consumer : consumers) {
+            usageConsumer.accept(consumer.getName(), consumer.retainedBytes());
+        }
+    }
+
+    /*
+     * Sets a collection usage threshold on every heap pool that supports one, and flags memory pressure
+     * whenever a collection leaves a pool above it.
+     */
+    private void listenForHeapPressure() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * PRESSURE_THRESHOLD));
+            }
+        }
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                underPressure = true;
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+}
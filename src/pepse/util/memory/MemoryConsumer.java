@@ -0,0 +1,44 @@
+package pepse.util.memory;
+
+/**
+ * A component holding memory that a {@link MemoryBudget} accounts for and may ask to give back, such as a
+ * cache of generated data or the saved state of unloaded chunks.
+ * Every method is called on the game thread.
+ * @author Aron Isaacs
+ */
+public interface MemoryConsumer {
+    /**
+     * Returns the name the component's usage is reported under.
+     * @return The component's name.
+     */
+    String getName();
+
+    /**
+     * Returns an estimate of the memory the component currently retains. Called every frame, so it should
+     * be a running total rather than a computation over the component's contents.
+     * @return The retained memory, in bytes.
+     */
+    long retainedBytes();
+
+    /**
+     * Returns how costly it is to lose a byte of what the component holds, relative to other components:
+     * e.g. a cache of cheap noise samples is cheaper than state that can only be reset to its generated
+     * form. Components whose content must never be lost return {@link Float#POSITIVE_INFINITY}.
+     * @return The relative cost of evicting a byte.
+     */
+    float evictionCost();
+
+    /**
+     * Returns when the component's content was last used.
+     * @return The time of the last use, as given by {@link System#nanoTime()}.
+     */
+    long lastUsedNanos();
+
+    /**
+     * Evicts content, least recently used first, until at least the given amount was freed or nothing
+     * evictable is left.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount actually freed, in bytes.
+     */
+    long trim(long bytes);
+}
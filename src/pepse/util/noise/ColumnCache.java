@@ -0,0 +1,46 @@
+package pepse.util.noise;
+
+import java.util.Arrays;
+
+/**
+ * A noise node that remembers the most recent samples of another node, so that a sub-expression shared by
+ * several nodes (or queried repeatedly by several generators) is evaluated once per column.
+ * The cache is direct-mapped over primitive arrays: a lookup never allocates, and a column evicts only the
+ * column that hashes to the same slot. Sized to a few chunks of columns, it holds every column of the
+ * chunks being generated.
+ * Not thread-safe; every thread must use its own graph.
+ * @author Aron Isaacs
+ */
+public class ColumnCache implements NoiseNode {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final NoiseNode source;
+    private final int[] keys;
+    private final double[] values;
+    private final int shift;
+
+    /**
+     * Constructs a cache of the given node.
+     * @param source the node whose samples are cached.
+     * @param capacity the number of columns remembered, rounded up to a power of two.
+     */
+    public ColumnCache(NoiseNode source, int capacity) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity - 1));
+        this.source = source;
+        this.keys = new int[1 << bits];
+        this.values = new double[1 << bits];
+        this.shift = 32 - bits;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    @Override
+    public double sample(int x) {
+        // Fibonacci hashing spreads block-aligned columns evenly over the slots.
+        int slot = shift == 32 ? 0 : (x * 0x9E3779B9) >>> shift;
+        if (keys[slot] != x) {
+            values[slot] = source.sample(x);
+            keys[slot] = x;
+        }
+        return values[slot];
+    }
+}
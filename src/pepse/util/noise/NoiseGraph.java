@@ -0,0 +1,91 @@
+package pepse.util.noise;
+
+import pepse.util.NoiseGenerator;
+
+/**
+ * Factories for the nodes of a noise graph: sources, constants, scaling, addition, selection and caching.
+ * Combining layers as a graph lets several generators (e.g. terrain height and tree density) share
+ * sub-expressions, which are evaluated once per column when wrapped with {@link #cached(NoiseNode, int)}.
+ * @author Aron Isaacs
+ */
+public final class NoiseGraph {
+
+    private NoiseGraph() {
+    }
+
+    /**
+     * A source of noise.
+     * @param generator the noise generator; its start point determines the largest feature size.
+     * @param factor the amplitude of the noise.
+     * @return a node sampling {@code generator.noise(x, factor)}.
+     */
+    public static NoiseNode source(NoiseGenerator generator, double factor) {
+        return x -> generator.noise(x, factor);
+    }
+
+    /**
+     * A constant value.
+     * @param value the value.
+     * @return a node whose value is always the given one.
+     */
+    public static NoiseNode constant(double value) {
+        return x -> value;
+    }
+
+    /**
+     * Multiplies a node by a constant.
+     * @param node the node to scale.
+     * @param factor the factor.
+     * @return the scaled node.
+     */
+    public static NoiseNode scale(NoiseNode node, double factor) {
+        return x -> node.sample(x) * factor;
+    }
+
+    /**
+     * Adds two nodes.
+     * @param a the first node.
+     * @param b the second node.
+     * @return the sum of the nodes.
+     */
+    public static NoiseNode add(NoiseNode a, NoiseNode b) {
+        return x -> a.sample(x) + b.sample(x);
+    }
+
+    /**
+     * Chooses between two nodes by the value of a control node: {@code low} where the control is below
+     * {@code threshold - blend}, {@code high} where it is above {@code threshold + blend}, and a linear blend
+     * of both in between. Only the chosen nodes are evaluated.
+     * @param control the node deciding between the two.
+     * @param threshold the control value at which the choice switches.
+     * @param blend half the width of the band in which both nodes are blended, 0 for a hard switch.
+     * @param low the node chosen for low control values.
+     * @param high the node chosen for high control values.
+     * @return the selecting node.
+     */
+    public static NoiseNode select(NoiseNode control, double threshold, double blend,
+                                   NoiseNode low, NoiseNode high) {
+        return x -> {
+            double c = control.sample(x);
+            if (c <= threshold - blend) {
+                return low.sample(x);
+            }
+            if (c >= threshold + blend) {
+                return high.sample(x);
+            }
+            double t = (c - (threshold - blend)) / (2 * blend);
+            return low.sample(x) * (1 - t) + high.sample(x) * t;
+        };
+    }
+
+    /**
+     * Caches the samples of a node per column.
+     * @param node the node to cache.
+     * @param capacity the number of columns remembered.
+     * @return the caching node.
+     * @see ColumnCache
+     */
+    public static NoiseNode cached(NoiseNode node, int capacity) {
+        return new ColumnCache(node, capacity);
+    }
+}
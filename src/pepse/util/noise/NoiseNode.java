@@ -0,0 +1,16 @@
+package pepse.util.noise;
+
+/**
+ * A node of a noise graph: a deterministic function of a column's x-coordinate.
+ * Nodes are combined with the factories of {@link NoiseGraph}.
+ * @author Aron Isaacs
+ */
+@FunctionalInterface
+public interface NoiseNode {
+    /**
+     * Samples the node at the given column.
+     * @param x the x-coordinate of the column.
+     * @return the value of the node at x.
+     */
+    double sample(int x);
+}
@@ -0,0 +1,24 @@
+package pepse.util.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * A Flight Recorder event spanning the generation of one chunk of a scrollable
+ * (e.g. terrain blocks or trees), including adding its objects to the game.
+ * @author Aron Isaacs
+ */
+@Name("pepse.ChunkGenerated")
+@Label("Chunk Generated")
+@Category({"Pepse", "Chunks"})
+@Description("Generation of one chunk of game objects")
+@StackTrace(false)
+public class ChunkGeneratedEvent extends Event {
+    @Label("Scrollable")
+    public String scrollable;
+
+    @Label("Chunk Index")
+    public int chunkIndex;
+
+    @Label("Object Count")
+    public int objectCount;
+}
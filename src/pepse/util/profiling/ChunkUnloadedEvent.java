@@ -0,0 +1,23 @@
+package pepse.util.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * A Flight Recorder event spanning the removal of one chunk of a scrollable from the game.
+ * @author Aron Isaacs
+ */
+@Name("pepse.ChunkUnloaded")
+@Label("Chunk Unloaded")
+@Category({"Pepse", "Chunks"})
+@Description("Removal of one chunk of game objects from the game")
+@StackTrace(false)
+public class ChunkUnloadedEvent extends Event {
+    @Label("Scrollable")
+    public String scrollable;
+
+    @Label("Chunk Index")
+    public int chunkIndex;
+
+    @Label("Object Count")
+    public int objectCount;
+}
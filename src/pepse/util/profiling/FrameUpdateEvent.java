@@ -0,0 +1,27 @@
+package pepse.util.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * A Flight Recorder event spanning one phase of a frame update of the game manager,
+ * such as simulating the game objects or streaming chunks.
+ * @author Aron Isaacs
+ */
+@Name("pepse.FrameUpdate")
+@Label("Frame Update")
+@Category({"Pepse", "Frames"})
+@Description("One phase of a frame update")
+@StackTrace(false)
+public class FrameUpdateEvent extends Event {
+    /** The phase in which the game objects are simulated. */
+    public static final String SIMULATION = "simulation";
+    /** The phase in which chunks are loaded and unloaded around the viewers. */
+    public static final String STREAMING = "streaming";
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Frame Delta")
+    @Timespan(Timespan.NANOSECONDS)
+    public long deltaTime;
+}
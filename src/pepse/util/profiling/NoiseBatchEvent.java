@@ -0,0 +1,24 @@
+package pepse.util.profiling;
+
+import jdk.jfr.*;
+
+/**
+ * A Flight Recorder event spanning a batch of noise evaluations, such as computing the ground height of
+ * every column of a terrain chunk.
+ * @author Aron Isaacs
+ */
+@Name("pepse.NoiseBatch")
+@Label("Noise Batch")
+@Category({"Pepse", "Noise"})
+@Description("A batch of noise evaluations")
+@StackTrace(false)
+public class NoiseBatchEvent extends Event {
+    @Label("Min X")
+    public int minX;
+
+    @Label("Max X")
+    public int maxX;
+
+    @Label("Evaluations")
+    public int evaluations;
+}
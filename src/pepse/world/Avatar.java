@@ -6,6 +6,9 @@ import danogl.gui.UserInputListener;
 import danogl.gui.rendering.AnimationRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.util.input.FrameInput;
+import pepse.util.input.LiveInput;
+import pepse.world.events.WorldEvents;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 
@@ -16,15 +19,21 @@ import java.awt.event.KeyEvent;
  */
 public class Avatar extends GameObject {
 
-    private static final float VELOCITY_X = 400;
-    private static final float VELOCITY_Y = -650;
-    private static final float GRAVITY = 600;
+    /** The horizontal speed of a running avatar, in pixels per second. */
+    public static final float VELOCITY_X = 400;
+    /** The vertical velocity a jump starts with, in pixels per second. */
+    public static final float VELOCITY_Y = -650;
+    /** The downward acceleration of the avatar, in pixels per second squared. */
+    public static final float GRAVITY = 600;
     public static final float AVATAR_SIZE = 50f;
 
     public static final float MAX_ENERGY = 100f;
-    private static final float ENERGY_GAIN_RATE = 3f; // per second
-    private static final float ENERGY_LOSS_MOVE = 5f;  // per second
-    private static final float ENERGY_LOSS_JUMP = 10f;
+    /** The energy regained per second while standing. */
+    public static final float ENERGY_GAIN_RATE = 3f;
+    /** The energy spent per second while running. */
+    public static final float ENERGY_LOSS_MOVE = 5f;
+    /** The energy spent on a jump. */
+    public static final float ENERGY_LOSS_JUMP = 10f;
 
 
 
@@ -41,12 +50,16 @@ public class Avatar extends GameObject {
 
 
     private float energy = MAX_ENERGY;
-    private final UserInputListener inputListener;
+    private final FrameInput input;
     private final ImageReader imageReader;
     private final AnimationRenderable idleRenderable;
     private final AnimationRenderable runRenderable;
     private final AnimationRenderable jumpRenderable;
     private State currentState = State.IDLE;
+    private boolean frozen;
+    private WorldEvents events;
+    // The energy last published on the event bus; NaN until the first publication.
+    private float publishedEnergy = Float.NaN;
 
     /**
      * Constructs an Avatar object at the specified position with the given input listener and image reader.
@@ -56,12 +69,23 @@ public class Avatar extends GameObject {
      * @param imageReader The image reader to load avatar animations.
      */
     public Avatar(Vector2 pos, UserInputListener inputListener, ImageReader imageReader) {
+        this(pos, new LiveInput(inputListener), imageReader);
+    }
+
+    /**
+     * Constructs an Avatar object controlled by the given per-frame input source,
+     * which may be live, recorded or replayed.
+     * @param pos The initial position of the avatar in the game world.
+     * @param input The source of key states controlling the avatar.
+     * @param imageReader The image reader to load avatar animations.
+     */
+    public Avatar(Vector2 pos, FrameInput input, ImageReader imageReader) {
         super(pos, Vector2.ONES.mult(AVATAR_SIZE), imageReader.readImage(IDLE_FRAMES[0], true));
         physics().preventIntersectionsFromDirection(Vector2.ZERO);
         transform().setAccelerationY(GRAVITY);
 
         this.imageReader = imageReader;
-        this.inputListener = inputListener;
+        this.input = input;
         idleRenderable = new AnimationRenderable(loadFrames(IDLE_FRAMES), 0.3f);
         runRenderable = new AnimationRenderable(loadFrames(RUN_FRAMES), 0.1f);
         jumpRenderable = new AnimationRenderable(loadFrames(JUMP_FRAMES), 0.2f);
@@ -115,9 +139,35 @@ public class Avatar extends GameObject {
     @Override
     public void update(float deltaTime) {
         super.update(deltaTime);
-        State newState = getState();
-        determineVelocity(deltaTime, newState);
-        chooseRenderable(newState);
+        if (!frozen) {
+            State newState = getState();
+            determineVelocity(deltaTime, newState);
+            chooseRenderable(newState);
+        }
+        publishEnergy();
+    }
+
+    /**
+     * Connects the avatar to the world's event bus: it eats the fruits published as eaten by it, and
+     * publishes its energy whenever it changes (at most once per frame).
+     * @param events The event bus.
+     */
+    public void setEvents(WorldEvents events) {
+        this.events = events;
+        events.onFruitEaten((eater, x, y, energy) -> {
+            if (eater == this) {
+                gainEnergy(energy);
+            }
+        });
+    }
+
+    /* Publishes the avatar's energy if it changed since it was last published (retried next frame if the
+     * event was dropped).
+     */
+    private void publishEnergy() {
+        if (events != null && energy != publishedEnergy && events.publishEnergyChanged(this, energy)) {
+            publishedEnergy = energy;
+        }
     }
 
     /* Chooses and sets the appropriate renderable animation based on the avatar's current state.
@@ -177,9 +227,9 @@ public class Avatar extends GameObject {
      * @return The determined State of the avatar.
      */
     private State getState() {
-        boolean left = inputListener.isKeyPressed(KeyEvent.VK_LEFT);
-        boolean right = inputListener.isKeyPressed(KeyEvent.VK_RIGHT);
-        boolean space = inputListener.isKeyPressed(KeyEvent.VK_SPACE);
+        boolean left = input.isKeyPressed(KeyEvent.VK_LEFT);
+        boolean right = input.isKeyPressed(KeyEvent.VK_RIGHT);
+        boolean space = input.isKeyPressed(KeyEvent.VK_SPACE);
 
         if (space && getVelocity().y() == 0 && energy >= ENERGY_LOSS_JUMP) {
             transform().setVelocityY(VELOCITY_Y);
@@ -197,6 +247,13 @@ public class Avatar extends GameObject {
         energy = Math.min(MAX_ENERGY, energy + amount);
     }
 
+    /** Sets the avatar's energy, e.g. when a saved game is loaded.
+     * @param energy The energy level, clamped to [0, MAX_ENERGY].
+     */
+    public void setEnergy(float energy) {
+        this.energy = Math.max(0, Math.min(MAX_ENERGY, energy));
+    }
+
     /* Decreases the avatar's energy by the specified amount, ensuring it does not go below zero.
      * @param amount The amount of energy to lose. currently a private method, but could be made public if
      * needed.
@@ -205,6 +262,23 @@ public class Avatar extends GameObject {
         energy = Math.max(0, energy - amount);
     }
 
+    /** Freezes or releases the avatar. A frozen avatar ignores input and gravity and stays in place,
+     * e.g. while the world around it is still loading.
+     * @param frozen Whether the avatar should be frozen.
+     */
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+        setVelocity(Vector2.ZERO);
+        transform().setAccelerationY(frozen ? 0 : GRAVITY);
+    }
+
+    /** Returns whether the avatar is frozen.
+     * @return true if the avatar is frozen.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     /** Returns the current energy level of the avatar.
      * @return The current energy level.
      */
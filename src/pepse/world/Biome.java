@@ -0,0 +1,29 @@
+package pepse.world;
+
+/**
+ * The kinds of landscape the world is made of, each with its own relief and tree density.
+ * @see BiomeMap
+ * @author Aron Isaacs
+ */
+public enum Biome {
+    /** Gentle terrain with scattered trees. */
+    PLAINS(0.15f),
+    /** Rugged terrain with few trees. */
+    HILLS(0.08f),
+    /** Gentle terrain densely covered with trees. */
+    FOREST(0.35f);
+
+    private final float treeChance;
+
+    Biome(float treeChance) {
+        this.treeChance = treeChance;
+    }
+
+    /**
+     * Returns the probability of a tree growing in a column of this biome.
+     * @return the chance for a tree, in [0, 1].
+     */
+    public float treeChance() {
+        return treeChance;
+    }
+}
@@ -0,0 +1,89 @@
+package pepse.world;
+
+import pepse.util.NoiseGenerator;
+import pepse.util.noise.NoiseNode;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.util.noise.NoiseGraph.*;
+
+/**
+ * The noise graph the world is generated from, shared by the terrain and flora generators.
+ * Three low-frequency layers decide the landscape: the base relief, a hilliness layer that adds rugged
+ * hills where it is high, and a moisture layer that grows forests where it is high. Terrain height and tree
+ * density both depend on the hilliness layer, which is cached so it is evaluated once per column for both.
+ * Wherever the hilliness is low, the height is exactly the base relief the world always had.
+ * Not thread-safe, because of the column caches.
+ * @see Biome
+ * @author Aron Isaacs
+ */
+public class BiomeMap {
+    // Offset between the seeds of the different noise layers.
+    private static final int LAYER_SEED_OFFSET = 1013;
+    // The largest feature sizes (in pixels) of the biome layers: biomes span many chunks.
+    private static final int HILLINESS_SCALE = GAME_BLOCK_SIZE * 128;
+    private static final int MOISTURE_SCALE = GAME_BLOCK_SIZE * 96;
+    private static final double HILLS_THRESHOLD = 0.25;
+    private static final double FOREST_THRESHOLD = 0.2;
+    // Half the width of the band over which neighbouring biomes blend.
+    private static final double BLEND = 0.1;
+    private static final double BASE_AMPLITUDE = GAME_BLOCK_SIZE * 7;
+    private static final double HILLS_AMPLITUDE = GAME_BLOCK_SIZE * 4;
+    // Columns remembered by each cache: comfortably more than a full window of chunks.
+    private static final int CACHE_COLUMNS = 512;
+
+    private final NoiseNode hilliness;
+    private final NoiseNode moisture;
+    private final NoiseNode heightNoise;
+    private final NoiseNode treeChance;
+
+    /**
+     * Builds the noise graph for the given seed.
+     * @param seed the world seed.
+     * @param groundHeightAtX0 the base ground height, which sets the feature size of the relief.
+     */
+    public BiomeMap(int seed, int groundHeightAtX0) {
+        NoiseNode base = source(new NoiseGenerator(seed, groundHeightAtX0), BASE_AMPLITUDE);
+        NoiseNode hills = source(new NoiseGenerator(seed + LAYER_SEED_OFFSET, groundHeightAtX0 / 2),
+                HILLS_AMPLITUDE);
+        hilliness = cached(source(new NoiseGenerator(seed + 2 * LAYER_SEED_OFFSET, HILLINESS_SCALE), 1),
+                CACHE_COLUMNS);
+        moisture = cached(source(new NoiseGenerator(seed + 3 * LAYER_SEED_OFFSET, MOISTURE_SCALE), 1),
+                CACHE_COLUMNS);
+
+        heightNoise = cached(add(base, select(hilliness, HILLS_THRESHOLD, BLEND, constant(0), hills)),
+                CACHE_COLUMNS);
+        NoiseNode lowlandTrees = select(moisture, FOREST_THRESHOLD, BLEND,
+                constant(Biome.PLAINS.treeChance()), constant(Biome.FOREST.treeChance()));
+        treeChance = select(hilliness, HILLS_THRESHOLD, BLEND, lowlandTrees, constant(Biome.HILLS.treeChance()));
+    }
+
+    /**
+     * Returns the noise to add to the base ground height at the given column.
+     * @param x the x-coordinate of the column.
+     * @return the height noise, in pixels.
+     */
+    public double heightNoiseAt(int x) {
+        return heightNoise.sample(x);
+    }
+
+    /**
+     * Returns the probability of a tree growing in the given column.
+     * @param x the x-coordinate of the column.
+     * @return the chance for a tree, in [0, 1].
+     */
+    public float treeChanceAt(int x) {
+        return (float) treeChance.sample(x);
+    }
+
+    /**
+     * Returns the dominant biome of the given column.
+     * @param x the x-coordinate of the column.
+     * @return the biome.
+     */
+    public Biome biomeAt(int x) {
+        if (hilliness.sample(x) >= HILLS_THRESHOLD) {
+            return Biome.HILLS;
+        }
+        return moisture.sample(x) >= FOREST_THRESHOLD ? Biome.FOREST : Biome.PLAINS;
+    }
+}
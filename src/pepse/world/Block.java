@@ -7,6 +7,7 @@ import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.world.infiniteworld.ChunkLoadable;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
 
@@ -49,4 +50,13 @@ public class Block extends GameObject implements ChunkLoadable {
     public void destroy(BiConsumer<GameObject, Integer> destroyGameObject) {
         destroyGameObject.accept(this, Layer.STATIC_OBJECTS);
     }
+
+    /**
+     * A block never changes after creation, so it may be pre-rendered.
+     * @param collector A Consumer receiving the static game objects.
+     */
+    @Override
+    public void collectStaticObjects(Consumer<GameObject> collector) {
+        collector.accept(this);
+    }
 }
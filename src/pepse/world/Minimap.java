@@ -0,0 +1,188 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.infiniteworld.GroundHeightAt;
+import pepse.world.trees.Flora;
+import pepse.world.trees.Leaf;
+import pepse.world.trees.TreeLayout;
+import pepse.world.trees.Trunk;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+
+/**
+ * A map of the terrain and trees around the avatar, drawn in a corner of the screen.
+ * The map has one pixel per block: each column of the image is rasterised from the ground height and the
+ * deterministic tree placement of its block column, without looking at any game object. The image is a
+ * ring buffer over the world's columns, so as the avatar moves only the newly exposed columns are drawn,
+ * and the ring is unrolled when the map is rendered.
+ * @author Aron Isaacs
+ */
+public class Minimap extends GameObject {
+    /** The number of block columns shown. */
+    public static final int MAP_COLUMNS = 160;
+    /** The on-screen size of a map pixel. */
+    public static final float PIXEL_SCALE = 3;
+
+    private static final int SKY_RGB = Sky.BASIC_SKY_COLOR.getRGB();
+    private static final int TRUNK_RGB = Trunk.TRUNK_COLOR.getRGB();
+    private static final int LEAF_RGB = Leaf.LEAF_COLOR.getRGB();
+    private static final Color AVATAR_COLOR = Color.RED;
+    private static final Color FRAME_COLOR = Color.DARK_GRAY;
+    // Trees in this many columns on each side of a column may have foliage over it.
+    private static final int FOLIAGE_REACH = TreeLayout.FOLIAGE_WIDTH_BLOCKS / 2;
+
+    private final GroundHeightAt groundHeightAt;
+    private final GroundHeightAt surfaceHeightAt;
+    private final Flora flora;
+    private final Supplier<Float> avatarX;
+    private final BufferedImage image;
+    private final int rows;
+    // Reused buffer holding one column of the map.
+    private final int[] columnPixels;
+    // The range of world columns the ring currently holds.
+    private int firstColumn;
+    private int lastColumn = Integer.MIN_VALUE;
+
+    /**
+     * Constructs a minimap.
+     * @param topLeftCorner The top-left corner of the map, in screen coordinates.
+     * @param worldHeight The height of the world shown (normally the window height), in pixels.
+     * @param groundHeightAt A function that provides the generated ground height at a given x-coordinate,
+     *                       which trees grow on.
+     * @param surfaceHeightAt A function that provides the ground height at a given x-coordinate once the
+     *                        player's edits are applied.
+     * @param flora Decides where trees grow.
+     * @param avatarX A supplier of the x-coordinate the map is centred on.
+     */
+    public Minimap(Vector2 topLeftCorner, float worldHeight, GroundHeightAt groundHeightAt,
+                   GroundHeightAt surfaceHeightAt, Flora flora, Supplier<Float> avatarX) {
+        super(topLeftCorner, new Vector2(MAP_COLUMNS, (int) Math.ceil(worldHeight / GAME_BLOCK_SIZE))
+                .mult(PIXEL_SCALE), null);
+        this.groundHeightAt = groundHeightAt;
+        this.surfaceHeightAt = surfaceHeightAt;
+        this.flora = flora;
+        this.avatarX = avatarX;
+        this.rows = (int) Math.ceil(worldHeight / GAME_BLOCK_SIZE);
+        this.image = new BufferedImage(MAP_COLUMNS, rows, BufferedImage.TYPE_INT_RGB);
+        this.columnPixels = new int[rows];
+        renderer().setRenderable(new RingRenderable());
+        setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        setTag("minimap");
+    }
+
+    /**
+     * Redraws the whole map on the next update, e.g. after the ground was edited.
+     */
+    public void groundChanged() {
+        lastColumn = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Draws the columns that scrolled into the map since the last update.
+     * @param deltaTime The time elapsed since the last update call.
+     */
+    @Override
+    public void update(float deltaTime) {
+        super.update(deltaTime);
+        int centerColumn = Math.floorDiv((int) Math.floor(avatarX.get()), GAME_BLOCK_SIZE);
+        int newFirst = centerColumn - MAP_COLUMNS / 2;
+        int newLast = newFirst + MAP_COLUMNS - 1;
+        if (newFirst > lastColumn || newLast < firstColumn) {
+            drawColumns(newFirst, newLast);
+        } else if (newFirst > firstColumn) {
+            drawColumns(lastColumn + 1, newLast);
+        } else if (newFirst < firstColumn) {
+            drawColumns(newFirst, firstColumn - 1);
+        }
+        firstColumn = newFirst;
+        lastColumn = newLast;
+    }
+
+    /*
+     * Rasterises the given range of world columns into their slots of the ring.
+     */
+    private void drawColumns(int from, int to) {
+        for (int column = from; column <= to; column++) {
+            rasterizeColumn(column);
+            image.setRGB(Math.floorMod(column, MAP_COLUMNS), 0, 1, rows, columnPixels, 0, 1);
+        }
+    }
+
+    /*
+     * Computes the pixels of one world column: sky, ground, and the trunk and foliage of nearby trees.
+     */
+    private void rasterizeColumn(int column) {
+        int groundRow = rowOf(surfaceHeightAt.accept(column * GAME_BLOCK_SIZE));
+        for (int row = 0; row < rows; row++) {
+            columnPixels[row] = row >= groundRow ? Terrain.groundColorAt(column, row).getRGB() : SKY_RGB;
+        }
+        for (int treeColumn = column - FOLIAGE_REACH; treeColumn <= column + FOLIAGE_REACH; treeColumn++) {
+            int treeX = treeColumn * GAME_BLOCK_SIZE;
+            if (!flora.hasTreeAt(treeX)) {
+                continue;
+            }
+            float treeY = groundHeightAt.accept(treeX);
+            TreeLayout layout = new TreeLayout(treeX, treeY);
+            int foliageTop = rowOf(layout.getFoliageTop());
+            int i = column - treeColumn + FOLIAGE_REACH;
+            for (int j = 0; j < TreeLayout.FOLIAGE_HEIGHT_BLOCKS; j++) {
+                if (layout.foliageAt(i, j) != TreeLayout.EMPTY) {
+                    setPixel(foliageTop + j, LEAF_RGB);
+                }
+            }
+            if (treeColumn == column) {
+                for (int row = rowOf(treeY - layout.getTrunkHeight()); row < rowOf(treeY); row++) {
+                    setPixel(row, TRUNK_RGB);
+                }
+            }
+        }
+    }
+
+    /*
+     * Sets a pixel of the column buffer, ignoring rows outside the map.
+     */
+    private void setPixel(int row, int rgb) {
+        if (row >= 0 && row < rows) {
+            columnPixels[row] = rgb;
+        }
+    }
+
+    /*
+     * Returns the map row of a world y-coordinate.
+     */
+    private static int rowOf(float y) {
+        return Math.floorDiv((int) Math.floor(y), GAME_BLOCK_SIZE);
+    }
+
+    /*
+     * Draws the ring unrolled, starting at the slot of the first column shown, with the avatar's position
+     * marked in the middle.
+     */
+    private class RingRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            int left = Math.round(topLeftCorner.x());
+            int top = Math.round(topLeftCorner.y());
+            int width = Math.round(dimensions.x());
+            int height = Math.round(dimensions.y());
+            int split = Math.floorMod(firstColumn, MAP_COLUMNS);
+            int splitX = left + Math.round((MAP_COLUMNS - split) * PIXEL_SCALE);
+            g.drawImage(image, left, top, splitX, top + height, split, 0, MAP_COLUMNS, rows, null);
+            g.drawImage(image, splitX, top, left + width, top + height, 0, 0, split, rows, null);
+            g.setColor(AVATAR_COLOR);
+            int centerX = left + width / 2;
+            g.drawLine(centerX, top, centerX, top + height - 1);
+            g.setColor(FRAME_COLOR);
+            g.drawRect(left, top, width - 1, height - 1);
+        }
+    }
+}
@@ -1,31 +1,50 @@
 package pepse.world;
 
-import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
 import pepse.util.ColorSupplier;
-import pepse.util.NoiseGenerator;
+import pepse.util.memory.MemoryBudget;
+import pepse.util.profiling.NoiseBatchEvent;
+import pepse.world.daynight.Palette;
 import pepse.world.infiniteworld.Scrollable;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
 
 /**
  * Manages the terrain in the game world, including ground height and block creation.
- * The terrain is generated using a noise function to create a natural-looking landscape.
+ * The terrain is generated using a noise graph to create a natural-looking landscape of several biomes,
+ * and the blocks the player dug or placed are applied on top of it.
  * The class extends Scrollable to handle dynamic loading and unloading of terrain blocks as the avatar moves.
  * @see Scrollable
- * @see NoiseGenerator
+ * @see BiomeMap
  * @author Aron Isaacs
  */
 public class Terrain extends Scrollable<Block> {
     /** The ratio of the window height at which the ground starts. */
     public static final float GROUND_RATIO = 0.7f;
+    /** The colour ground blocks are approximately drawn with. */
+    public static final Color BASE_GROUND_COLOR = new Color(212, 123, 74);
+    // The daylight colours of ground blocks, and the palette shades they are drawn with, each block picking
+    // one by its position. The colours come from a fixed seed, so every run and every tool agrees on them.
+    private static final Color[] GROUND_COLORS = new Color[16];
+    private static final Palette.Shade[] GROUND_SHADES = new Palette.Shade[GROUND_COLORS.length];
+    private static final long GROUND_COLORS_SEED = 0x5EED;
+
+    static {
+        Random random = new Random(GROUND_COLORS_SEED);
+        for (int i = 0; i < GROUND_COLORS.length; i++) {
+            GROUND_COLORS[i] = ColorSupplier.approximateColor(BASE_GROUND_COLOR, random);
+            GROUND_SHADES[i] = Palette.rectangle(GROUND_COLORS[i]);
+        }
+    }
 
     private final int groundHeightAtX0;
-    private static final Color BASE_GROUND_COLOR = new Color(212, 123, 74);
     private static final int BLOCK_DEPTH = 20; // number of blocks below surface
-    private final NoiseGenerator noiseGenerator;
+    private final BiomeMap biomeMap;
+    private WorldArchive archive;
+    private final TerrainEdits edits = new TerrainEdits();
 
     /**
      * Creates a Terrain instance with the specified window dimensions and seed for noise generation.
@@ -35,7 +54,7 @@ public class Terrain extends Scrollable<Block> {
      */
     public Terrain(Vector2 windowDimensions, int seed){
         groundHeightAtX0 = (int) ( windowDimensions.y() * GROUND_RATIO);
-        this.noiseGenerator = new NoiseGenerator(seed, groundHeightAtX0);
+        this.biomeMap = new BiomeMap(seed, groundHeightAtX0);
     }
 
 
@@ -56,38 +75,170 @@ public class Terrain extends Scrollable<Block> {
         int alignedMinX = (minX / GAME_BLOCK_SIZE) * GAME_BLOCK_SIZE;
         int alignedMaxX = ((maxX + GAME_BLOCK_SIZE - 1) / GAME_BLOCK_SIZE) * GAME_BLOCK_SIZE;
 
-        for (int x = alignedMinX; x < alignedMaxX; x += GAME_BLOCK_SIZE) {
-            float topY = groundHeightAt(x);
-            createColumnOfBlocks(x, topY, blocks);
+        NoiseBatchEvent event = new NoiseBatchEvent();
+        event.begin();
+        float[] columnHeights = new float[(alignedMaxX - alignedMinX) / GAME_BLOCK_SIZE];
+        for (int i = 0; i < columnHeights.length; i++) {
+            columnHeights[i] = groundHeightAt(alignedMinX + i * GAME_BLOCK_SIZE);
+        }
+        if (event.shouldCommit()) {
+            event.minX = alignedMinX;
+            event.maxX = alignedMaxX;
+            event.evaluations = columnHeights.length;
+            event.commit();
+        }
+
+        for (int i = 0; i < columnHeights.length; i++) {
+            createColumnOfBlocks(alignedMinX + i * GAME_BLOCK_SIZE, columnHeights[i], blocks);
         }
+        addPlacedBlocks(alignedMinX / GAME_BLOCK_SIZE, alignedMaxX / GAME_BLOCK_SIZE, blocks);
 
         return blocks;
     }
 
     /**
      * Creates a vertical column of blocks at the specified x-coordinate, starting from the given top y-coordinate.
-     * The column extends downwards for a predefined depth, creating a solid ground structure.
+     * The column extends downwards for a predefined depth, creating a solid ground structure, except for the
+     * blocks that were dug out.
      * Each block is assigned a color that approximates the base ground color.
      * @param x The x-coordinate where the column of blocks will be created.
      * @param topY The y-coordinate of the top block in the column.
      * @param blocks The list to which the created blocks will be added.
      */
-    private static void createColumnOfBlocks(int x, float topY, List<Block> blocks) {
+    private void createColumnOfBlocks(int x, float topY, List<Block> blocks) {
+        int column = Math.floorDiv(x, GAME_BLOCK_SIZE);
+        int topRow = (int) topY / GAME_BLOCK_SIZE;
         for (int i = 0; i < BLOCK_DEPTH; i++) {
-            Vector2 topLeft = new Vector2(x, topY + i * GAME_BLOCK_SIZE);
+            if (edits.editAt(column, topRow + i) != TerrainEdits.DUG) {
+                blocks.add(createBlock(x, topY + i * GAME_BLOCK_SIZE));
+            }
+        }
+    }
 
-            Block block = new Block(
-                    topLeft,
-                    new RectangleRenderable(ColorSupplier.approximateColor(BASE_GROUND_COLOR))
-            );
+    /*
+     * Adds the blocks the player placed in the columns of the given range.
+     * @param minColumn The first column of the range.
+     * @param maxColumn The column after the last column of the range.
+     * @param blocks The list to which the placed blocks will be added.
+     */
+    private void addPlacedBlocks(int minColumn, int maxColumn, List<Block> blocks) {
+        if (maxColumn <= minColumn) {
+            return;
+        }
+        for (int chunk = TerrainEdits.chunkOf(minColumn); chunk <= TerrainEdits.chunkOf(maxColumn - 1); chunk++) {
+            edits.forEachInChunk(chunk, (key, edit) -> {
+                int column = TerrainEdits.columnOf(key);
+                if (edit == TerrainEdits.PLACED && column >= minColumn && column < maxColumn) {
+                    blocks.add(createBlock(column * GAME_BLOCK_SIZE, TerrainEdits.rowOf(key) * GAME_BLOCK_SIZE));
+                }
+            });
+        }
+    }
 
-            block.setTag("ground");
-            blocks.add(block);
+    /*
+     * Creates a ground block at the given top-left corner. The block's shade is a hash of its position, so a
+     * regenerated block keeps its colour.
+     */
+    private static Block createBlock(int x, float y) {
+        Block block = new Block(
+                new Vector2(x, y),
+                GROUND_SHADES[shadeIndex(Math.floorDiv(x, GAME_BLOCK_SIZE),
+                        Math.floorDiv((int) Math.floor(y), GAME_BLOCK_SIZE))]
+        );
+        block.setTag("ground");
+        return block;
+    }
+
+    /**
+     * Returns the colour the ground block at the given cell is drawn with in full daylight, as the game
+     * draws it. The colour depends only on the cell, so it is the same in every run and on every thread.
+     * @param column The column of the block.
+     * @param row The row of the block.
+     * @return The block's daylight colour.
+     */
+    public static Color groundColorAt(int column, int row) {
+        return GROUND_COLORS[shadeIndex(column, row)];
+    }
+
+    /*
+     * Hashes a cell's position to the index of its ground colour.
+     */
+    private static int shadeIndex(int column, int row) {
+        int hash = column * 0x9E3779B9 ^ row * 0x85EBCA6B;
+        return (hash ^ hash >>> 16) & (GROUND_COLORS.length - 1);
+    }
+
+    /**
+     * Digs out the block containing the given point, if there is one.
+     * The chunk of the block must then be reloaded for the change to show.
+     * @param point A point in the world.
+     * @return true if a block was dug out.
+     */
+    public boolean dig(Vector2 point) {
+        int column = Math.floorDiv((int) Math.floor(point.x()), GAME_BLOCK_SIZE);
+        int row = Math.floorDiv((int) Math.floor(point.y()), GAME_BLOCK_SIZE);
+        boolean generated = isGeneratedBlock(column, row);
+        if (!isSolid(column, row, generated)) {
+            return false;
         }
+        edits.setEdit(column, row, generated ? TerrainEdits.DUG : TerrainEdits.NONE);
+        return true;
+    }
+
+    /**
+     * Places a block in the cell containing the given point, if the cell is empty.
+     * The chunk of the block must then be reloaded for the change to show.
+     * @param point A point in the world.
+     * @return true if a block was placed.
+     */
+    public boolean place(Vector2 point) {
+        int column = Math.floorDiv((int) Math.floor(point.x()), GAME_BLOCK_SIZE);
+        int row = Math.floorDiv((int) Math.floor(point.y()), GAME_BLOCK_SIZE);
+        boolean generated = isGeneratedBlock(column, row);
+        if (isSolid(column, row, generated)) {
+            return false;
+        }
+        edits.setEdit(column, row, generated ? TerrainEdits.NONE : TerrainEdits.PLACED);
+        return true;
+    }
+
+    /*
+     * Returns whether the generator creates a block at the given cell.
+     */
+    private boolean isGeneratedBlock(int column, int row) {
+        int topRow = (int) groundHeightAt(column * GAME_BLOCK_SIZE) / GAME_BLOCK_SIZE;
+        return row >= topRow && row < topRow + BLOCK_DEPTH;
+    }
+
+    /*
+     * Returns whether the given cell holds a block once the edits are applied.
+     */
+    private boolean isSolid(int column, int row, boolean generated) {
+        byte edit = edits.editAt(column, row);
+        return generated ? edit != TerrainEdits.DUG : edit == TerrainEdits.PLACED;
+    }
+
+    /**
+     * Registers the saved chunk states and the player's edits with a memory budget. Edits are only
+     * accounted for; they are never evicted.
+     * @param budget The memory budget.
+     */
+    @Override
+    public void registerMemory(MemoryBudget budget) {
+        super.registerMemory(budget);
+        budget.register(edits);
+    }
+
+    /**
+     * Returns the player's edits of the terrain, e.g. to persist them.
+     * @return The terrain edits.
+     */
+    public TerrainEdits getEdits() {
+        return edits;
     }
 
     /**
-     * Calculates the ground height at a given x-coordinate using a noise function.
+     * Calculates the ground height at a given x-coordinate using the biome noise graph.
      * The height is aligned to the block grid to ensure consistent placement of terrain blocks.
      * @param x The x-coordinate for which to calculate the ground height.
      * @return The y-coordinate of the ground height at the specified x-coordinate, aligned to the block grid.
@@ -96,8 +247,58 @@ public class Terrain extends Scrollable<Block> {
         //note the castings to int and then back to float are to ensure the height is aligned to the block
         // grid. The API of the project requires both the parameter and return value to be a float.
         int startOfBlock = (((int) x) / GAME_BLOCK_SIZE) * GAME_BLOCK_SIZE;
-        int noise = (int) noiseGenerator.noise(startOfBlock, GAME_BLOCK_SIZE *7);
+        if (archive != null && archive.contains(startOfBlock)) {
+            return archive.groundHeightAt(startOfBlock);
+        }
+        int noise = (int) biomeMap.heightNoiseAt(startOfBlock);
         return (float) ((groundHeightAtX0 + noise) / GAME_BLOCK_SIZE) * GAME_BLOCK_SIZE;
 
     }
+
+    /**
+     * Returns the height of the topmost block of the column containing a given x-coordinate once the
+     * player's edits are applied, i.e. where something standing in the column rests. Unlike
+     * {@link #groundHeightAt(float)} it rises over placed blocks and sinks into dug ones.
+     * @param x The x-coordinate.
+     * @return The y-coordinate of the top of the column's surface block, or of the bottom of the terrain if
+     * the whole column was dug out.
+     */
+    public float surfaceHeightAt(float x) {
+        int column = Math.floorDiv((int) Math.floor(x), GAME_BLOCK_SIZE);
+        int topRow = (int) groundHeightAt(column * GAME_BLOCK_SIZE) / GAME_BLOCK_SIZE;
+        int bottomRow = topRow + BLOCK_DEPTH;
+        for (int row = Math.min(edits.topPlacedRow(column), topRow); row < bottomRow; row++) {
+            if (isSolid(column, row, row >= topRow)) {
+                return row * GAME_BLOCK_SIZE;
+            }
+        }
+        return bottomRow * GAME_BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the ground height at x=0 before noise is added, which depends on the window height.
+     * @return The base ground height, in pixels.
+     */
+    public int getGroundHeightAtX0() {
+        return groundHeightAtX0;
+    }
+
+    /**
+     * Makes ground heights read from a pre-generated world archive wherever the archive covers,
+     * instead of evaluating the noise graph.
+     * @param archive The archive, or null to always generate.
+     */
+    public void setArchive(WorldArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Returns the probability of a tree growing at a given x-coordinate, according to its biome.
+     * Shares the biome noise evaluated for the ground height of the same column.
+     * @param x The x-coordinate of the column.
+     * @return The chance for a tree, in [0, 1].
+     */
+    public float treeChanceAt(int x) {
+        return biomeMap.treeChanceAt(x);
+    }
 }
@@ -0,0 +1,249 @@
+package pepse.world;
+
+import pepse.util.LongByteMap;
+import pepse.util.memory.MemoryConsumer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * The blocks the player dug out of, or placed into, the procedurally generated terrain.
+ * Edits are kept per chunk in a sparse primitive map keyed by the packed (column, row) of the block, so the
+ * memory used grows with the number of edits and not with the size of the world. A chunk without edits
+ * holds nothing at all: a chunk whose edits are all undone is forgotten.
+ * @author Aron Isaacs
+ */
+public class TerrainEdits implements MemoryConsumer {
+    /** No edit: the block is as generated. */
+    public static final byte NONE = 0;
+    /** A generated block that was dug out. */
+    public static final byte DUG = 1;
+    /** A block placed where the generator left air. */
+    public static final byte PLACED = 2;
+
+    private static final int COLUMNS_PER_CHUNK = CHUNK_SIZE / GAME_BLOCK_SIZE;
+    // The memory retained by a chunk's edits besides the slots of its map.
+    private static final int CHUNK_OVERHEAD_BYTES = 96;
+    private static final int BYTES_PER_SLOT = Long.BYTES + Byte.BYTES;
+    // The top placed row of a column that has no placed blocks.
+    private static final int NO_ROW = Integer.MAX_VALUE;
+
+    /*
+     * The edits of one chunk.
+     */
+    private static class ChunkEdits {
+        private final LongByteMap edits = new LongByteMap();
+        // The topmost placed row of each of the chunk's columns, so surface queries need not scan the map.
+        private final int[] topPlacedRows = new int[COLUMNS_PER_CHUNK];
+
+        private ChunkEdits() {
+            Arrays.fill(topPlacedRows, NO_ROW);
+        }
+
+        /*
+         * Finds the topmost placed row of a column again, after the previous one was removed.
+         */
+        private void rescanColumn(int column) {
+            int slot = Math.floorMod(column, COLUMNS_PER_CHUNK);
+            topPlacedRows[slot] = NO_ROW;
+            edits.forEach((key, edit) -> {
+                if (edit == PLACED && columnOf(key) == column) {
+                    topPlacedRows[slot] = Math.min(topPlacedRows[slot], rowOf(key));
+                }
+            });
+        }
+    }
+
+    private final Map<Integer, ChunkEdits> chunks = new HashMap<>();
+    private long retainedBytes;
+    private long lastUsedNanos = System.nanoTime();
+    private int revision;
+
+    /**
+     * Packs a block's grid coordinates into a single key.
+     * @param column the column of the block (its x-coordinate divided by the block size).
+     * @param row the row of the block (its y-coordinate divided by the block size).
+     * @return the packed key.
+     */
+    public static long pack(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the column of a packed key.
+     * @param key the packed key.
+     * @return the column.
+     */
+    public static int columnOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Returns the row of a packed key.
+     * @param key the packed key.
+     * @return the row.
+     */
+    public static int rowOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the index of the chunk a column belongs to.
+     * @param column the column.
+     * @return the chunk index.
+     */
+    public static int chunkOf(int column) {
+        return Math.floorDiv(column, COLUMNS_PER_CHUNK);
+    }
+
+    /**
+     * Returns the edit of a block.
+     * @param column the column of the block.
+     * @param row the row of the block.
+     * @return {@link #NONE}, {@link #DUG} or {@link #PLACED}.
+     */
+    public byte editAt(int column, int row) {
+        ChunkEdits chunk = chunks.get(chunkOf(column));
+        return chunk == null ? NONE : chunk.edits.get(pack(column, row));
+    }
+
+    /**
+     * Returns the topmost row of a column that holds a placed block.
+     * @param column the column.
+     * @return the row, or {@link Integer#MAX_VALUE} if no block was placed in the column.
+     */
+    public int topPlacedRow(int column) {
+        ChunkEdits chunk = chunks.get(chunkOf(column));
+        return chunk == null ? NO_ROW : chunk.topPlacedRows[Math.floorMod(column, COLUMNS_PER_CHUNK)];
+    }
+
+    /**
+     * Returns a number that changes whenever an edit is set or a chunk's edits are cleared, so caches of
+     * anything derived from the edits (e.g. ground heights) can tell they are stale.
+     * @return the revision of the edits.
+     */
+    public int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets the edit of a block. A chunk left without edits is forgotten.
+     * @param column the column of the block.
+     * @param row the row of the block.
+     * @param edit {@link #NONE} to restore the generated block, {@link #DUG} or {@link #PLACED}.
+     */
+    public void setEdit(int column, int row, byte edit) {
+        int chunkIndex = chunkOf(column);
+        ChunkEdits chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            if (edit == NONE) {
+                return;
+            }
+            chunk = new ChunkEdits();
+            chunks.put(chunkIndex, chunk);
+            retainedBytes += CHUNK_OVERHEAD_BYTES + (long) chunk.edits.capacity() * BYTES_PER_SLOT;
+        }
+        int capacity = chunk.edits.capacity();
+        byte previous = chunk.edits.get(pack(column, row));
+        chunk.edits.put(pack(column, row), edit);
+        int slot = Math.floorMod(column, COLUMNS_PER_CHUNK);
+        if (edit == PLACED) {
+            chunk.topPlacedRows[slot] = Math.min(chunk.topPlacedRows[slot], row);
+        } else if (previous == PLACED && chunk.topPlacedRows[slot] == row) {
+            chunk.rescanColumn(column);
+        }
+        revision++;
+        retainedBytes += (long) (chunk.edits.capacity() - capacity) * BYTES_PER_SLOT;
+        lastUsedNanos = System.nanoTime();
+        if (chunk.edits.size() == 0) {
+            chunks.remove(chunkIndex);
+            retainedBytes -= CHUNK_OVERHEAD_BYTES + (long) chunk.edits.capacity() * BYTES_PER_SLOT;
+        }
+    }
+
+    /**
+     * Passes every edit of a chunk to the given consumer.
+     * @param chunkIndex the index of the chunk.
+     * @param consumer receives the packed key and the edit of every edited block of the chunk.
+     */
+    public void forEachInChunk(int chunkIndex, LongByteMap.EntryConsumer consumer) {
+        ChunkEdits chunk = chunks.get(chunkIndex);
+        if (chunk != null) {
+            chunk.edits.forEach(consumer);
+        }
+    }
+
+    /**
+     * Passes the index of every chunk that holds edits.
+     * @param consumer receives the chunk indices.
+     */
+    public void forEachChunk(IntConsumer consumer) {
+        for (int chunkIndex : chunks.keySet()) {
+            consumer.accept(chunkIndex);
+        }
+    }
+
+    /**
+     * Forgets every edit of a chunk, e.g. before replacing them with a copy received from elsewhere.
+     * @param chunkIndex the index of the chunk.
+     */
+    public void clearChunk(int chunkIndex) {
+        ChunkEdits chunk = chunks.remove(chunkIndex);
+        if (chunk != null) {
+            retainedBytes -= CHUNK_OVERHEAD_BYTES + (long) chunk.edits.capacity() * BYTES_PER_SLOT;
+            lastUsedNanos = System.nanoTime();
+            revision++;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Terrain edits";
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Edits are the player's work and cannot be regenerated, so they are never evicted.
+     * @return {@link Float#POSITIVE_INFINITY}.
+     */
+    @Override
+    public float evictionCost() {
+        return Float.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public long lastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * Edits are never evicted.
+     * @param bytes The amount of memory requested.
+     * @return 0.
+     */
+    @Override
+    public long trim(long bytes) {
+        return 0;
+    }
+
+    /**
+     * Returns the number of edited blocks in the world.
+     * @return the number of edits.
+     */
+    public int editCount() {
+        int count = 0;
+        for (ChunkEdits chunk : chunks.values()) {
+            count += chunk.edits.size();
+        }
+        return count;
+    }
+}
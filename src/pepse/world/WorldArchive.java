@@ -0,0 +1,301 @@
+package pepse.world;
+
+import pepse.util.memory.MemoryConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * A range of chunks generated ahead of time, as written by {@link pepse.tools.WorldPregenerator}.
+ * Only what the generators compute from noise is stored: the ground height of every column and whether a
+ * tree grows in it. Everything else (blocks, tree layouts, colours) follows cheaply from those.
+ * <p>
+ * Layout: a header of {@code int MAGIC, short VERSION, int seed, int groundHeightAtX0, int fromChunk,
+ * int toChunk}, followed by fixed-size chunk records, in any order, of {@code int chunkIndex,
+ * short[COLUMNS_PER_CHUNK] groundRows, byte treeMask, int crc32}, where ground rows are heights divided by the
+ * block size, bit i of the tree mask is set if the i-th column holds a tree, and the checksum covers the
+ * record's preceding bytes.
+ * @author Aron Isaacs
+ */
+public class WorldArchive implements MemoryConsumer {
+    /** The number of block columns in a chunk. */
+    public static final int COLUMNS_PER_CHUNK = CHUNK_SIZE / GAME_BLOCK_SIZE;
+    /** The size of the header, in bytes. */
+    public static final int HEADER_BYTES = 4 + 2 + 4 * 4;
+    /** The size of one chunk record, in bytes. */
+    public static final int RECORD_BYTES = 4 + 2 * COLUMNS_PER_CHUNK + 1 + 4;
+
+    private static final int MAGIC = 0x50455057; // "PEPW"
+    private static final short VERSION = 1;
+    // The memory retained by one chunk in memory: its column array and its map entry.
+    private static final long CHUNK_BYTES = 96 + Short.BYTES * (COLUMNS_PER_CHUNK + 1);
+
+    private final int seed;
+    private final int groundHeightAtX0;
+    private final int fromChunk;
+    private final int toChunk;
+    // Per chunk index: the ground rows of its columns, followed by its tree mask; least recently used first.
+    private final Map<Integer, short[]> chunks = new LinkedHashMap<>(16, 0.75f, true);
+    private long lastUsedNanos = System.nanoTime();
+
+    /*
+     * Constructs an empty archive with the given header values.
+     */
+    private WorldArchive(int seed, int groundHeightAtX0, int fromChunk, int toChunk) {
+        this.seed = seed;
+        this.groundHeightAtX0 = groundHeightAtX0;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+    }
+
+    /**
+     * Writes the header of a new archive.
+     * @param buffer the buffer to write to.
+     * @param seed the world seed.
+     * @param groundHeightAtX0 the base ground height the chunks were generated with.
+     * @param fromChunk the first chunk of the archived range.
+     * @param toChunk the last chunk of the archived range (inclusive).
+     */
+    public static void writeHeader(ByteBuffer buffer, int seed, int groundHeightAtX0, int fromChunk, int toChunk) {
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(seed).putInt(groundHeightAtX0)
+                .putInt(fromChunk).putInt(toChunk);
+    }
+
+    /**
+     * Writes one chunk record.
+     * @param buffer the buffer to write to; must have {@link #RECORD_BYTES} remaining.
+     * @param chunkIndex the index of the chunk.
+     * @param groundHeights the ground height of each of the chunk's columns, in pixels.
+     * @param treeMask bit i is set if the i-th column of the chunk holds a tree.
+     */
+    public static void writeRecord(ByteBuffer buffer, int chunkIndex, float[] groundHeights, int treeMask) {
+        int start = buffer.position();
+        buffer.putInt(chunkIndex);
+        for (int i = 0; i < COLUMNS_PER_CHUNK; i++) {
+            buffer.putShort((short) (groundHeights[i] / GAME_BLOCK_SIZE));
+        }
+        buffer.put((byte) treeMask);
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    /*
+     * Computes the checksum of a record's content, starting at the given position and ending at the buffer's
+     * current position.
+     */
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.position(start).limit(buffer.position());
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads an archive, keeping every intact record. A partially written last record (e.g. after an
+     * interrupted generation) is ignored.
+     * @param file the archive file.
+     * @return the archive.
+     * @throws IOException if the file cannot be read or is not a world archive.
+     */
+    public static WorldArchive read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends.
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException("Not a supported world archive: " + file);
+            }
+            WorldArchive archive = new WorldArchive(header.getInt(), header.getInt(), header.getInt(),
+                    header.getInt());
+            archive.readRecords(channel);
+            return archive;
+        }
+    }
+
+    /**
+     * Reads the records following the header, stopping at the first one that is incomplete or corrupt
+     * (e.g. the last record of an interrupted generation).
+     * @param channel a channel of the archive, positioned right after the header.
+     * @param recordConsumer receives every intact record, positioned at its start; the buffer is reused.
+     * @return the length, from the start of the file, of the header and the intact records.
+     * @throws IOException if reading fails.
+     */
+    public static long scanRecords(FileChannel channel, Consumer<ByteBuffer> recordConsumer) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        long intactLength = HEADER_BYTES;
+        while (true) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record) >= 0) {
+                // Keep reading until the record is complete or the file ends.
+            }
+            if (record.hasRemaining()) {
+                return intactLength;
+            }
+            record.position(RECORD_BYTES - 4);
+            if (checksum(record, 0) != record.getInt()) {
+                return intactLength;
+            }
+            record.position(0);
+            recordConsumer.accept(record);
+            intactLength += RECORD_BYTES;
+        }
+    }
+
+    /**
+     * Checks that the header of an existing archive matches the given generation parameters.
+     * @param channel a channel of the archive, positioned at its start.
+     * @param seed the world seed.
+     * @param groundHeightAtX0 the base ground height.
+     * @param fromChunk the first chunk of the range.
+     * @param toChunk the last chunk of the range.
+     * @return true if the header matches.
+     * @throws IOException if reading fails.
+     */
+    public static boolean headerMatches(FileChannel channel, int seed, int groundHeightAtX0,
+                                        int fromChunk, int toChunk) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // Keep reading until the header is complete or the file ends.
+        }
+        header.flip();
+        return header.remaining() == HEADER_BYTES && header.getInt() == MAGIC && header.getShort() == VERSION
+                && header.getInt() == seed && header.getInt() == groundHeightAtX0
+                && header.getInt() == fromChunk && header.getInt() == toChunk;
+    }
+
+    /*
+     * Reads every intact record of the archive into memory.
+     */
+    private void readRecords(FileChannel channel) throws IOException {
+        scanRecords(channel, record -> {
+            int chunkIndex = record.getInt();
+            short[] columns = new short[COLUMNS_PER_CHUNK + 1];
+            for (int i = 0; i < COLUMNS_PER_CHUNK; i++) {
+                columns[i] = record.getShort();
+            }
+            columns[COLUMNS_PER_CHUNK] = (short) (record.get() & 0xFF);
+            chunks.put(chunkIndex, columns);
+        });
+    }
+
+    /**
+     * Returns the seed the archive was generated with.
+     * @return the seed.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the base ground height the archive was generated with, which depends on the window height.
+     * @return the base ground height, in pixels.
+     */
+    public int getGroundHeightAtX0() {
+        return groundHeightAtX0;
+    }
+
+    /**
+     * Returns the number of chunks in the archive.
+     * @return the number of archived chunks.
+     */
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Returns whether the archive holds the column at the given x-coordinate.
+     * @param x the x-coordinate of the column, aligned to the block grid.
+     * @return true if the column is archived.
+     */
+    public boolean contains(int x) {
+        int chunkIndex = Math.floorDiv(x, CHUNK_SIZE);
+        return chunkIndex >= fromChunk && chunkIndex <= toChunk && chunks.containsKey(chunkIndex);
+    }
+
+    /*
+     * Returns the columns of the chunk containing the given x-coordinate, marking the chunk as used.
+     */
+    private short[] chunkAt(int x) {
+        lastUsedNanos = System.nanoTime();
+        return chunks.get(Math.floorDiv(x, CHUNK_SIZE));
+    }
+
+    /**
+     * Returns the archived ground height of a column.
+     * @param x the x-coordinate of the column, which must be archived.
+     * @return the ground height, in pixels.
+     */
+    public float groundHeightAt(int x) {
+        return chunkAt(x)[columnOf(x)] * GAME_BLOCK_SIZE;
+    }
+
+    /**
+     * Returns whether a tree grows in an archived column.
+     * @param x the x-coordinate of the column, which must be archived.
+     * @return true if the column holds a tree.
+     */
+    public boolean hasTreeAt(int x) {
+        return (chunkAt(x)[COLUMNS_PER_CHUNK] & (1 << columnOf(x))) != 0;
+    }
+
+    @Override
+    public String getName() {
+        return "World archive";
+    }
+
+    @Override
+    public long retainedBytes() {
+        return chunks.size() * CHUNK_BYTES;
+    }
+
+    /**
+     * Evicted chunks are generated from noise instead, with the same result, so they only cost time.
+     * @return The relative cost of evicting a byte.
+     */
+    @Override
+    public float evictionCost() {
+        return 1;
+    }
+
+    @Override
+    public long lastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * Drops the least recently used chunks from memory.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, in bytes.
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = 0;
+        Iterator<short[]> leastRecentFirst = chunks.values().iterator();
+        while (freed < bytes && leastRecentFirst.hasNext()) {
+            leastRecentFirst.next();
+            leastRecentFirst.remove();
+            freed += CHUNK_BYTES;
+        }
+        return freed;
+    }
+
+    /*
+     * Returns the index of a column within its chunk.
+     */
+    private static int columnOf(int x) {
+        return Math.floorMod(x, CHUNK_SIZE) / GAME_BLOCK_SIZE;
+    }
+}
@@ -0,0 +1,35 @@
+package pepse.world;
+
+/**
+ * The time that passed in the game world, advanced once per frame by the game manager.
+ * Parts of the world that are not simulated for a while (unloaded or far-away chunks) compare it with the
+ * time they were set aside at, and catch up on the elapsed time in one step when they come back.
+ * @author Aron Isaacs
+ */
+public class WorldClock {
+    private double seconds;
+
+    /**
+     * Advances the clock.
+     * @param deltaTime the time, in seconds, that passed since the last advance.
+     */
+    public void advance(float deltaTime) {
+        seconds += deltaTime;
+    }
+
+    /**
+     * Sets the clock, e.g. to the time of a saved game.
+     * @param seconds the seconds that passed since the world was created.
+     */
+    public void set(double seconds) {
+        this.seconds = seconds;
+    }
+
+    /**
+     * Returns the current world time.
+     * @return the seconds that passed since the world was created.
+     */
+    public double now() {
+        return seconds;
+    }
+}
@@ -0,0 +1,365 @@
+package pepse.world;
+
+import pepse.world.infiniteworld.Scrollable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A saved game: everything about the world that cannot be regenerated from its seed.
+ * That is the avatar's position and energy, the world time (which sets the day-night phase and lets
+ * set-aside chunks catch up), the player's terrain edits, and the states of chunk objects, such as eaten
+ * fruits waiting to grow back.
+ * Saving is split so that it does not stall a frame: {@link #capture} encodes the world into a buffer on the
+ * game thread, which only copies a few primitive arrays, and {@link #write} puts the buffer on disk from any
+ * thread, replacing the previous save only once the new one is complete. The chunk states are collected
+ * first, so the buffer is allocated once at the exact size of the encoded world.
+ * <p>
+ * Layout: {@code int MAGIC, short VERSION, int seed, int groundHeightAtX0, double worldTime, float avatarX,
+ * float avatarY, float avatarEnergy}; the edits as {@code int chunkCount} chunks of {@code int chunkIndex,
+ * int editCount} followed by {@code long key, byte edit} per edit; the chunk states as
+ * {@code int scrollableCount} scrollables of {@code short nameLength, byte[] name, int chunkCount} followed per
+ * chunk by {@code int chunkIndex, double capturedAt, int objectCount} and per object {@code int length}
+ * ({@code -1} for none) and as many floats; and finally an {@code int crc32} of everything before it.
+ * Object states are written as float arrays, which is what the world's objects capture; other states are
+ * not saved.
+ * @author Aron Isaacs
+ */
+public class WorldSnapshot {
+    /** The version of the format written. */
+    public static final short VERSION = 1;
+
+    private static final int MAGIC = 0x50455053; // "PEPS"
+    // The bytes of the header, up to the avatar's energy, and of the checksum at the end.
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Short.BYTES + Double.BYTES + 3 * Float.BYTES;
+    private static final int CHECKSUM_BYTES = Integer.BYTES;
+    private static final int NO_STATE = -1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /*
+     * The states of one chunk of a scrollable.
+     */
+    private static class ChunkStates {
+        private final String scrollable;
+        private final int chunkIndex;
+        private final double capturedAt;
+        private final Object[] states;
+
+        private ChunkStates(String scrollable, int chunkIndex, double capturedAt, Object[] states) {
+            this.scrollable = scrollable;
+            this.chunkIndex = chunkIndex;
+            this.capturedAt = capturedAt;
+            this.states = states;
+        }
+    }
+
+    private final int seed;
+    private final int groundHeightAtX0;
+    private final double worldTime;
+    private final float avatarX;
+    private final float avatarY;
+    private final float avatarEnergy;
+    private final TerrainEdits edits = new TerrainEdits();
+    private final List<ChunkStates> chunkStates = new ArrayList<>();
+
+    /*
+     * Constructs a snapshot with the given header values and no edits or states yet.
+     */
+    private WorldSnapshot(int seed, int groundHeightAtX0, double worldTime,
+                          float avatarX, float avatarY, float avatarEnergy) {
+        this.seed = seed;
+        this.groundHeightAtX0 = groundHeightAtX0;
+        this.worldTime = worldTime;
+        this.avatarX = avatarX;
+        this.avatarY = avatarY;
+        this.avatarEnergy = avatarEnergy;
+    }
+
+    /**
+     * Encodes the state of the world. Must be called on the game thread; the result may then be written
+     * from any thread.
+     * @param seed the world seed.
+     * @param terrain the terrain, whose edits are saved.
+     * @param worldTime the current world time.
+     * @param avatar the avatar, whose position and energy are saved.
+     * @param scrollables the scrollables whose chunk states are saved.
+     * @return the encoded snapshot, ready to be read.
+     */
+    public static ByteBuffer capture(int seed, Terrain terrain, double worldTime, Avatar avatar,
+                                     List<Scrollable<?>> scrollables) {
+        // Loaded chunks capture their states anew on every visit, so they are visited once and kept.
+        List<ChunkStates> states = new ArrayList<>();
+        int[] stateCounts = new int[scrollables.size()];
+        for (int i = 0; i < scrollables.size(); i++) {
+            String name = scrollables.get(i).getClass().getSimpleName();
+            int before = states.size();
+            scrollables.get(i).forEachChunkState((chunkIndex, capturedAt, objectStates) ->
+                    states.add(new ChunkStates(name, chunkIndex, capturedAt, objectStates)));
+            stateCounts[i] = states.size() - before;
+        }
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(terrain.getEdits(), scrollables, states));
+        encode(out, seed, terrain, worldTime, avatar, scrollables, states, stateCounts);
+        out.flip();
+        return out;
+    }
+
+    /*
+     * Returns the number of bytes the world encodes to, given its chunk states in scrollable order.
+     */
+    private static int encodedSize(TerrainEdits terrainEdits, List<Scrollable<?>> scrollables,
+                                   List<ChunkStates> states) {
+        int[] size = {HEADER_BYTES + Integer.BYTES};
+        terrainEdits.forEachChunk(chunkIndex -> {
+            size[0] += 2 * Integer.BYTES;
+            terrainEdits.forEachInChunk(chunkIndex, (key, edit) -> size[0] += Long.BYTES + Byte.BYTES);
+        });
+        size[0] += Integer.BYTES;
+        for (Scrollable<?> scrollable : scrollables) {
+            size[0] += Short.BYTES + scrollable.getClass().getSimpleName().getBytes(StandardCharsets.UTF_8).length
+                    + Integer.BYTES;
+        }
+        for (ChunkStates chunk : states) {
+            size[0] += 2 * Integer.BYTES + Double.BYTES;
+            for (Object state : chunk.states) {
+                size[0] += Integer.BYTES + (state instanceof float[] ? ((float[]) state).length * Float.BYTES : 0);
+            }
+        }
+        return size[0] + CHECKSUM_BYTES;
+    }
+
+    /*
+     * Encodes the world into a buffer of its exact encoded size, given its chunk states in scrollable order
+     * and how many of them each scrollable has.
+     */
+    private static void encode(ByteBuffer out, int seed, Terrain terrain, double worldTime, Avatar avatar,
+                               List<Scrollable<?>> scrollables, List<ChunkStates> states, int[] stateCounts) {
+        out.putInt(MAGIC).putShort(VERSION).putInt(seed).putInt(terrain.getGroundHeightAtX0())
+                .putDouble(worldTime).putFloat(avatar.getTopLeftCorner().x())
+                .putFloat(avatar.getTopLeftCorner().y()).putFloat(avatar.getEnergy());
+        TerrainEdits terrainEdits = terrain.getEdits();
+        // The counts are only known once their items are written, so they are filled in afterwards.
+        int[] counts = new int[2];
+        int chunkCountAt = out.position();
+        out.putInt(0);
+        terrainEdits.forEachChunk(chunkIndex -> {
+            out.putInt(chunkIndex);
+            int editCountAt = out.position();
+            out.putInt(0);
+            counts[1] = 0;
+            terrainEdits.forEachInChunk(chunkIndex, (key, edit) -> {
+                out.putLong(key).put(edit);
+                counts[1]++;
+            });
+            out.putInt(editCountAt, counts[1]);
+            counts[0]++;
+        });
+        out.putInt(chunkCountAt, counts[0]);
+        out.putInt(scrollables.size());
+        int next = 0;
+        for (int i = 0; i < scrollables.size(); i++) {
+            byte[] name = scrollables.get(i).getClass().getSimpleName().getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) name.length).put(name).putInt(stateCounts[i]);
+            for (int end = next + stateCounts[i]; next < end; next++) {
+                ChunkStates chunk = states.get(next);
+                out.putInt(chunk.chunkIndex).putDouble(chunk.capturedAt).putInt(chunk.states.length);
+                for (Object state : chunk.states) {
+                    if (state instanceof float[]) {
+                        float[] values = (float[]) state;
+                        out.putInt(values.length);
+                        for (float value : values) {
+                            out.putFloat(value);
+                        }
+                    } else {
+                        out.putInt(NO_STATE);
+                    }
+                }
+            }
+        }
+        out.putInt(checksum(out, out.position()));
+    }
+
+    /*
+     * Computes the checksum of the buffer's first bytes.
+     */
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.position(0).limit(length);
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes an encoded snapshot to a file through a temporary file, so an interrupted save never leaves a
+     * broken file behind. May be called from any thread.
+     * @param snapshot the snapshot returned by {@link #capture}; it is consumed.
+     * @param file the file to write.
+     * @throws IOException if writing fails.
+     */
+    public static void write(ByteBuffer snapshot, File file) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot.
+     * @param file the snapshot file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read, is not a snapshot of a supported version, or is corrupt.
+     */
+    public static WorldSnapshot read(File file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            in = ByteBuffer.allocate((int) channel.size());
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // Keep reading until the buffer is full or the file ends.
+            }
+        }
+        in.flip();
+        if (in.remaining() < Integer.BYTES + Short.BYTES || in.getInt() != MAGIC || in.getShort() != VERSION) {
+            throw new IOException("Not a supported world snapshot: " + file);
+        }
+        int checksumAt = in.limit() - Integer.BYTES;
+        if (checksum(in, checksumAt) != in.getInt(checksumAt)) {
+            throw new IOException("Corrupt world snapshot: " + file);
+        }
+        WorldSnapshot snapshot = new WorldSnapshot(in.getInt(), in.getInt(), in.getDouble(),
+                in.getFloat(), in.getFloat(), in.getFloat());
+        int chunkCount = in.getInt();
+        for (int i = 0; i < chunkCount; i++) {
+            in.getInt();
+            int editCount = in.getInt();
+            for (int j = 0; j < editCount; j++) {
+                long key = in.getLong();
+                snapshot.edits.setEdit(TerrainEdits.columnOf(key), TerrainEdits.rowOf(key), in.get());
+            }
+        }
+        int scrollableCount = in.getInt();
+        for (int i = 0; i < scrollableCount; i++) {
+            byte[] name = new byte[in.getShort()];
+            in.get(name);
+            snapshot.readChunkStates(in, new String(name, StandardCharsets.UTF_8));
+        }
+        return snapshot;
+    }
+
+    /*
+     * Reads the chunk states of one scrollable.
+     */
+    private void readChunkStates(ByteBuffer in, String scrollable) {
+        int chunkCount = in.getInt();
+        for (int i = 0; i < chunkCount; i++) {
+            int chunkIndex = in.getInt();
+            double capturedAt = in.getDouble();
+            Object[] states = new Object[in.getInt()];
+            for (int j = 0; j < states.length; j++) {
+                int length = in.getInt();
+                if (length != NO_STATE) {
+                    float[] values = new float[length];
+                    in.asFloatBuffer().get(values);
+                    in.position(in.position() + length * Float.BYTES);
+                    states[j] = values;
+                }
+            }
+            chunkStates.add(new ChunkStates(scrollable, chunkIndex, capturedAt, states));
+        }
+    }
+
+    /**
+     * Returns whether the snapshot was saved in the world generated with the given parameters; a snapshot
+     * of another world would not match the terrain regenerated around it.
+     * @param seed the world seed.
+     * @param groundHeightAtX0 the base ground height of the terrain.
+     * @return true if the snapshot belongs to this world.
+     */
+    public boolean matches(int seed, int groundHeightAtX0) {
+        return this.seed == seed && this.groundHeightAtX0 == groundHeightAtX0;
+    }
+
+    /**
+     * Restores the saved edits, world time and chunk states. Best done before any chunk is generated, so
+     * that chunks come up as saved instead of being regenerated.
+     * @param terrain the terrain to apply the edits to.
+     * @param worldClock the world clock to set.
+     * @param scrollables the scrollables to restore chunk states to, matched by class name.
+     */
+    public void restore(Terrain terrain, WorldClock worldClock, List<Scrollable<?>> scrollables) {
+        TerrainEdits terrainEdits = terrain.getEdits();
+        edits.forEachChunk(chunkIndex -> edits.forEachInChunk(chunkIndex, (key, edit) ->
+                terrainEdits.setEdit(TerrainEdits.columnOf(key), TerrainEdits.rowOf(key), edit)));
+        worldClock.set(worldTime);
+        for (ChunkStates chunk : chunkStates) {
+            for (Scrollable<?> scrollable : scrollables) {
+                if (scrollable.getClass().getSimpleName().equals(chunk.scrollable)) {
+                    scrollable.restoreChunkStates(chunk.chunkIndex, chunk.capturedAt, chunk.states);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the world time the snapshot was saved at.
+     * @return the world time, in seconds.
+     */
+    public double getWorldTime() {
+        return worldTime;
+    }
+
+    /**
+     * Returns the saved x-coordinate of the avatar's top-left corner.
+     * @return the x-coordinate.
+     */
+    public float getAvatarX() {
+        return avatarX;
+    }
+
+    /**
+     * Returns the saved y-coordinate of the avatar's top-left corner.
+     * @return the y-coordinate.
+     */
+    public float getAvatarY() {
+        return avatarY;
+    }
+
+    /**
+     * Returns the saved energy of the avatar.
+     * @return the energy.
+     */
+    public float getAvatarEnergy() {
+        return avatarEnergy;
+    }
+
+    /**
+     * Returns the number of saved terrain edits.
+     * @return the edit count.
+     */
+    public int editCount() {
+        return edits.editCount();
+    }
+
+    /**
+     * Returns the number of saved chunk states, across every scrollable.
+     * @return the number of chunks with saved states.
+     */
+    public int chunkStateCount() {
+        return chunkStates.size();
+    }
+}
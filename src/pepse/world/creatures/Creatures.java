@@ -0,0 +1,264 @@
+package pepse.world.creatures;
+
+import danogl.GameObject;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
+import pepse.world.infiniteworld.GroundHeightAt;
+import pepse.world.infiniteworld.GroundHeightCache;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * Small creatures wandering the terrain around the avatar.
+ * The creatures are not game objects: their positions and behaviour are kept in parallel primitive arrays
+ * (one entry per creature), and they walk on the ground height map instead of colliding with blocks,
+ * turning back at steps too high to climb or too deep to jump down. They are updated in batched passes,
+ * spread over the available cores when there are many of them. Creatures off screen sleep, updating a few
+ * times a second with the time they slept; only creatures on screen are given a game object, taken from a
+ * pool and returned to it when they leave the screen.
+ * @author Aron Isaacs
+ */
+public class Creatures {
+    private static final Vector2 CREATURE_SIZE = new Vector2(GAME_BLOCK_SIZE * 0.8f, GAME_BLOCK_SIZE * 0.6f);
+    private static final Renderable CREATURE_RENDERABLE = Palette.oval(new Color(120, 86, 60));
+    // Creatures farther than this from the avatar are moved back into its surroundings.
+    private static final float ACTIVE_RANGE = CHUNK_SIZE * 6;
+    private static final float SPEED = 45; // pixels per second
+    private static final float MAX_CLIMB = GAME_BLOCK_SIZE;
+    private static final float MAX_DROP = GAME_BLOCK_SIZE * 2;
+    private static final float WANDER_RANGE = GAME_BLOCK_SIZE * 8;
+    private static final float MAX_IDLE_SECONDS = 4;
+    private static final float SLEEP_TICK_SECONDS = 0.5f;
+    private static final int BATCH_SIZE = 64;
+    // Below this many creatures, a pass runs on the calling thread only.
+    private static final int PARALLEL_THRESHOLD = 4 * BATCH_SIZE;
+
+    private final int count;
+    private final GroundHeightCache heights;
+    // The state of creature i is at index i of every array.
+    private final float[] x;
+    private final float[] y;
+    private final float[] targetX;
+    private final float[] idleFor;
+    private final float[] sleptFor;
+    private final boolean[] awake;
+    private final int[] randomState;
+    private final GameObject[] views;
+    private final ArrayDeque<GameObject> viewPool = new ArrayDeque<>();
+    private final IntConsumer batchPass = this::updateBatch;
+    private float passDeltaTime;
+
+    /**
+     * Creates a population of creatures scattered around the start of the world.
+     * @param seed the world seed, which determines where creatures appear and go.
+     * @param groundHeightAt a function that provides the ground height at a given x-coordinate.
+     * @param count the number of creatures.
+     */
+    public Creatures(int seed, GroundHeightAt groundHeightAt, int count) {
+        this.count = count;
+        this.heights = new GroundHeightCache(groundHeightAt, (int) (2 * ACTIVE_RANGE / GAME_BLOCK_SIZE) + 2);
+        x = new float[count];
+        y = new float[count];
+        targetX = new float[count];
+        idleFor = new float[count];
+        sleptFor = new float[count];
+        awake = new boolean[count];
+        randomState = new int[count];
+        views = new GameObject[count];
+        heights.cover(-ACTIVE_RANGE, ACTIVE_RANGE);
+        for (int i = 0; i < count; i++) {
+            randomState[i] = (seed * 0x9E3779B9) ^ ((i + 1) * 0x85EBCA6B);
+            if (randomState[i] == 0) {
+                randomState[i] = 1;
+            }
+            // Stagger the sleeping creatures so they do not all wake on the same frame.
+            sleptFor[i] = nextFloat(i) * SLEEP_TICK_SECONDS;
+            placeAt(i, (nextFloat(i) * 2 - 1) * ACTIVE_RANGE);
+        }
+    }
+
+    /**
+     * Updates every creature, and the game objects of the creatures on screen.
+     * @param deltaTime the time, in seconds, since the last update.
+     * @param avatarX the x-coordinate of the avatar, around which the creatures live.
+     * @param screenMinX the left edge of the screen, in world coordinates.
+     * @param screenMaxX the right edge of the screen, in world coordinates.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param removeGameObject A BiConsumer to remove game objects from the game.
+     */
+    public void update(float deltaTime, float avatarX, float screenMinX, float screenMaxX,
+                       BiConsumer<GameObject, Integer> addGameObject,
+                       BiConsumer<GameObject, Integer> removeGameObject) {
+        heights.cover(avatarX - ACTIVE_RANGE, avatarX + ACTIVE_RANGE);
+        float margin = CREATURE_SIZE.x();
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(x[i] - avatarX) > ACTIVE_RANGE) {
+                respawnAround(i, avatarX, screenMinX, screenMaxX);
+            }
+            awake[i] = x[i] + margin >= screenMinX && x[i] - margin <= screenMaxX;
+        }
+        passDeltaTime = deltaTime;
+        int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        if (count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, batches).parallel().forEach(batchPass);
+        } else {
+            for (int batch = 0; batch < batches; batch++) {
+                updateBatch(batch);
+            }
+        }
+        updateViews(addGameObject, removeGameObject);
+    }
+
+    /**
+     * Makes the creatures walk on the current ground after it was edited.
+     */
+    public void groundChanged() {
+        heights.invalidate();
+    }
+
+    /**
+     * Returns the number of creatures that currently have a game object.
+     * @return the number of creatures on screen.
+     */
+    public int visibleCount() {
+        int visible = 0;
+        for (GameObject view : views) {
+            if (view != null) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    /*
+     * Updates one batch of creatures. Every creature only touches its own entries, and the height cache is
+     * only read, so batches may run concurrently.
+     */
+    private void updateBatch(int batch) {
+        int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+        for (int i = batch * BATCH_SIZE; i < end; i++) {
+            if (awake[i]) {
+                step(i, passDeltaTime);
+                continue;
+            }
+            sleptFor[i] += passDeltaTime;
+            if (sleptFor[i] >= SLEEP_TICK_SECONDS) {
+                step(i, sleptFor[i]);
+                sleptFor[i] = 0;
+            }
+        }
+    }
+
+    /*
+     * Advances one creature: it rests for a while, then walks towards its target along the ground,
+     * turning back when the next step is too high or too deep.
+     */
+    private void step(int i, float deltaTime) {
+        if (idleFor[i] > 0) {
+            idleFor[i] -= deltaTime;
+            if (idleFor[i] <= 0) {
+                targetX[i] = x[i] + (nextFloat(i) * 2 - 1) * WANDER_RANGE;
+            }
+            return;
+        }
+        float direction = Math.signum(targetX[i] - x[i]);
+        float distance = Math.min(Math.abs(targetX[i] - x[i]), SPEED * deltaTime);
+        float nextX = x[i] + direction * distance;
+        float ground = heights.heightAt(x[i]);
+        float nextGround = heights.heightAt(nextX + direction * CREATURE_SIZE.x() / 2);
+        // Heights grow downwards: a smaller y is higher ground.
+        if (Float.isNaN(nextGround) || ground - nextGround > MAX_CLIMB || nextGround - ground > MAX_DROP) {
+            targetX[i] = x[i] - direction * nextFloat(i) * WANDER_RANGE;
+            return;
+        }
+        x[i] = nextX;
+        y[i] = heights.heightAt(nextX) - CREATURE_SIZE.y();
+        if (x[i] == targetX[i]) {
+            idleFor[i] = nextFloat(i) * MAX_IDLE_SECONDS;
+        }
+    }
+
+    /*
+     * Moves a creature that strayed too far to a random place around the avatar, preferably off screen.
+     */
+    private void respawnAround(int i, float avatarX, float screenMinX, float screenMaxX) {
+        float side = nextFloat(i) < 0.5f ? -1 : 1;
+        float screenEdge = side < 0 ? screenMinX - avatarX : screenMaxX - avatarX;
+        float offset = Math.abs(screenEdge) + nextFloat(i) * (ACTIVE_RANGE - Math.abs(screenEdge));
+        placeAt(i, avatarX + side * Math.min(offset, ACTIVE_RANGE));
+    }
+
+    /*
+     * Places a creature on the ground at the given x-coordinate, resting.
+     */
+    private void placeAt(int i, float newX) {
+        x[i] = newX;
+        targetX[i] = newX;
+        y[i] = heights.heightAt(newX) - CREATURE_SIZE.y();
+        idleFor[i] = nextFloat(i) * MAX_IDLE_SECONDS;
+    }
+
+    /*
+     * Gives every creature on screen a game object at its position, and returns the game objects of
+     * creatures that left the screen to the pool.
+     */
+    private void updateViews(BiConsumer<GameObject, Integer> addGameObject,
+                             BiConsumer<GameObject, Integer> removeGameObject) {
+        for (int i = 0; i < count; i++) {
+            if (!awake[i]) {
+                if (views[i] != null) {
+                    removeGameObject.accept(views[i], Layer.BACKGROUND);
+                    viewPool.push(views[i]);
+                    views[i] = null;
+                }
+                continue;
+            }
+            if (views[i] == null) {
+                views[i] = viewPool.isEmpty() ? createView() : viewPool.pop();
+                addGameObject.accept(views[i], Layer.BACKGROUND);
+            }
+            Vector2 topLeft = views[i].getTopLeftCorner();
+            float left = x[i] - CREATURE_SIZE.x() / 2;
+            if (topLeft.x() != left || topLeft.y() != y[i]) {
+                views[i].renderer().setIsFlippedHorizontally(targetX[i] < x[i]);
+                views[i].transform().setTopLeftCorner(left, y[i]);
+            }
+        }
+    }
+
+    /*
+     * Creates the game object of a creature, which takes no part in physics collisions.
+     */
+    private static GameObject createView() {
+        GameObject view = new GameObject(Vector2.ZERO, CREATURE_SIZE, CREATURE_RENDERABLE) {
+            @Override
+            public boolean shouldCollideWith(GameObject other) {
+                return false;
+            }
+        };
+        view.setTag("creature");
+        return view;
+    }
+
+    /*
+     * Returns the next pseudo-random float in [0, 1) of a creature's own generator (xorshift), so creatures
+     * can be updated concurrently without sharing a generator.
+     */
+    private float nextFloat(int i) {
+        int state = randomState[i];
+        state ^= state << 13;
+        state ^= state >>> 17;
+        state ^= state << 5;
+        randomState[i] = state;
+        return (state >>> 8) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,40 @@
+package pepse.world.daynight;
+
+/**
+ * The phase of the day-night cycle. A cycle starts at noon, with the sun at the top of its orbit and no
+ * darkness; the sun sets a quarter of a cycle later and rises again three quarters into it.
+ * @author Aron Isaacs
+ */
+public enum DayPhase {
+    /** The sun is well above the horizon. */
+    DAY,
+    /** The sun is setting. */
+    DUSK,
+    /** The sun is below the horizon. */
+    NIGHT,
+    /** The sun is rising. */
+    DAWN;
+
+    // The fractions of the cycle at which each phase after DAY begins, and DAY begins again.
+    private static final double DUSK_START = 0.2;
+    private static final double NIGHT_START = 0.3;
+    private static final double DAWN_START = 0.7;
+    private static final double DAY_START = 0.8;
+
+    /**
+     * Returns the phase of the day-night cycle at the given time.
+     * @param worldTime the seconds that passed since the world was created (the start of the first cycle).
+     * @param cycleLength the duration of a full day-night cycle, in seconds.
+     * @return the phase.
+     */
+    public static DayPhase at(double worldTime, float cycleLength) {
+        double fraction = (worldTime % cycleLength) / cycleLength;
+        if (fraction < DUSK_START || fraction >= DAY_START) {
+            return DAY;
+        }
+        if (fraction < NIGHT_START) {
+            return DUSK;
+        }
+        return fraction < DAWN_START ? NIGHT : DAWN;
+    }
+}
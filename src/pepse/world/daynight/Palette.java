@@ -0,0 +1,144 @@
+package pepse.world.daynight;
+
+import danogl.gui.rendering.OvalRenderable;
+import danogl.gui.rendering.RectangleRenderable;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The shared colours the world is drawn with, lit according to the time of day.
+ * Game objects are drawn with {@link Shade}s of the palette instead of renderables of fixed colours. When the
+ * light changes, every shade is re-tinted once, and every object drawn with it changes colour with no work
+ * per object and no full-screen overlay. The darkness is quantized to a few levels, so the palette changes a
+ * few times per day-night cycle rather than every frame; images baked from shades compare
+ * {@link #getVersion()} with the version they were baked at to know when to bake again.
+ * <p>
+ * The palette is used on the game thread.
+ * @author Aron Isaacs
+ */
+public final class Palette {
+    /** The darkness of the darkest night: the fraction of red and green light taken away. */
+    public static final float MAX_DARKNESS = 0.5f;
+
+    // The number of darkness levels between full daylight and the darkest night.
+    private static final int DARKNESS_LEVELS = 6;
+    // Blue light fades more slowly than red and green, giving nights a cold tint.
+    private static final float BLUE_DARKNESS_RATIO = 0.7f;
+
+    /**
+     * A colour of the palette, and a renderable drawing a shape of that colour as currently lit.
+     */
+    public static final class Shade implements Renderable {
+        private final Color base;
+        private final Function<Color, Renderable> shape;
+        private Color color;
+        private Renderable renderable;
+
+        private Shade(Color base, Function<Color, Renderable> shape) {
+            this.base = base;
+            this.shape = shape;
+            tint();
+        }
+
+        /*
+         * Recomputes the colour and renderable for the current light.
+         */
+        private void tint() {
+            color = Palette.tint(base);
+            renderable = shape.apply(color);
+        }
+
+        /**
+         * Returns the colour as currently lit.
+         * @return The lit colour.
+         */
+        public Color getColor() {
+            return color;
+        }
+
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            renderable.render(g, topLeftCorner, dimensions, degreesCounterClockwise, isFlippedHorizontally,
+                    isFlippedVertically, opaqueness);
+        }
+    }
+
+    private static final List<Shade> shades = new ArrayList<>();
+    private static int darknessLevel;
+    private static int version;
+
+    private Palette() {
+    }
+
+    /**
+     * Adds a colour to the palette, drawn as a rectangle.
+     * @param base The colour in full daylight.
+     * @return The shade.
+     */
+    public static Shade rectangle(Color base) {
+        return add(new Shade(base, RectangleRenderable::new));
+    }
+
+    /**
+     * Adds a colour to the palette, drawn as an oval.
+     * @param base The colour in full daylight.
+     * @return The shade.
+     */
+    public static Shade oval(Color base) {
+        return add(new Shade(base, OvalRenderable::new));
+    }
+
+    /*
+     * Registers a shade, so it is re-tinted when the light changes.
+     */
+    private static Shade add(Shade shade) {
+        shades.add(shade);
+        return shade;
+    }
+
+    /**
+     * Sets how dark the world is, re-tinting the palette if the darkness crossed into another level.
+     * Called every frame by the day-night cycle.
+     * @param darkness The darkness, from 0 (full daylight) to {@link #MAX_DARKNESS}.
+     */
+    public static void setDarkness(float darkness) {
+        int level = Math.round(Math.max(0, Math.min(1, darkness / MAX_DARKNESS)) * DARKNESS_LEVELS);
+        if (level == darknessLevel) {
+            return;
+        }
+        darknessLevel = level;
+        version++;
+        for (int i = 0; i < shades.size(); i++) {
+            shades.get(i).tint();
+        }
+    }
+
+    /**
+     * Returns the given colour as currently lit, for colours that are not part of the palette.
+     * @param base The colour in full daylight.
+     * @return The lit colour, with the same alpha.
+     */
+    public static Color tint(Color base) {
+        float darkness = MAX_DARKNESS * darknessLevel / DARKNESS_LEVELS;
+        float redGreen = 1 - darkness;
+        float blue = 1 - darkness * BLUE_DARKNESS_RATIO;
+        return new Color(Math.round(base.getRed() * redGreen), Math.round(base.getGreen() * redGreen),
+                Math.round(base.getBlue() * blue), base.getAlpha());
+    }
+
+    /**
+     * Returns the version of the palette, incremented every time it is re-tinted.
+     * @return The version.
+     */
+    public static int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,310 @@
+package pepse.world.events;
+
+import pepse.world.Avatar;
+import pepse.world.daynight.DayPhase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bus of the things that happen in the world, decoupling the objects they happen to from the systems that
+ * react to them: fruits eaten, energy changed, chunks loaded and unloaded, and the day phase changing.
+ * <p>
+ * Events are written into a ring buffer preallocated as primitive arrays, one slot per event, so publishing
+ * allocates nothing. Any thread may publish without locking: a producer claims the next sequence number
+ * with a compare-and-set, fills in the slot, and then marks the slot published with that number. The game
+ * thread drains the ring once per frame, passing every event to the listeners of its type, in the order the
+ * sequence numbers were claimed. Events published while draining are left for the next drain. When the ring
+ * is full, new events are dropped and counted rather than overwriting events not yet drained.
+ * <p>
+ * Listeners are subscribed, and the ring drained, on the game thread only.
+ * @author Aron Isaacs
+ */
+public class WorldEvents {
+
+    /**
+     * Notified when an avatar eats a fruit.
+     */
+    public interface FruitEatenListener {
+        /**
+         * @param eater The avatar that ate the fruit.
+         * @param x The x-coordinate of the fruit's center.
+         * @param y The y-coordinate of the fruit's center.
+         * @param energy The energy the fruit is worth.
+         */
+        void fruitEaten(Avatar eater, float x, float y, float energy);
+    }
+
+    /**
+     * Notified when an avatar's energy changed.
+     */
+    public interface EnergyListener {
+        /**
+         * @param avatar The avatar.
+         * @param energy Its energy, as of the frame it changed in.
+         */
+        void energyChanged(Avatar avatar, float energy);
+    }
+
+    /**
+     * Notified when a chunk of a scrollable is loaded into, or unloaded from, the game.
+     */
+    public interface ChunkListener {
+        /**
+         * @param scrollable The name of the scrollable the chunk belongs to.
+         * @param chunkIndex The index of the chunk.
+         */
+        void chunkChanged(String scrollable, int chunkIndex);
+    }
+
+    /**
+     * Notified when the day-night cycle enters a new phase.
+     */
+    public interface DayPhaseListener {
+        /**
+         * @param phase The new phase.
+         */
+        void dayPhaseChanged(DayPhase phase);
+    }
+
+    /** The number of events the ring holds by default. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final byte FRUIT_EATEN = 0;
+    private static final byte ENERGY_CHANGED = 1;
+    private static final byte CHUNK_LOADED = 2;
+    private static final byte CHUNK_UNLOADED = 3;
+    private static final byte DAY_PHASE_CHANGED = 4;
+    private static final DayPhase[] DAY_PHASES = DayPhase.values();
+
+    // The slots of the ring: the type of each event, the object it is about, and its primitive payload.
+    private final byte[] types;
+    private final Object[] subjects;
+    private final int[] ints;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] values;
+    // The sequence number each slot was last published with.
+    private final AtomicLongArray published;
+    private final int mask;
+    // The next sequence number to claim, and the next to drain.
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long drained;
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<FruitEatenListener> fruitEatenListeners = new ArrayList<>();
+    private final List<EnergyListener> energyListeners = new ArrayList<>();
+    private final List<ChunkListener> chunkLoadedListeners = new ArrayList<>();
+    private final List<ChunkListener> chunkUnloadedListeners = new ArrayList<>();
+    private final List<DayPhaseListener> dayPhaseListeners = new ArrayList<>();
+
+    /**
+     * Constructs a bus holding up to {@link #DEFAULT_CAPACITY} undrained events.
+     */
+    public WorldEvents() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a bus holding up to the given number of undrained events, rounded up to a power of two.
+     * @param capacity The capacity of the ring.
+     */
+    public WorldEvents(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        types = new byte[size];
+        subjects = new Object[size];
+        ints = new int[size];
+        xs = new float[size];
+        ys = new float[size];
+        values = new float[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Subscribes a listener to fruits being eaten.
+     * @param listener The listener.
+     */
+    public void onFruitEaten(FruitEatenListener listener) {
+        fruitEatenListeners.add(listener);
+    }
+
+    /**
+     * Subscribes a listener to changes of energy.
+     * @param listener The listener.
+     */
+    public void onEnergyChanged(EnergyListener listener) {
+        energyListeners.add(listener);
+    }
+
+    /**
+     * Subscribes a listener to chunks being loaded.
+     * @param listener The listener.
+     */
+    public void onChunkLoaded(ChunkListener listener) {
+        chunkLoadedListeners.add(listener);
+    }
+
+    /**
+     * Subscribes a listener to chunks being unloaded.
+     * @param listener The listener.
+     */
+    public void onChunkUnloaded(ChunkListener listener) {
+        chunkUnloadedListeners.add(listener);
+    }
+
+    /**
+     * Subscribes a listener to changes of the day phase.
+     * @param listener The listener.
+     */
+    public void onDayPhaseChanged(DayPhaseListener listener) {
+        dayPhaseListeners.add(listener);
+    }
+
+    /**
+     * Publishes that an avatar ate a fruit.
+     * @param eater The avatar that ate the fruit.
+     * @param x The x-coordinate of the fruit's center.
+     * @param y The y-coordinate of the fruit's center.
+     * @param energy The energy the fruit is worth.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean publishFruitEaten(Avatar eater, float x, float y, float energy) {
+        return publish(FRUIT_EATEN, eater, 0, x, y, energy);
+    }
+
+    /**
+     * Publishes that an avatar's energy changed.
+     * @param avatar The avatar.
+     * @param energy Its new energy.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean publishEnergyChanged(Avatar avatar, float energy) {
+        return publish(ENERGY_CHANGED, avatar, 0, 0, 0, energy);
+    }
+
+    /**
+     * Publishes that a chunk was loaded into the game.
+     * @param scrollable The name of the scrollable the chunk belongs to.
+     * @param chunkIndex The index of the chunk.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean publishChunkLoaded(String scrollable, int chunkIndex) {
+        return publish(CHUNK_LOADED, scrollable, chunkIndex, 0, 0, 0);
+    }
+
+    /**
+     * Publishes that a chunk was unloaded from the game.
+     * @param scrollable The name of the scrollable the chunk belongs to.
+     * @param chunkIndex The index of the chunk.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean publishChunkUnloaded(String scrollable, int chunkIndex) {
+        return publish(CHUNK_UNLOADED, scrollable, chunkIndex, 0, 0, 0);
+    }
+
+    /**
+     * Publishes that the day-night cycle entered a new phase.
+     * @param phase The new phase.
+     * @return false if the ring was full and the event was dropped.
+     */
+    public boolean publishDayPhaseChanged(DayPhase phase) {
+        return publish(DAY_PHASE_CHANGED, null, phase.ordinal(), 0, 0, 0);
+    }
+
+    /*
+     * Claims a slot and fills it in, or drops the event if the ring is full.
+     * @return whether the event was published.
+     */
+    private boolean publish(byte type, Object subject, int intValue, float x, float y, float value) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - drained > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        types[slot] = type;
+        subjects[slot] = subject;
+        ints[slot] = intValue;
+        xs[slot] = x;
+        ys[slot] = y;
+        values[slot] = value;
+        // Releases the writes above to the drain that reads this sequence number.
+        published.lazySet(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Passes every event published before the call to its listeners, in order. Stops early at an event
+     * another thread is still writing; it is passed on with the next drain.
+     * Called once per frame on the game thread.
+     * @return The number of events drained.
+     */
+    public int drain() {
+        long end = claimed.get();
+        long sequence = drained;
+        int count = 0;
+        for (; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence) {
+                break;
+            }
+            dispatch(slot);
+            subjects[slot] = null;
+            count++;
+        }
+        drained = sequence;
+        return count;
+    }
+
+    /*
+     * Passes the event in a slot to the listeners of its type.
+     */
+    private void dispatch(int slot) {
+        switch (types[slot]) {
+            case FRUIT_EATEN:
+                for (int i = 0; i < fruitEatenListeners.size(); i++) {
+                    fruitEatenListeners.get(i).fruitEaten((Avatar) subjects[slot], xs[slot], ys[slot],
+                            values[slot]);
+                }
+                break;
+            case ENERGY_CHANGED:
+                for (int i = 0; i < energyListeners.size(); i++) {
+                    energyListeners.get(i).energyChanged((Avatar) subjects[slot], values[slot]);
+                }
+                break;
+            case CHUNK_LOADED:
+                for (int i = 0; i < chunkLoadedListeners.size(); i++) {
+                    chunkLoadedListeners.get(i).chunkChanged((String) subjects[slot], ints[slot]);
+                }
+                break;
+            case CHUNK_UNLOADED:
+                for (int i = 0; i < chunkUnloadedListeners.size(); i++) {
+                    chunkUnloadedListeners.get(i).chunkChanged((String) subjects[slot], ints[slot]);
+                }
+                break;
+            case DAY_PHASE_CHANGED:
+                for (int i = 0; i < dayPhaseListeners.size(); i++) {
+                    dayPhaseListeners.get(i).dayPhaseChanged(DAY_PHASES[ints[slot]]);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + types[slot]);
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the ring was full.
+     * @return The number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
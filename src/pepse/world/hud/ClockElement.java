@@ -0,0 +1,50 @@
+package pepse.world.hud;
+
+/**
+ * The day and hour of the world's day-night cycle, e.g. "Day 2 18:00".
+ * A cycle lasts seconds of real time, so the clock shows whole hours only; minutes would change every frame.
+ * @author Aron Isaacs
+ */
+public class ClockElement extends HudElement {
+    private static final int HOURS_PER_DAY = 24;
+    // The world starts at noon of its first day.
+    private static final double START_HOUR = 12;
+
+    private int day;
+    private int hour;
+
+    /**
+     * Constructs a clock element.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     */
+    public ClockElement(int x, int y, GlyphCache glyphs) {
+        super(x, y, glyphs);
+    }
+
+    /**
+     * Sets the time shown, marking the element dirty if the hour changed.
+     * @param worldTime The seconds that passed since the world was created.
+     * @param cycleLength The duration of a full day-night cycle, in seconds.
+     */
+    public void setTime(double worldTime, float cycleLength) {
+        long hours = (long) Math.floor(worldTime / cycleLength * HOURS_PER_DAY + START_HOUR);
+        int newDay = (int) (hours / HOURS_PER_DAY) + 1;
+        int newHour = (int) (hours % HOURS_PER_DAY);
+        if (newDay != day || newHour != hour) {
+            day = newDay;
+            hour = newHour;
+            markDirty();
+        }
+    }
+
+    @Override
+    protected void format() {
+        append("Day ");
+        append(day, 1);
+        append(' ');
+        append(hour, 2);
+        append(":00");
+    }
+}
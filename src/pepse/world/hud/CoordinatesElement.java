@@ -0,0 +1,45 @@
+package pepse.world.hud;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+
+/**
+ * The block column and row of a position in the world, e.g. "x -12 y 17".
+ * @author Aron Isaacs
+ */
+public class CoordinatesElement extends HudElement {
+    private int column;
+    private int row;
+
+    /**
+     * Constructs a coordinates element.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     */
+    public CoordinatesElement(int x, int y, GlyphCache glyphs) {
+        super(x, y, glyphs);
+    }
+
+    /**
+     * Sets the position shown, marking the element dirty if it moved to another block.
+     * @param worldX The x-coordinate of the position, in pixels.
+     * @param worldY The y-coordinate of the position, in pixels.
+     */
+    public void setPosition(float worldX, float worldY) {
+        int newColumn = Math.floorDiv((int) Math.floor(worldX), GAME_BLOCK_SIZE);
+        int newRow = Math.floorDiv((int) Math.floor(worldY), GAME_BLOCK_SIZE);
+        if (newColumn != column || newRow != row) {
+            column = newColumn;
+            row = newRow;
+            markDirty();
+        }
+    }
+
+    @Override
+    protected void format() {
+        append("x ");
+        append(column, 1);
+        append(" y ");
+        append(row, 1);
+    }
+}
@@ -0,0 +1,35 @@
+package pepse.world.hud;
+
+import pepse.world.events.WorldEvents;
+
+/**
+ * The avatar's energy, as a percentage of its maximum energy.
+ * It follows the energy changes published on the world's event bus, so it does not poll the avatar.
+ * @author Aron Isaacs
+ */
+public class EnergyElement extends ValueElement {
+    private final float maxEnergy;
+
+    /**
+     * Constructs an energy element and subscribes it to energy changes.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     * @param maxEnergy The maximum energy of the avatar.
+     * @param events The event bus the avatar's energy changes are published on.
+     */
+    public EnergyElement(int x, int y, GlyphCache glyphs, float maxEnergy, WorldEvents events) {
+        super(x, y, glyphs, "", "%");
+        this.maxEnergy = maxEnergy;
+        setValue(100);
+        events.onEnergyChanged((avatar, energy) -> showEnergy(energy));
+    }
+
+    /*
+     * Shows the energy as a rounded percentage.
+     */
+    private void showEnergy(float energy) {
+        float clamped = Math.max(0, Math.min(maxEnergy, energy));
+        setValue(Math.round((clamped / maxEnergy) * 100));
+    }
+}
@@ -0,0 +1,36 @@
+package pepse.world.hud;
+
+/**
+ * The number of frames per second, averaged over short intervals so it does not change every frame.
+ * @author Aron Isaacs
+ */
+public class FrameRateElement extends ValueElement {
+    private static final float INTERVAL_SECONDS = 0.5f;
+
+    private int frames;
+    private float seconds;
+
+    /**
+     * Constructs a frame rate element.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     */
+    public FrameRateElement(int x, int y, GlyphCache glyphs) {
+        super(x, y, glyphs, "FPS ", "");
+    }
+
+    /**
+     * Counts a frame, updating the rate shown at the end of every interval.
+     * @param deltaTime The time, in seconds, since the last frame.
+     */
+    public void frame(float deltaTime) {
+        frames++;
+        seconds += deltaTime;
+        if (seconds >= INTERVAL_SECONDS) {
+            setValue(Math.round(frames / seconds));
+            frames = 0;
+            seconds = 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package pepse.world.hud;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * The printable ASCII characters of a font, rasterised once in one colour into a single array of pixels.
+ * Drawing text from the cache copies the rows of each character's cell into a pixel array, with no font
+ * layout, glyph lookup, graphics call or allocation per draw, so HUD elements can be redrawn cheaply.
+ * @author Aron Isaacs
+ */
+public class GlyphCache {
+    private static final char FIRST_CHAR = ' ';
+    private static final char LAST_CHAR = '~';
+    // Drawn in place of characters outside the cached range.
+    private static final char MISSING_CHAR = '?';
+    // The space left between cells, so the parts of a character that overhang its width (e.g. of an italic
+    // or anti-aliased glyph) are not drawn into the next cell.
+    private static final int CELL_PADDING = 4;
+
+    // The ARGB pixels of every character's cell, side by side, row after row.
+    private final int[] atlas;
+    private final int atlasWidth;
+    // The left edge of each character's cell in the atlas, and its width, by character code - FIRST_CHAR.
+    private final int[] offsets = new int[LAST_CHAR - FIRST_CHAR + 1];
+    private final int[] advances = new int[LAST_CHAR - FIRST_CHAR + 1];
+    private final int height;
+
+    /**
+     * Rasterises the printable ASCII characters of a font.
+     * @param font The font.
+     * @param color The colour of the characters.
+     */
+    public GlyphCache(Font font, Color color) {
+        Graphics2D measure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        FontMetrics metrics = measure.getFontMetrics(font);
+        measure.dispose();
+        int width = CELL_PADDING;
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            offsets[c - FIRST_CHAR] = width;
+            advances[c - FIRST_CHAR] = metrics.charWidth(c);
+            width += advances[c - FIRST_CHAR] + CELL_PADDING;
+        }
+        height = metrics.getHeight();
+        atlasWidth = width;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font);
+        g.setColor(color);
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            g.drawString(String.valueOf(c), offsets[c - FIRST_CHAR], metrics.getAscent());
+        }
+        g.dispose();
+        atlas = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns the height of a line of text.
+     * @return The height, in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the width of a character.
+     * @param c The character.
+     * @return The horizontal distance from the character to the next, in pixels.
+     */
+    public int advance(char c) {
+        return advances[indexOf(c)];
+    }
+
+    /**
+     * Draws a character into an array of ARGB pixels, replacing the pixels under its cell; cells of
+     * characters drawn side by side do not overlap. The parts outside the array are clipped.
+     * @param pixels The pixels, row after row.
+     * @param pixelsWidth The width of a row of the pixels.
+     * @param c The character.
+     * @param x The left edge of the character.
+     * @param y The top of the line.
+     * @return The width of the character, in pixels.
+     */
+    public int draw(int[] pixels, int pixelsWidth, char c, int x, int y) {
+        int index = indexOf(c);
+        int width = advances[index];
+        int from = Math.max(0, -x);
+        int to = Math.min(width, pixelsWidth - x);
+        int rows = pixels.length / pixelsWidth;
+        for (int row = Math.max(0, -y); row < height && y + row < rows && from < to; row++) {
+            System.arraycopy(atlas, row * atlasWidth + offsets[index] + from, pixels,
+                    (y + row) * pixelsWidth + x + from, to - from);
+        }
+        return width;
+    }
+
+    /*
+     * Returns the index of a character's cell, or of the missing character's if it is not cached.
+     */
+    private static int indexOf(char c) {
+        return (c < FIRST_CHAR || c > LAST_CHAR ? MISSING_CHAR : c) - FIRST_CHAR;
+    }
+}
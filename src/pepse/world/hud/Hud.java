@@ -0,0 +1,98 @@
+package pepse.world.hud;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The heads-up display: every {@link HudElement} drawn as a single layer in a corner of the screen.
+ * The elements are drawn into one image, which is only redrawn on a frame when some element changed;
+ * on every other frame the HUD costs a single copy of the part of the image its text covers, however many
+ * elements it has. The elements' glyphs are copied into an array of pixels, which is then written into the
+ * image in one call, so redrawing allocates nothing.
+ * @author Aron Isaacs
+ */
+public class Hud extends GameObject {
+    private final List<HudElement> elements = new ArrayList<>();
+    private final BufferedImage image;
+    // The pixels the elements are drawn into before they are written into the image.
+    private final int[] pixels;
+    // The width of the image the elements' text covers; only that part is copied to the screen.
+    private int contentWidth;
+
+    /**
+     * Constructs an empty HUD.
+     * @param topLeftCorner The top-left corner of the HUD, in screen coordinates.
+     * @param dimensions The size of the HUD; elements are clipped to it.
+     */
+    public Hud(Vector2 topLeftCorner, Vector2 dimensions) {
+        super(topLeftCorner, dimensions, null);
+        image = new BufferedImage(Math.round(dimensions.x()), Math.round(dimensions.y()),
+                BufferedImage.TYPE_INT_ARGB);
+        pixels = new int[image.getWidth() * image.getHeight()];
+        renderer().setRenderable(new BatchRenderable());
+        setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        setTag("hud");
+    }
+
+    /**
+     * Adds an element to the HUD.
+     * @param element The element.
+     * @param <T> The type of the element.
+     * @return The element, for its owner to update.
+     */
+    public <T extends HudElement> T add(T element) {
+        elements.add(element);
+        return element;
+    }
+
+    /*
+     * Returns whether any element changed since the image was last drawn.
+     */
+    private boolean isDirty() {
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i).isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Clears the image and draws every element into it.
+     */
+    private void redraw() {
+        Arrays.fill(pixels, 0);
+        contentWidth = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            contentWidth = Math.max(contentWidth, elements.get(i).draw(pixels, image.getWidth()));
+        }
+        contentWidth = Math.min(contentWidth, image.getWidth());
+        image.getRaster().setDataElements(0, 0, image.getWidth(), image.getHeight(), pixels);
+    }
+
+    /*
+     * Draws the image of the elements, redrawing it first if any of them changed.
+     */
+    private class BatchRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            if (isDirty()) {
+                redraw();
+            }
+            int left = Math.round(topLeftCorner.x());
+            int top = Math.round(topLeftCorner.y());
+            int height = image.getHeight();
+            g.drawImage(image, left, top, left + contentWidth, top + height, 0, 0, contentWidth, height, null);
+        }
+    }
+}
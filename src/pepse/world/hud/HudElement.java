@@ -0,0 +1,112 @@
+package pepse.world.hud;
+
+/**
+ * A line of text on the {@link Hud}, formatted from primitive values into a reused character buffer.
+ * Subclasses mark the element dirty when a value they show changes; the text is only formatted again, and
+ * the HUD only redrawn, when some element is dirty.
+ * @author Aron Isaacs
+ */
+public abstract class HudElement {
+    private static final int MAX_LENGTH = 32;
+
+    private final int x;
+    private final int y;
+    private final GlyphCache glyphs;
+    private final char[] text = new char[MAX_LENGTH];
+    // Reused buffer holding the digits of a number, least significant first.
+    private final char[] digits = new char[20];
+    private int length;
+    private boolean dirty = true;
+
+    /**
+     * Constructs an element.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     */
+    protected HudElement(int x, int y, GlyphCache glyphs) {
+        this.x = x;
+        this.y = y;
+        this.glyphs = glyphs;
+    }
+
+    /**
+     * Writes the element's text with the append methods. Called when the element is drawn while dirty.
+     */
+    protected abstract void format();
+
+    /**
+     * Marks the element to be formatted and drawn again.
+     */
+    protected final void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Appends a character to the text; characters beyond the maximum length are ignored.
+     * @param c The character.
+     */
+    protected final void append(char c) {
+        if (length < MAX_LENGTH) {
+            text[length++] = c;
+        }
+    }
+
+    /**
+     * Appends a string to the text.
+     * @param s The string.
+     */
+    protected final void append(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            append(s.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a number to the text in decimal, padded with leading zeros.
+     * @param value The number.
+     * @param minDigits The least number of digits written.
+     */
+    protected final void append(int value, int minDigits) {
+        long remaining = value;
+        if (remaining < 0) {
+            append('-');
+            remaining = -remaining;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        for (int i = count; i < minDigits; i++) {
+            append('0');
+        }
+        while (count > 0) {
+            append(digits[--count]);
+        }
+    }
+
+    /*
+     * Returns whether the element changed since it was last drawn.
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /*
+     * Formats the text if the element is dirty, and draws it into the pixels of the HUD's image.
+     * @return the right edge of the text drawn.
+     */
+    int draw(int[] pixels, int pixelsWidth) {
+        if (dirty) {
+            length = 0;
+            format();
+            dirty = false;
+        }
+        int left = x;
+        for (int i = 0; i < length; i++) {
+            left += glyphs.draw(pixels, pixelsWidth, text[i], left, y);
+        }
+        return left;
+    }
+}
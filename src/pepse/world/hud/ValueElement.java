@@ -0,0 +1,51 @@
+package pepse.world.hud;
+
+/**
+ * A HUD element showing a whole number between a fixed prefix and suffix, e.g. "FPS 60" or "85%".
+ * @author Aron Isaacs
+ */
+public class ValueElement extends HudElement {
+    private final String prefix;
+    private final String suffix;
+    private int value;
+
+    /**
+     * Constructs an element showing 0.
+     * @param x The left edge of the element, relative to the HUD.
+     * @param y The top of the element, relative to the HUD.
+     * @param glyphs The characters the element is drawn with.
+     * @param prefix The text before the number.
+     * @param suffix The text after the number.
+     */
+    public ValueElement(int x, int y, GlyphCache glyphs, String prefix, String suffix) {
+        super(x, y, glyphs);
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Sets the number shown, marking the element dirty if it changed.
+     * @param value The number.
+     */
+    public void setValue(int value) {
+        if (value != this.value) {
+            this.value = value;
+            markDirty();
+        }
+    }
+
+    /**
+     * Returns the number shown.
+     * @return The number.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    protected void format() {
+        append(prefix);
+        append(value, 1);
+        append(suffix);
+    }
+}
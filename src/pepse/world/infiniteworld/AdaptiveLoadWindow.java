@@ -0,0 +1,242 @@
+package pepse.world.infiniteworld;
+
+import pepse.util.memory.MemoryConsumer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A load window sized from the avatar's velocity and the measured cost of generating chunks.
+ * While idle, only the chunks needed to cover the screen are kept on each side. While moving, the
+ * look-ahead in the direction of travel grows with speed and with generation time, so the world is
+ * generated well before the avatar reaches it, while the side behind stays at the minimum.
+ * The whole window never holds more objects than a fixed budget, judging by the measured number of
+ * objects per chunk. The window grows immediately but shrinks only after a short delay, so tapping the
+ * movement keys does not repeatedly unload and regenerate the same chunks.
+ * <p>
+ * Generation time depends on the machine and its load, so a window sized from it loads chunks on
+ * different frames from run to run. While an input log is recorded or replayed, the window can be made
+ * {@link #setDeterministic(boolean) deterministic}: the generation cost is then estimated from the number
+ * of objects generated, which is the same on every run.
+ * <p>
+ * The window also accounts for the memory of the chunks loaded through it, their pre-rendered bitmaps,
+ * impostors and level-of-detail images included. When a {@link pepse.util.memory.MemoryBudget} asks for
+ * memory back, it first drops the images no chunk presents right now, then caps the window one chunk
+ * narrower at a time, down to the chunks covering the screen. The cap is lifted again one chunk at a time
+ * once no memory was asked for a while.
+ * @author Aron Isaacs
+ */
+public class AdaptiveLoadWindow implements LoadWindow, MemoryConsumer {
+    // Seconds of travel that the look-ahead covers beyond the screen.
+    private static final float LOOKAHEAD_SECONDS = 1f;
+    // How many chunk generations' worth of travel are added to the look-ahead.
+    private static final float GENERATION_SAFETY_FACTOR = 4f;
+    // Seconds a smaller window must be wanted before the window shrinks.
+    private static final float SHRINK_DELAY = 2f;
+    // Smoothing of the measured generation cost (weight of the newest measurement).
+    private static final float COST_SMOOTHING = 0.1f;
+    // The most game objects the loaded window may hold.
+    private static final int MAX_LOADED_OBJECTS = 6000;
+    // Chunks of margin beyond the screen edge, since the viewer's chunk is rounded.
+    private static final int SCREEN_MARGIN_CHUNKS = 1;
+    // Estimated cost of generating one object, used instead of the measured time when deterministic.
+    private static final float NANOS_PER_OBJECT = 20_000f;
+    // Seconds without a request for memory before the memory cap is widened by one chunk.
+    private static final float CAP_RELAX_SECONDS = 10f;
+    private static final int NO_CAP = Integer.MAX_VALUE;
+
+    private final int chunkSize;
+    private final int minChunks;
+    private final List<Scrollable<?>> scrollables = new ArrayList<>();
+    private int sources;
+    private boolean deterministic;
+    private float nanosPerGeneration;
+    private float objectsPerGeneration;
+    private int chunksBefore;
+    private int chunksAfter;
+    private float shrinkBeforeTimer;
+    private float shrinkAfterTimer;
+    // The most chunks on either side while memory is short, and the time since memory was last asked for.
+    private int memoryCap = NO_CAP;
+    private float capRelaxTimer;
+
+    /**
+     * Constructs an adaptive window.
+     * @param chunkSize the width of a chunk, in pixels.
+     * @param screenWidth the width of the screen, in pixels; the window always covers it.
+     */
+    public AdaptiveLoadWindow(int chunkSize, float screenWidth) {
+        this.chunkSize = chunkSize;
+        this.minChunks = (int) Math.ceil(screenWidth / 2 / chunkSize) + SCREEN_MARGIN_CHUNKS;
+        this.chunksBefore = minChunks;
+        this.chunksAfter = minChunks;
+    }
+
+    /**
+     * Makes the given scrollable load chunks according to this window, and measure its chunk generation
+     * for it. All scrollables streamed around the same viewers should be attached to the same window.
+     * @param scrollable the scrollable to attach.
+     */
+    public void attach(Scrollable<?> scrollable) {
+        sources++;
+        scrollables.add(scrollable);
+        scrollable.setLoadWindow(this);
+        scrollable.setGenerationListener(this::chunkGenerated);
+    }
+
+    /**
+     * Sets whether the generation cost is estimated from the objects generated rather than measured,
+     * so that the window, and hence the frames on which chunks load, is the same on every run of the same
+     * input.
+     * @param deterministic true to estimate the cost, false to measure it.
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /*
+     * Records the cost of generating one chunk of one scrollable.
+     */
+    private void chunkGenerated(int chunkIndex, int objectCount, long nanos) {
+        if (deterministic) {
+            nanos = (long) (objectCount * NANOS_PER_OBJECT);
+        }
+        if (objectsPerGeneration == 0) {
+            nanosPerGeneration = nanos;
+            objectsPerGeneration = objectCount;
+            return;
+        }
+        nanosPerGeneration += (nanos - nanosPerGeneration) * COST_SMOOTHING;
+        objectsPerGeneration += (objectCount - objectsPerGeneration) * COST_SMOOTHING;
+    }
+
+    /**
+     * Resizes the window for the current frame.
+     * @param velocityX the horizontal velocity of the avatar, in pixels per second.
+     * @param deltaTime the time, in seconds, since the last update.
+     */
+    public void update(float velocityX, float deltaTime) {
+        float secondsPerChunk = nanosPerGeneration * sources / 1e9f;
+        float travelSeconds = LOOKAHEAD_SECONDS + secondsPerChunk * GENERATION_SAFETY_FACTOR;
+        int lookAhead = minChunks + (int) Math.ceil(Math.abs(velocityX) * travelSeconds / chunkSize);
+        int wantedBefore = velocityX < 0 ? lookAhead : minChunks;
+        int wantedAfter = velocityX > 0 ? lookAhead : minChunks;
+
+        // Keep within the object budget by trimming the look-ahead; the side behind is already minimal.
+        int maxChunks = Math.max(2 * minChunks + 1, (int) (MAX_LOADED_OBJECTS / objectsPerChunk()));
+        wantedAfter = Math.max(minChunks, Math.min(wantedAfter, maxChunks - wantedBefore - 1));
+        wantedBefore = Math.max(minChunks, Math.min(wantedBefore, maxChunks - wantedAfter - 1));
+
+        shrinkBeforeTimer = wantedBefore < chunksBefore ? shrinkBeforeTimer + deltaTime : 0;
+        if (wantedBefore > chunksBefore || shrinkBeforeTimer >= SHRINK_DELAY) {
+            chunksBefore = wantedBefore;
+        }
+        shrinkAfterTimer = wantedAfter < chunksAfter ? shrinkAfterTimer + deltaTime : 0;
+        if (wantedAfter > chunksAfter || shrinkAfterTimer >= SHRINK_DELAY) {
+            chunksAfter = wantedAfter;
+        }
+        relaxMemoryCap(deltaTime);
+    }
+
+    /*
+     * Widens the memory cap by one chunk after a while without requests for memory, lifting it once it no
+     * longer limits the window.
+     */
+    private void relaxMemoryCap(float deltaTime) {
+        if (memoryCap == NO_CAP) {
+            return;
+        }
+        capRelaxTimer += deltaTime;
+        if (capRelaxTimer >= CAP_RELAX_SECONDS) {
+            capRelaxTimer = 0;
+            memoryCap = memoryCap + 1 > Math.max(chunksBefore, chunksAfter) ? NO_CAP : memoryCap + 1;
+        }
+    }
+
+    /*
+     * Returns the measured number of objects in one chunk, across all attached scrollables.
+     */
+    private float objectsPerChunk() {
+        return Math.max(1, objectsPerGeneration * sources);
+    }
+
+    @Override
+    public int chunksBefore() {
+        return Math.min(chunksBefore, memoryCap);
+    }
+
+    @Override
+    public int chunksAfter() {
+        return Math.min(chunksAfter, memoryCap);
+    }
+
+    @Override
+    public String getName() {
+        return "Loaded chunks";
+    }
+
+    /**
+     * Returns the memory held by the chunks loaded through this window in every attached scrollable.
+     * @return The retained memory, in bytes.
+     */
+    @Override
+    public long retainedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < scrollables.size(); i++) {
+            bytes += scrollables.get(i).loadedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Dropped images are baked again and unloaded chunks generated again, visibly, when the viewers come
+     * near: dearer than forgetting saved states.
+     * @return The relative cost of evicting a byte.
+     */
+    @Override
+    public float evictionCost() {
+        return 8;
+    }
+
+    /**
+     * The loaded chunks are in use on every frame.
+     * @return The current time.
+     */
+    @Override
+    public long lastUsedNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Drops the images no loaded chunk presents right now and, if that is not enough, caps the window one
+     * chunk narrower than it is. The chunks beyond the cap are unloaded by the following updates, so the
+     * window is not narrowed again until they are gone.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, or about to be freed by unloading, in bytes.
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = 0;
+        for (int i = 0; i < scrollables.size() && freed < bytes; i++) {
+            freed += scrollables.get(i).dropUnusedImages(bytes - freed);
+        }
+        int widest = Math.max(chunksBefore(), chunksAfter());
+        if (freed >= bytes || widest <= minChunks || loadedBytesBeyond(widest) > 0) {
+            return freed;
+        }
+        memoryCap = widest - 1;
+        capRelaxTimer = 0;
+        return freed + loadedBytesBeyond(memoryCap);
+    }
+
+    /*
+     * Returns the memory held by the loaded chunks farther than the given distance from every viewer.
+     */
+    private long loadedBytesBeyond(int distance) {
+        long bytes = 0;
+        for (int i = 0; i < scrollables.size(); i++) {
+            bytes += scrollables.get(i).loadedBytesBeyond(distance);
+        }
+        return bytes;
+    }
+}
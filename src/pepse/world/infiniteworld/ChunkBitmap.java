@@ -0,0 +1,250 @@
+package pepse.world.infiniteworld;
+
+import danogl.GameObject;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A single image holding the static (never changing) objects of one chunk, such as terrain blocks and
+ * tree trunks, rasterised once when the chunk is loaded.
+ * The baked objects keep their place in the game as invisible colliders, while the whole chunk is drawn
+ * with one image instead of one draw call per object. The image follows the palette's lighting, being baked
+ * again when the palette changes.
+ * <p>
+ * Every scrollable bakes its own chunks, so a chunk index with terrain and tree trunks has two images. The
+ * scrollables load and unload their chunks on different updates, so a shared image would be baked again
+ * whenever either side changed; and since the trunks stand on the terrain, the two images cover about the
+ * area one image spanning both would.
+ * @author Aron Isaacs
+ */
+public class ChunkBitmap implements ChunkLoadable {
+    /** The single colour far-away impostors are drawn with. */
+    public static final Color SILHOUETTE_COLOR = new Color(58, 52, 60);
+
+    private final GameObject image;
+    private final List<GameObject> hiddenObjects;
+    private final List<Renderable> hiddenRenderables;
+
+    /*
+     * Constructs a ChunkBitmap presenting the given image instead of the given hidden objects.
+     */
+    private ChunkBitmap(GameObject image, List<GameObject> hiddenObjects, List<Renderable> hiddenRenderables) {
+        this.image = image;
+        this.hiddenObjects = hiddenObjects;
+        this.hiddenRenderables = hiddenRenderables;
+    }
+
+    /**
+     * Rasterises the static objects of the given chunk objects into a single image, and hides the
+     * originals so that only their colliders remain.
+     * @param chunkObjects the objects placed in one chunk.
+     * @return the baked bitmap, or null if the chunk has no static objects.
+     */
+    public static ChunkBitmap bake(List<? extends ChunkLoadable> chunkObjects) {
+        return bake(chunkObjects, null);
+    }
+
+    /**
+     * Like {@link #bake(List)}, but draws every static object as a flat {@link #SILHOUETTE_COLOR} shape,
+     * for presenting far-away chunks.
+     * @param chunkObjects the objects placed in one chunk.
+     * @return the baked silhouette, or null if the chunk has no visible static objects.
+     */
+    public static ChunkBitmap bakeSilhouette(List<? extends ChunkLoadable> chunkObjects) {
+        return bake(chunkObjects, SILHOUETTE_COLOR);
+    }
+
+    /*
+     * Bakes the visible static objects of a chunk, in their own colours or as a silhouette.
+     */
+    private static ChunkBitmap bake(List<? extends ChunkLoadable> chunkObjects, Color silhouetteColor) {
+        List<GameObject> statics = new ArrayList<>();
+        for (ChunkLoadable obj : chunkObjects) {
+            obj.collectStaticObjects(gameObject -> {
+                if (gameObject.renderer().getRenderable() != null) {
+                    statics.add(gameObject);
+                }
+            });
+        }
+        if (statics.isEmpty()) {
+            return null;
+        }
+        GameObject image = flatten(statics, silhouetteColor);
+        List<Renderable> renderables = new ArrayList<>(statics.size());
+        for (GameObject obj : statics) {
+            renderables.add(obj.renderer().getRenderable());
+            obj.renderer().setRenderable(null);
+        }
+        return new ChunkBitmap(image, statics, renderables);
+    }
+
+    /**
+     * Rasterises the given objects, as they currently look, into a single non-colliding game object
+     * covering their bounding box. The objects themselves are left untouched. The image is baked again,
+     * when it is next drawn, whenever the {@link Palette} changes, so it is lit like the objects it replaces.
+     * @param objects the objects to rasterise.
+     * @param silhouetteColor if not null, every object is drawn as a flat rectangle of this colour (as lit by
+     *                        the palette) instead of with its own renderable.
+     * @return the merged game object.
+     */
+    public static GameObject flatten(List<GameObject> objects, Color silhouetteColor) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (GameObject obj : objects) {
+            Vector2 topLeft = obj.getTopLeftCorner();
+            Vector2 dimensions = obj.getDimensions();
+            minX = Math.min(minX, topLeft.x());
+            minY = Math.min(minY, topLeft.y());
+            maxX = Math.max(maxX, topLeft.x() + dimensions.x());
+            maxY = Math.max(maxY, topLeft.y() + dimensions.y());
+        }
+
+        Vector2 origin = new Vector2(minX, minY);
+        BakedImage baked = new BakedImage(objects, origin, (int) Math.ceil(maxX - minX),
+                (int) Math.ceil(maxY - minY), silhouetteColor);
+        GameObject image = new GameObject(origin, new Vector2(baked.bitmap.getWidth(), baked.bitmap.getHeight()),
+                baked) {
+            @Override
+            public boolean shouldCollideWith(GameObject other) {
+                return false;
+            }
+        };
+        image.setTag("chunkBitmap");
+        return image;
+    }
+
+    /*
+     * An image of objects as they looked when flattened, baked again with the current light whenever the
+     * palette has changed since it was last baked.
+     */
+    private static class BakedImage implements Renderable {
+        private final Renderable[] renderables;
+        private final Vector2[] topLefts;
+        private final Vector2[] dimensions;
+        private final Color silhouetteColor;
+        private final BufferedImage bitmap;
+        private final ImageRenderable imageRenderable;
+        private int paletteVersion;
+
+        private BakedImage(List<GameObject> objects, Vector2 origin, int width, int height,
+                           Color silhouetteColor) {
+            int count = objects.size();
+            renderables = new Renderable[count];
+            topLefts = new Vector2[count];
+            dimensions = new Vector2[count];
+            for (int i = 0; i < count; i++) {
+                GameObject obj = objects.get(i);
+                renderables[i] = obj.renderer().getRenderable();
+                topLefts[i] = obj.getTopLeftCorner().subtract(origin);
+                dimensions[i] = obj.getDimensions();
+            }
+            this.silhouetteColor = silhouetteColor;
+            bitmap = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            imageRenderable = new ImageRenderable(bitmap);
+            bake();
+        }
+
+        /*
+         * Clears the image and draws the objects into it with the palette's current light.
+         */
+        private void bake() {
+            Graphics2D g = bitmap.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            if (silhouetteColor != null) {
+                g.setColor(Palette.tint(silhouetteColor));
+            }
+            for (int i = 0; i < renderables.length; i++) {
+                if (silhouetteColor != null) {
+                    g.fillRect(Math.round(topLefts[i].x()), Math.round(topLefts[i].y()),
+                            Math.round(dimensions[i].x()), Math.round(dimensions[i].y()));
+                } else if (renderables[i] != null) {
+                    renderables[i].render(g, topLefts[i], dimensions[i], 0, false, false, 1);
+                }
+            }
+            g.dispose();
+            paletteVersion = Palette.getVersion();
+        }
+
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            if (paletteVersion != Palette.getVersion()) {
+                bake();
+            }
+            imageRenderable.render(g, topLeftCorner, dimensions, degreesCounterClockwise, isFlippedHorizontally,
+                    isFlippedVertically, opaqueness);
+        }
+    }
+
+    /**
+     * Returns the memory held by the pixels of an image made by {@link #flatten(List, Color)}.
+     * @param flattened the flattened game object, or null.
+     * @return the image's size, in bytes, or 0 for null.
+     */
+    public static long imageBytes(GameObject flattened) {
+        if (flattened == null) {
+            return 0;
+        }
+        Vector2 dimensions = flattened.getDimensions();
+        return (long) dimensions.x() * (long) dimensions.y() * Integer.BYTES;
+    }
+
+    /**
+     * The baked objects are accounted for by the loadables they belong to; the bitmap holds its image.
+     * @return The memory held by the image, in bytes.
+     */
+    @Override
+    public long retainedBytes() {
+        return imageBytes(image);
+    }
+
+    /**
+     * Gives the baked objects their own renderables back, undoing the bake. The bitmap itself should be
+     * removed from the game as well.
+     */
+    public void restore() {
+        for (int i = 0; i < hiddenObjects.size(); i++) {
+            hiddenObjects.get(i).renderer().setRenderable(hiddenRenderables.get(i));
+        }
+    }
+
+    /**
+     * Hides the baked objects again after {@link #restore()}, so the bitmap can be shown again without
+     * being baked again.
+     */
+    public void hide() {
+        for (GameObject obj : hiddenObjects) {
+            obj.renderer().setRenderable(null);
+        }
+    }
+
+    /**
+     * Adds the bitmap to the game, behind the dynamic objects.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     */
+    @Override
+    public void addToGame(BiConsumer<GameObject, Integer> addGameObject) {
+        addGameObject.accept(image, Layer.BACKGROUND);
+    }
+
+    /**
+     * Removes the bitmap from the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    @Override
+    public void destroy(BiConsumer<GameObject, Integer> destroyGameObject) {
+        destroyGameObject.accept(image, Layer.BACKGROUND);
+    }
+}
@@ -1,8 +1,10 @@
 package pepse.world.infiniteworld;
 
 import danogl.GameObject;
+import pepse.world.pickups.Pickup;
 
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 
 /**
@@ -10,6 +12,9 @@ import java.util.function.BiConsumer;
  * Implementing classes must define how to add and destroy game objects in the context of chunk loading.
  */
 public interface ChunkLoadable {
+    /** A rough estimate of the memory held by one game object, with its transform, renderer and collider. */
+    long GAME_OBJECT_BYTES = 512;
+
     /**
      * Adds the game object to the game using the provided BiConsumer.
      * @param addGameObject A BiConsumer that takes a GameObject and an Integer (chunk index) to add the object to the game.
@@ -20,5 +25,67 @@ public interface ChunkLoadable {
      * @param destroyGameObject A BiConsumer that takes a GameObject and an Integer (chunk index) to remove the object from the game.
      */
     void destroy(BiConsumer<GameObject, Integer> destroyGameObject);
+    /**
+     * Passes every game object of this loadable that never changes after creation (and may therefore be
+     * pre-rendered into a chunk bitmap) to the given collector. By default there are none.
+     * @param collector A Consumer receiving the static game objects.
+     * @see ChunkBitmap
+     */
+    default void collectStaticObjects(Consumer<GameObject> collector) {
+    }
+    /**
+     * Passes every pickup (item collected by touching it) of this loadable to the given collector,
+     * so it can be registered with the pickup system while its chunk is loaded. By default there are none.
+     * @param collector A Consumer receiving the pickups.
+     * @see pepse.world.pickups.PickupSystem
+     */
+    default void collectPickups(Consumer<Pickup> collector) {
+    }
+    /**
+     * Switches how this loadable is presented according to its chunk's distance from the viewers.
+     * The level of a newly generated loadable is set before it is added to the game, with consumers that do
+     * nothing, so it is added directly at that level; loadables start at {@link DetailLevel#NEAR}. By
+     * default the level is ignored.
+     * @param level The new level of detail.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    default void setDetailLevel(DetailLevel level,
+                                BiConsumer<GameObject, Integer> addGameObject,
+                                BiConsumer<GameObject, Integer> destroyGameObject) {
+    }
+    /**
+     * Returns the state of this loadable that changed since it was created and evolves over time (e.g.
+     * fruits waiting to grow back), so it can be restored when its chunk is generated again instead of
+     * being simulated while nobody is near. By default there is none.
+     * @return The state, or null if there is nothing to keep.
+     * @see #restoreState(Object, float)
+     */
+    default Object captureState() {
+        return null;
+    }
+    /**
+     * Restores a state returned by {@link #captureState()} on the loadable generated at the same place,
+     * advanced analytically by the time that passed in between.
+     * @param state The captured state.
+     * @param elapsedSeconds The world time, in seconds, that passed since the state was captured.
+     */
+    default void restoreState(Object state, float elapsedSeconds) {
+    }
+    /**
+     * Returns an estimate of the memory this loadable holds while its chunk is loaded: its game objects,
+     * and any image baked for one of its levels of detail. By default, a single game object.
+     * @return The retained memory, in bytes.
+     */
+    default long retainedBytes() {
+        return GAME_OBJECT_BYTES;
+    }
+    /**
+     * Releases the images baked for levels of detail this loadable is not presented at right now; they are
+     * baked again the next time they are needed. By default there are none.
+     * @return The memory freed, in bytes.
+     */
+    default long dropUnusedImages() {
+        return 0;
+    }
 }
-
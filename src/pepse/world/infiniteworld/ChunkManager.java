@@ -1,16 +1,31 @@
 package pepse.world.infiniteworld;
 
 import danogl.GameObject;
+import pepse.util.memory.MemoryConsumer;
+import pepse.util.profiling.ChunkGeneratedEvent;
+import pepse.util.profiling.ChunkUnloadedEvent;
+import pepse.world.WorldClock;
+import pepse.world.pickups.Pickup;
+import pepse.world.events.WorldEvents;
+import pepse.world.pickups.PickupSystem;
 
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- * Manages loading and unloading of game objects in chunks based on the avatar's position.
+ * Manages loading and unloading of game objects in chunks based on the positions of one or more viewers.
+ * Every viewer (avatar, camera, simulated client...) defines a window of chunks around it; the manager
+ * loads the union of all windows and reference-counts each chunk by the number of windows covering it.
+ * A chunk is generated once no matter how many viewers share it, and is unloaded only when no window
+ * covers it anymore.
+ * Objects whose state evolves over time are not simulated while their chunk is unloaded or far: the
+ * manager keeps their state with the world time it was set aside at, and they catch up on the elapsed time
+ * in one step when the chunk comes back.
  * @param <T> The type of ChunkLoadable objects being managed.
  * @author Aron Isaacs
  */
-public class ChunkManager<T extends ChunkLoadable> {
+public class ChunkManager<T extends ChunkLoadable> implements MemoryConsumer {
 
     /**
      * A functional interface for placing chunks of game objects within specified bounds.
@@ -23,18 +38,166 @@ public class ChunkManager<T extends ChunkLoadable> {
         List<T> place(int leftBound, int rightBound);
     }
 
-    // A deque to keep track of loaded chunks and their associated game objects.
-    private final Deque<Map.Entry<Integer, List<T>>> loadedChunks = new ArrayDeque<>();
+    /**
+     * A functional interface notified whenever a chunk is generated, with the cost of generating it.
+     */
+    @FunctionalInterface
+    public interface GenerationListener {
+        void chunkGenerated(int chunkIndex, int objectCount, long nanos);
+    }
+
+    /**
+     * A functional interface receiving the states of a chunk's objects, e.g. to save them.
+     */
+    @FunctionalInterface
+    public interface StateVisitor {
+        /**
+         * Receives the states of one chunk.
+         * @param chunkIndex The index of the chunk.
+         * @param capturedAt The world time the states were captured at.
+         * @param states The state of each object of the chunk, by order of generation; null for objects
+         *               without one.
+         */
+        void visit(int chunkIndex, double capturedAt, Object[] states);
+    }
+
+    /*
+     * A loaded chunk: the objects placed in it, the number of viewer windows currently covering it,
+     * its distance (in chunks) from the nearest viewer and the level of detail it is presented with.
+     */
+    private static class LoadedChunk<T> {
+        private final List<T> objects;
+        private final ChunkBitmap bitmap;
+        private PickupSystem.Group pickups;
+        private int refCount;
+        private int viewerDistance;
+        private DetailLevel detailLevel;
+        // A silhouette of the chunk's static objects, baked the first time the chunk is far and kept until it
+        // is unloaded; it is in the game, hiding the objects it was baked from, only while the chunk is far.
+        private ChunkBitmap impostor;
+        // While the chunk is far its objects are not simulated: their state when they were set aside.
+        private SavedStates pausedStates;
+        // The memory the chunk's objects and images held when it was last measured.
+        private long bytes;
+
+        private LoadedChunk(List<T> objects, ChunkBitmap bitmap, DetailLevel detailLevel) {
+            this.objects = objects;
+            this.bitmap = bitmap;
+            this.detailLevel = detailLevel;
+        }
+    }
+
+    /*
+     * The states of a chunk's objects, and the world time they were captured at.
+     */
+    private static class SavedStates {
+        private final Object[] states;
+        private final double time;
+        private final long bytes;
+
+        private SavedStates(Object[] states, double time) {
+            this.states = states;
+            this.time = time;
+            this.bytes = estimateBytes(states);
+        }
+    }
+
+    // Passed when switching the level of detail of objects that are not in the game yet.
+    private static final BiConsumer<GameObject, Integer> NOT_IN_GAME = (obj, layer) -> { };
+
+    // Loaded chunks by chunk index.
+    private final Map<Integer, LoadedChunk<T>> loadedChunks = new HashMap<>();
+    // Reused between updates to collect chunks that dropped out of every window.
+    private final List<Integer> chunksToRemove = new ArrayList<>();
+    // The states of unloaded chunks whose objects changed since they were generated, by chunk index,
+    // oldest first, and the memory they retain.
+    private final Map<Integer, SavedStates> savedChunks = new LinkedHashMap<>();
+    private long savedBytes;
+    private long savedLastUsedNanos = System.nanoTime();
+    // The memory held by the loaded chunks, and a reused list of them ordered for dropping images.
+    private long loadedBytes;
+    private final List<LoadedChunk<T>> farthestFirst = new ArrayList<>();
+    // Reused between updates to collect chunks that are in a window but not loaded yet, with the number of
+    // windows covering them, their distance (in chunks) from the nearest viewer, and their distance in pixels.
+    private int[] missingChunks = new int[16];
+    private int[] missingRefCounts = new int[16];
+    private int[] missingDistances = new int[16];
+    private float[] missingPixelDistances = new float[16];
+    private int missingCount;
+    private int maxLoadsPerUpdate = Integer.MAX_VALUE;
+    private int maxUnloadsPerUpdate = Integer.MAX_VALUE;
+    private final float[] singleViewer = new float[1];
+    // Reused between updates: the viewers' x-coordinates in ascending order, and the chunk each is in.
+    private float[] sortedViewerXs = new float[1];
+    private int[] sortedViewerChunks = new int[1];
+    private final String name;
     private final int chunkSize;
-    private final int rangeBefore;
-    private final int rangeAfter;
     private final ChunkPlacer<T> placer;
+    private LoadWindow loadWindow;
+    private GenerationListener generationListener;
+    private PickupSystem pickupSystem;
+    private boolean prerenderStatics;
+    private WorldClock worldClock;
+    private WorldEvents events;
+    private int nearRange = Integer.MAX_VALUE;
+    private int midRange = Integer.MAX_VALUE;
 
     public ChunkManager(int chunkSize, int rangeBefore, int rangeAfter, ChunkPlacer<T> placer) {
+        this("chunks", chunkSize, rangeBefore, rangeAfter, placer);
+    }
+
+    /**
+     * Constructs a ChunkManager whose chunks are reported to profiling tools under the given name.
+     * @param name The name of the managed content, e.g. the scrollable's class name.
+     * @param chunkSize The width of a chunk, in pixels.
+     * @param rangeBefore The default number of chunks loaded before each viewer.
+     * @param rangeAfter The default number of chunks loaded after each viewer.
+     * @param placer Creates the objects of a chunk.
+     */
+    public ChunkManager(String name, int chunkSize, int rangeBefore, int rangeAfter, ChunkPlacer<T> placer) {
+        this.name = name;
         this.chunkSize = chunkSize;
-        this.rangeBefore = rangeBefore;
-        this.rangeAfter = rangeAfter;
         this.placer = placer;
+        setLoadWindow(new LoadWindow() {
+            @Override
+            public int chunksBefore() {
+                return rangeBefore;
+            }
+
+            @Override
+            public int chunksAfter() {
+                return rangeAfter;
+            }
+        });
+    }
+
+    /**
+     * Sets the window that determines how many chunks are loaded on each side of every viewer,
+     * replacing the fixed range given at construction.
+     * @param loadWindow The new load window.
+     */
+    public void setLoadWindow(LoadWindow loadWindow) {
+        this.loadWindow = loadWindow;
+    }
+
+    /**
+     * Sets the listener notified with the cost of every chunk generation, or null for none.
+     * @param generationListener The listener.
+     */
+    public void setGenerationListener(GenerationListener generationListener) {
+        this.generationListener = generationListener;
+    }
+
+    /**
+     * Sets the distances, in chunks from the nearest viewer, up to which chunks are presented in
+     * {@link DetailLevel#NEAR} and {@link DetailLevel#MID} detail. Farther chunks are {@link DetailLevel#FAR}.
+     * By default every chunk is near.
+     * @param nearRange The maximal distance of near chunks.
+     * @param midRange The maximal distance of mid-range chunks.
+     */
+    public void setDetailRanges(int nearRange, int midRange) {
+        this.nearRange = nearRange;
+        this.midRange = Math.max(nearRange, midRange);
     }
 
     /**
@@ -47,55 +210,690 @@ public class ChunkManager<T extends ChunkLoadable> {
     public void update(float avatarX,
                        BiConsumer<GameObject, Integer> addGameObject,
                        BiConsumer<GameObject, Integer> destroyGameObject) {
-        int avatarChunk = Math.round(avatarX / chunkSize);
-        int minChunk = avatarChunk - rangeBefore;
-        int maxChunk = avatarChunk + rangeAfter;
+        singleViewer[0] = avatarX;
+        update(singleViewer, singleViewer.length, addGameObject, destroyGameObject);
+    }
 
-        removeChunks(destroyGameObject, minChunk, maxChunk);
-        addChunks(addGameObject, minChunk, maxChunk);
+    /**
+     * Updates the loaded chunks based on the positions of several viewers.
+     * The union of the windows around all viewers is kept loaded; each chunk is generated at most once
+     * and is unloaded only when it leaves every window.
+     * Missing chunks are generated nearest-first (centre-out from the viewers), and when a streaming budget
+     * is set, only that many chunks are loaded and unloaded per update; the rest follow in later updates.
+     * @param viewerXs The x-coordinates of the viewers (interest points).
+     * @param viewerCount The number of valid entries in viewerXs.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    public void update(float[] viewerXs, int viewerCount,
+                       BiConsumer<GameObject, Integer> addGameObject,
+                       BiConsumer<GameObject, Integer> destroyGameObject) {
+        for (LoadedChunk<T> chunk : loadedChunks.values()) {
+            chunk.refCount = 0;
+            chunk.viewerDistance = Integer.MAX_VALUE;
+        }
+        missingCount = 0;
+        sortViewers(viewerXs, viewerCount);
+        referenceChunks(viewerCount, loadWindow.chunksBefore(), loadWindow.chunksAfter());
+        loadMissingChunks(addGameObject);
+        removeChunks(destroyGameObject);
+        updateDetailLevels(addGameObject, destroyGameObject);
+    }
+
+    /**
+     * Limits how many chunks are generated and unloaded per update, so that large changes of the window
+     * (e.g. a teleport) are spread over several frames instead of stalling one. By default there is no limit.
+     * @param maxLoadsPerUpdate The most chunks generated per update.
+     * @param maxUnloadsPerUpdate The most chunks unloaded per update.
+     */
+    public void setStreamingBudget(int maxLoadsPerUpdate, int maxUnloadsPerUpdate) {
+        this.maxLoadsPerUpdate = Math.max(1, maxLoadsPerUpdate);
+        this.maxUnloadsPerUpdate = Math.max(1, maxUnloadsPerUpdate);
+    }
+
+    /**
+     * Sets the pickup system the pickups of newly loaded chunks are registered with, or null for none.
+     * @param pickupSystem The pickup system.
+     */
+    public void setPickupSystem(PickupSystem pickupSystem) {
+        this.pickupSystem = pickupSystem;
+    }
+
+    /**
+     * Sets whether the static objects of newly loaded chunks are pre-rendered into a single
+     * {@link ChunkBitmap} per chunk. Chunks that are already loaded are not affected.
+     * @param prerenderStatics true to pre-render static objects.
+     */
+    public void setPrerenderStatics(boolean prerenderStatics) {
+        this.prerenderStatics = prerenderStatics;
+    }
+
+    /**
+     * Sets the clock that unloaded and far chunks measure the time they were set aside by, so their
+     * objects catch up on it when they come back. Without a clock no time passes for them.
+     * @param worldClock The world clock, or null for none.
+     */
+    public void setWorldClock(WorldClock worldClock) {
+        this.worldClock = worldClock;
+    }
+
+    /**
+     * Sets the event bus chunk loads and unloads are published on under the manager's name, or null for none.
+     * A chunk regenerated in place is published as loaded again.
+     * @param events The event bus.
+     */
+    public void setEvents(WorldEvents events) {
+        this.events = events;
+    }
+
+    /**
+     * Returns the index of the chunk whose bounds contain the given x-coordinate. A viewer's window is
+     * centred on this chunk, and distances from the viewer are measured from it.
+     * @param x The x-coordinate.
+     * @return The chunk index.
+     */
+    public int chunkIndexAt(float x) {
+        return Math.floorDiv((int) Math.floor(x), chunkSize);
+    }
+
+    /**
+     * Returns whether the chunk containing the given x-coordinate is loaded.
+     * @param x The x-coordinate.
+     * @return true if the chunk is loaded.
+     */
+    public boolean isLoadedAt(float x) {
+        return loadedChunks.containsKey(chunkIndexAt(x));
+    }
+
+    /**
+     * Regenerates the loaded chunk containing the given x-coordinate, e.g. after the content it is generated
+     * from was edited. The chunk keeps its viewers, and is switched back to its level of detail on the next
+     * update. Nothing happens if the chunk is not loaded; it is generated up to date when it is.
+     * @param x The x-coordinate.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    public void reloadChunkAt(float x,
+                              BiConsumer<GameObject, Integer> addGameObject,
+                              BiConsumer<GameObject, Integer> destroyGameObject) {
+        int chunk = chunkIndexAt(x);
+        LoadedChunk<T> stale = loadedChunks.remove(chunk);
+        if (stale == null) {
+            return;
+        }
+        saveStates(chunk, captureStates(stale));
+        destroyChunk(stale, destroyGameObject);
+        LoadedChunk<T> loaded = loadChunk(chunk, detailLevelAt(stale.viewerDistance), addGameObject);
+        loaded.refCount = stale.refCount;
+        loaded.viewerDistance = stale.viewerDistance;
+    }
+
+    /**
+     * Returns an estimate of the memory held by the loaded chunks: their objects, pre-rendered bitmaps,
+     * impostors and the images their objects baked for levels of detail. Unlike {@link #retainedBytes()},
+     * this memory is in use, and is only given back by unloading chunks or dropping images.
+     * @return The memory held by the loaded chunks, in bytes.
+     */
+    public long loadedBytes() {
+        return loadedBytes;
+    }
+
+    /**
+     * Returns the memory held by the loaded chunks farther than the given distance from the nearest viewer,
+     * i.e. what shrinking every window to that distance would free.
+     * @param distance The distance, in chunks.
+     * @return The memory held by the farther chunks, in bytes.
+     */
+    public long loadedBytesBeyond(int distance) {
+        long bytes = 0;
+        for (LoadedChunk<T> chunk : loadedChunks.values()) {
+            if (chunk.viewerDistance > distance) {
+                bytes += chunk.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases the images of the loaded chunks that are not presented right now, farthest chunks first:
+     * impostors kept for chunks that are no longer far, and images their objects baked for other levels of
+     * detail. They are baked again if they are needed later.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, in bytes.
+     */
+    public long dropUnusedImages(long bytes) {
+        farthestFirst.addAll(loadedChunks.values());
+        farthestFirst.sort((a, b) -> Integer.compare(b.viewerDistance, a.viewerDistance));
+        long freed = 0;
+        for (int i = 0; i < farthestFirst.size() && freed < bytes; i++) {
+            LoadedChunk<T> chunk = farthestFirst.get(i);
+            if (chunk.detailLevel != DetailLevel.FAR && chunk.impostor != null) {
+                freed += chunk.impostor.retainedBytes();
+                chunk.impostor = null;
+            }
+            for (int j = 0; j < chunk.objects.size(); j++) {
+                freed += chunk.objects.get(j).dropUnusedImages();
+            }
+            measure(chunk);
+        }
+        farthestFirst.clear();
+        return freed;
+    }
+
+    /**
+     * Returns the number of distinct chunks currently loaded.
+     * @return The number of loaded chunks.
+     */
+    public int loadedChunkCount() {
+        return loadedChunks.size();
+    }
+
+    /**
+     * Returns the objects of a loaded chunk.
+     * @param chunkIndex The index of the chunk; its left bound is the index times the chunk size.
+     * @return The objects of the chunk, or an empty list if it is not loaded.
+     */
+    public List<T> objectsInChunk(int chunkIndex) {
+        LoadedChunk<T> chunk = loadedChunks.get(chunkIndex);
+        return chunk == null ? Collections.emptyList() : Collections.unmodifiableList(chunk.objects);
+    }
+
+    /**
+     * Passes every object of every loaded chunk to the given consumer.
+     * @param consumer Receives the objects.
+     */
+    public void forEachLoaded(Consumer<? super T> consumer) {
+        for (LoadedChunk<T> chunk : loadedChunks.values()) {
+            chunk.objects.forEach(consumer);
+        }
+    }
+
+    /**
+     * Passes the states of every chunk whose objects have any: loaded chunks are captured now (far chunks
+     * as they were paused), and unloaded chunks as they were kept.
+     * @param visitor Receives the states of each chunk.
+     */
+    public void forEachChunkState(StateVisitor visitor) {
+        for (Map.Entry<Integer, LoadedChunk<T>> entry : loadedChunks.entrySet()) {
+            SavedStates states = captureStates(entry.getValue());
+            if (states != null) {
+                visitor.visit(entry.getKey(), states.time, states.states);
+            }
+        }
+        for (Map.Entry<Integer, SavedStates> entry : savedChunks.entrySet()) {
+            visitor.visit(entry.getKey(), entry.getValue().time, entry.getValue().states);
+        }
+    }
+
+    /**
+     * Restores states passed by {@link #forEachChunkState(StateVisitor)}, e.g. from a saved game. The
+     * objects catch up on the world time that passed since the states were captured: at once if the chunk
+     * is loaded and near, otherwise when it is.
+     * @param chunkIndex The index of the chunk.
+     * @param capturedAt The world time the states were captured at.
+     * @param states The state of each object of the chunk.
+     */
+    public void restoreChunkStates(int chunkIndex, double capturedAt, Object[] states) {
+        SavedStates saved = new SavedStates(states, capturedAt);
+        LoadedChunk<T> loaded = loadedChunks.get(chunkIndex);
+        if (loaded == null) {
+            saveStates(chunkIndex, saved);
+        } else if (loaded.pausedStates != null) {
+            loaded.pausedStates = saved;
+        } else {
+            restoreStates(loaded.objects, saved);
+        }
+    }
+
+    /*
+     * Copies the viewers' x-coordinates in ascending order, with the chunk each is in.
+     */
+    private void sortViewers(float[] viewerXs, int viewerCount) {
+        if (sortedViewerXs.length < viewerCount) {
+            sortedViewerXs = new float[viewerCount * 2];
+            sortedViewerChunks = new int[viewerCount * 2];
+        }
+        System.arraycopy(viewerXs, 0, sortedViewerXs, 0, viewerCount);
+        Arrays.sort(sortedViewerXs, 0, viewerCount);
+        for (int i = 0; i < viewerCount; i++) {
+            sortedViewerChunks[i] = chunkIndexAt(sortedViewerXs[i]);
+        }
     }
 
     /*
-        * Adds new chunks of game objects within the specified chunk range.
+     * Sets the reference count and viewer distance of every chunk in the union of the viewers' windows, and
+     * queues those that are not loaded yet for generation. All windows have the same width, so with the
+     * viewers sorted the windows covering a chunk are a contiguous run [lo, hi) of them, and both ends of the
+     * run only move forward as the chunk does: each distinct chunk is visited once, whatever the number of
+     * viewers sharing it.
+     * @param viewerCount The number of sorted viewers.
+     * @param chunksBefore The number of chunks of a window before its viewer's chunk.
+     * @param chunksAfter The number of chunks of a window after its viewer's chunk.
+     */
+    private void referenceChunks(int viewerCount, int chunksBefore, int chunksAfter) {
+        int lo = 0;
+        int hi = 0;
+        // The first covering viewer at or after the chunk's centre; the nearest viewer is it or the one before.
+        int next = 0;
+        int chunk = viewerCount == 0 ? 0 : sortedViewerChunks[0] - chunksBefore;
+        while (lo < viewerCount) {
+            while (hi < viewerCount && sortedViewerChunks[hi] - chunksBefore <= chunk) {
+                hi++;
+            }
+            while (lo < hi && sortedViewerChunks[lo] + chunksAfter < chunk) {
+                lo++;
+            }
+            if (lo == hi) {
+                // A gap between windows: skip to the start of the next one.
+                if (lo < viewerCount) {
+                    chunk = sortedViewerChunks[lo] - chunksBefore;
+                }
+                continue;
+            }
+            float center = chunk * chunkSize + chunkSize / 2f;
+            next = Math.max(next, lo);
+            while (next < hi && sortedViewerXs[next] < center) {
+                next++;
+            }
+            int distance = Integer.MAX_VALUE;
+            float pixelDistance = Float.MAX_VALUE;
+            if (next > lo) {
+                distance = chunk - sortedViewerChunks[next - 1];
+                pixelDistance = center - sortedViewerXs[next - 1];
+            }
+            if (next < hi) {
+                distance = Math.min(distance, sortedViewerChunks[next] - chunk);
+                pixelDistance = Math.min(pixelDistance, sortedViewerXs[next] - center);
+            }
+            LoadedChunk<T> loaded = loadedChunks.get(chunk);
+            if (loaded != null) {
+                loaded.refCount = hi - lo;
+                loaded.viewerDistance = distance;
+            } else {
+                queueMissingChunk(chunk, hi - lo, distance, pixelDistance);
+            }
+            chunk++;
+        }
+    }
+
+    /*
+     * Queues a chunk that is not loaded yet. Every chunk is queued at most once per update.
+     */
+    private void queueMissingChunk(int chunk, int refCount, int distance, float pixelDistance) {
+        if (missingCount == missingChunks.length) {
+            int capacity = missingCount * 2;
+            missingChunks = Arrays.copyOf(missingChunks, capacity);
+            missingRefCounts = Arrays.copyOf(missingRefCounts, capacity);
+            missingDistances = Arrays.copyOf(missingDistances, capacity);
+            missingPixelDistances = Arrays.copyOf(missingPixelDistances, capacity);
+        }
+        missingChunks[missingCount] = chunk;
+        missingRefCounts[missingCount] = refCount;
+        missingDistances[missingCount] = distance;
+        missingPixelDistances[missingCount] = pixelDistance;
+        missingCount++;
+    }
+
+    /*
+        * Generates the queued chunks nearest to a viewer first, up to the streaming budget.
         * @param addGameObject A BiConsumer to add game objects to the game.
-        * @param minChunk The minimum chunk index to load.
-        * @param maxChunk The maximum chunk index to load.
-     */
-    private void addChunks(BiConsumer<GameObject, Integer> addGameObject, int minChunk, int maxChunk) {
-        for (int chunk = minChunk; chunk <= maxChunk; chunk++) {
-            int finalChunk = chunk;
-            boolean exists = loadedChunks.stream().anyMatch(e -> e.getKey() == finalChunk);
-            if (!exists) {
-                int left = chunk * chunkSize;
-                int right = left + chunkSize - 1;
-                List<T> placed = placer.place(left, right);
-                for (T obj : placed) {
-                    obj.addToGame(addGameObject);
+     */
+    private void loadMissingChunks(BiConsumer<GameObject, Integer> addGameObject) {
+        int loads = Math.min(missingCount, maxLoadsPerUpdate);
+        for (int n = 0; n < loads; n++) {
+            // Selection of the nearest remaining chunk; the queue holds at most a window's worth of chunks.
+            int nearest = n;
+            for (int i = n + 1; i < missingCount; i++) {
+                if (missingPixelDistances[i] < missingPixelDistances[nearest]) {
+                    nearest = i;
                 }
-                loadedChunks.addLast(new AbstractMap.SimpleEntry<>(chunk, placed));
+            }
+            swapMissing(n, nearest);
+            LoadedChunk<T> loaded = loadChunk(missingChunks[n], detailLevelAt(missingDistances[n]), addGameObject);
+            loaded.refCount = missingRefCounts[n];
+            loaded.viewerDistance = missingDistances[n];
+        }
+    }
+
+    /*
+        * Swaps two entries of the queue of missing chunks.
+     */
+    private void swapMissing(int i, int j) {
+        int chunk = missingChunks[i];
+        missingChunks[i] = missingChunks[j];
+        missingChunks[j] = chunk;
+        int refCount = missingRefCounts[i];
+        missingRefCounts[i] = missingRefCounts[j];
+        missingRefCounts[j] = refCount;
+        int distance = missingDistances[i];
+        missingDistances[i] = missingDistances[j];
+        missingDistances[j] = distance;
+        float pixelDistance = missingPixelDistances[i];
+        missingPixelDistances[i] = missingPixelDistances[j];
+        missingPixelDistances[j] = pixelDistance;
+    }
+
+    /*
+        * Generates one chunk and adds its objects to the game, presented at the given level of detail from the
+        * start. A far chunk keeps its saved states paused instead of restoring them, like a chunk that became
+        * far while loaded.
+        * @param chunk The index of the chunk.
+        * @param level The level of detail of the chunk.
+        * @param addGameObject A BiConsumer to add game objects to the game.
+        * @return The loaded chunk.
+     */
+    private LoadedChunk<T> loadChunk(int chunk, DetailLevel level, BiConsumer<GameObject, Integer> addGameObject) {
+        int left = chunk * chunkSize;
+        int right = left + chunkSize - 1;
+        ChunkGeneratedEvent event = new ChunkGeneratedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<T> placed = placer.place(left, right);
+        if (generationListener != null) {
+            generationListener.chunkGenerated(chunk, placed.size(), System.nanoTime() - start);
+        }
+        SavedStates saved = takeSavedStates(chunk);
+        if (level != DetailLevel.FAR) {
+            restoreStates(placed, saved);
+        }
+        for (T obj : placed) {
+            // Nothing is in the game yet, so switching the level adds or removes nothing.
+            obj.setDetailLevel(level, NOT_IN_GAME, NOT_IN_GAME);
+            obj.addToGame(addGameObject);
+        }
+        ChunkBitmap bitmap = prerenderStatics ? ChunkBitmap.bake(placed) : null;
+        if (bitmap != null) {
+            bitmap.addToGame(addGameObject);
+        }
+        LoadedChunk<T> loaded = new LoadedChunk<>(placed, bitmap, level);
+        if (level == DetailLevel.FAR) {
+            loaded.pausedStates = saved;
+            showImpostor(loaded, addGameObject);
+        }
+        loadedChunks.put(chunk, loaded);
+        measure(loaded);
+        if (pickupSystem != null) {
+            List<Pickup> pickups = new ArrayList<>();
+            for (T obj : placed) {
+                obj.collectPickups(pickups::add);
+            }
+            loaded.pickups = pickupSystem.register(pickups);
+        }
+        if (events != null) {
+            events.publishChunkLoaded(name, chunk);
+        }
+        if (event.shouldCommit()) {
+            event.scrollable = name;
+            event.chunkIndex = chunk;
+            event.objectCount = placed.size();
+            event.commit();
+        }
+        return loaded;
+    }
+
+    /*
+        * Switches every loaded chunk whose distance from the nearest viewer crossed a detail range to its new
+        * level of detail.
+        * @param addGameObject A BiConsumer to add game objects to the game.
+        * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    private void updateDetailLevels(BiConsumer<GameObject, Integer> addGameObject,
+                                    BiConsumer<GameObject, Integer> destroyGameObject) {
+        for (LoadedChunk<T> chunk : loadedChunks.values()) {
+            DetailLevel level = detailLevelAt(chunk.viewerDistance);
+            if (level == chunk.detailLevel) {
+                continue;
+            }
+            if (level == DetailLevel.FAR) {
+                chunk.pausedStates = captureStates(chunk);
+            } else if (chunk.detailLevel == DetailLevel.FAR) {
+                restoreStates(chunk.objects, chunk.pausedStates);
+                chunk.pausedStates = null;
+            }
+            for (T obj : chunk.objects) {
+                obj.setDetailLevel(level, addGameObject, destroyGameObject);
+            }
+            if (chunk.detailLevel == DetailLevel.FAR && chunk.impostor != null) {
+                chunk.impostor.restore();
+                chunk.impostor.destroy(destroyGameObject);
+            }
+            if (level == DetailLevel.FAR) {
+                showImpostor(chunk, addGameObject);
+            }
+            chunk.detailLevel = level;
+            measure(chunk);
+        }
+    }
+
+    /*
+        * Returns the level of detail of a chunk at the given distance, in chunks, from the nearest viewer.
+     */
+    private DetailLevel detailLevelAt(int viewerDistance) {
+        return viewerDistance <= nearRange ? DetailLevel.NEAR
+                : viewerDistance <= midRange ? DetailLevel.MID : DetailLevel.FAR;
+    }
+
+    /*
+        * Presents a far chunk by a silhouette of its static objects, baking it the first time only. A
+        * pre-rendered chunk is already a single image, so it gets none.
+        * @param chunk The chunk.
+        * @param addGameObject A BiConsumer to add game objects to the game.
+     */
+    private void showImpostor(LoadedChunk<T> chunk, BiConsumer<GameObject, Integer> addGameObject) {
+        if (chunk.bitmap != null) {
+            return;
+        }
+        if (chunk.impostor == null) {
+            chunk.impostor = ChunkBitmap.bakeSilhouette(chunk.objects);
+        } else {
+            chunk.impostor.hide();
+        }
+        if (chunk.impostor != null) {
+            chunk.impostor.addToGame(addGameObject);
+        }
+    }
+
+    /*
+        * Removes chunks of game objects that are no longer covered by any viewer window, up to the streaming
+        * budget; the rest stay loaded until a later update.
+        * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    private void removeChunks(BiConsumer<GameObject, Integer> destroyGameObject) {
+        for (Map.Entry<Integer, LoadedChunk<T>> entry : loadedChunks.entrySet()) {
+            if (entry.getValue().refCount == 0 && chunksToRemove.size() < maxUnloadsPerUpdate) {
+                chunksToRemove.add(entry.getKey());
+            }
+        }
+        for (int i = 0; i < chunksToRemove.size(); i++) {
+            ChunkUnloadedEvent event = new ChunkUnloadedEvent();
+            event.begin();
+            LoadedChunk<T> removed = loadedChunks.remove(chunksToRemove.get(i));
+            saveStates(chunksToRemove.get(i), captureStates(removed));
+            destroyChunk(removed, destroyGameObject);
+            if (events != null) {
+                events.publishChunkUnloaded(name, chunksToRemove.get(i));
+            }
+            if (event.shouldCommit()) {
+                event.scrollable = name;
+                event.chunkIndex = chunksToRemove.get(i);
+                event.objectCount = removed.objects.size();
+                event.commit();
             }
         }
+        chunksToRemove.clear();
     }
 
     /*
-        * Removes chunks of game objects that are outside the specified chunk range.
+        * Removes every object of a chunk from the game and unregisters its pickups.
+        * @param chunk The chunk.
         * @param destroyGameObject A BiConsumer to remove game objects from the game.
-        * @param minChunk The minimum chunk index to keep.
-        * @param maxChunk The maximum chunk index to keep.
-     */
-    private void removeChunks(BiConsumer<GameObject, Integer> destroyGameObject, int minChunk, int maxChunk) {
-        // Remove old chunks
-        Iterator<Map.Entry<Integer, List<T>>> it = loadedChunks.iterator();
-        while (it.hasNext()) {
-            Map.Entry<Integer, List<T>> entry = it.next();
-            int chunkIndex = entry.getKey();
-            if (chunkIndex < minChunk || chunkIndex > maxChunk) {
-                for (T obj : entry.getValue()) {
-                    obj.destroy(destroyGameObject);
+     */
+    private void destroyChunk(LoadedChunk<T> chunk, BiConsumer<GameObject, Integer> destroyGameObject) {
+        for (T obj : chunk.objects) {
+            obj.destroy(destroyGameObject);
+        }
+        if (chunk.bitmap != null) {
+            chunk.bitmap.destroy(destroyGameObject);
+        }
+        if (chunk.detailLevel == DetailLevel.FAR && chunk.impostor != null) {
+            chunk.impostor.destroy(destroyGameObject);
+        }
+        if (pickupSystem != null) {
+            pickupSystem.unregister(chunk.pickups);
+        }
+        loadedBytes -= chunk.bytes;
+    }
+
+    /*
+        * Measures the memory a loaded chunk's objects and images hold now, and updates the running total.
+     */
+    private void measure(LoadedChunk<T> chunk) {
+        long bytes = chunk.bitmap == null ? 0 : chunk.bitmap.retainedBytes();
+        if (chunk.impostor != null) {
+            bytes += chunk.impostor.retainedBytes();
+        }
+        for (int i = 0; i < chunk.objects.size(); i++) {
+            bytes += chunk.objects.get(i).retainedBytes();
+        }
+        loadedBytes += bytes - chunk.bytes;
+        chunk.bytes = bytes;
+    }
+
+    /*
+        * Captures the states of a chunk's objects at the current world time. A far chunk's objects were
+        * not simulated since they were paused, so their paused states are returned instead.
+        * @param chunk The chunk.
+        * @return The states, or null if none of the objects has any.
+     */
+    private SavedStates captureStates(LoadedChunk<T> chunk) {
+        if (chunk.pausedStates != null) {
+            return chunk.pausedStates;
+        }
+        Object[] states = null;
+        for (int i = 0; i < chunk.objects.size(); i++) {
+            Object state = chunk.objects.get(i).captureState();
+            if (state != null) {
+                if (states == null) {
+                    states = new Object[chunk.objects.size()];
                 }
-                it.remove();
+                states[i] = state;
             }
         }
+        return states == null ? null : new SavedStates(states, now());
+    }
+
+    /*
+        * Restores saved states on the objects of a chunk, advanced by the time that passed since they were
+        * captured. The objects are matched by their order of generation, which is deterministic.
+        * @param objects The objects of the chunk.
+        * @param saved The saved states, or null for none.
+     */
+    private void restoreStates(List<T> objects, SavedStates saved) {
+        if (saved == null || saved.states.length != objects.size()) {
+            return;
+        }
+        float elapsed = (float) (now() - saved.time);
+        for (int i = 0; i < objects.size(); i++) {
+            if (saved.states[i] != null) {
+                objects.get(i).restoreState(saved.states[i], elapsed);
+            }
+        }
+    }
+
+    /*
+        * Returns the current world time, or 0 without a clock.
+     */
+    private double now() {
+        return worldClock == null ? 0 : worldClock.now();
     }
-}
 
+    /*
+        * Keeps the captured states of a chunk being unloaded until it is generated again.
+        * @param chunk The index of the chunk.
+        * @param states The states, or null if there is nothing to keep.
+     */
+    private void saveStates(int chunk, SavedStates states) {
+        if (states == null) {
+            return;
+        }
+        SavedStates replaced = savedChunks.put(chunk, states);
+        savedBytes += states.bytes - (replaced == null ? 0 : replaced.bytes);
+        savedLastUsedNanos = System.nanoTime();
+    }
+
+    /*
+        * Removes and returns the saved states of a chunk being generated again.
+        * @param chunk The index of the chunk.
+        * @return The states, or null if none were kept.
+     */
+    private SavedStates takeSavedStates(int chunk) {
+        SavedStates states = savedChunks.remove(chunk);
+        if (states != null) {
+            savedBytes -= states.bytes;
+            savedLastUsedNanos = System.nanoTime();
+        }
+        return states;
+    }
+
+    /*
+        * Estimates the memory retained by saved states: the array, and each state as a primitive array or a
+        * small object.
+     */
+    private static long estimateBytes(Object[] states) {
+        long bytes = 64 + 8L * states.length;
+        for (Object state : states) {
+            if (state instanceof float[]) {
+                bytes += 16 + 4L * ((float[]) state).length;
+            } else if (state != null) {
+                bytes += 32;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String getName() {
+        return name + " saved states";
+    }
+
+    /**
+     * Returns the memory retained by the saved states of unloaded chunks.
+     * @return The retained memory, in bytes.
+     */
+    @Override
+    public long retainedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * Losing saved states resets the objects of a chunk to their generated state (e.g. eaten fruits grow
+     * back early): visible, but harmless.
+     * @return The relative cost of evicting a byte.
+     */
+    @Override
+    public float evictionCost() {
+        return 4;
+    }
+
+    @Override
+    public long lastUsedNanos() {
+        return savedLastUsedNanos;
+    }
+
+    /**
+     * Forgets the saved states of the chunks unloaded longest ago.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, in bytes.
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = 0;
+        Iterator<SavedStates> oldestFirst = savedChunks.values().iterator();
+        while (freed < bytes && oldestFirst.hasNext()) {
+            freed += oldestFirst.next().bytes;
+            oldestFirst.remove();
+        }
+        savedBytes -= freed;
+        return freed;
+    }
+}
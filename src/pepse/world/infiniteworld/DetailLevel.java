@@ -0,0 +1,15 @@
+package pepse.world.infiniteworld;
+
+/**
+ * The level of detail a loaded chunk is presented with, chosen by its distance (in chunks) from the
+ * nearest viewer.
+ * @author Aron Isaacs
+ */
+public enum DetailLevel {
+    /** Full detail: every object drawn individually and animated. */
+    NEAR,
+    /** Static detail: animations stop and decorative objects are merged into single images. */
+    MID,
+    /** Silhouette only: the chunk is drawn as flat single-colour impostors. */
+    FAR
+}
@@ -0,0 +1,84 @@
+package pepse.world.infiniteworld;
+
+import java.util.Arrays;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+
+/**
+ * The ground heights of a sliding range of block columns, in a ring of primitive arrays.
+ * The range is refilled on the game thread before it is read, evaluating only the columns that entered it,
+ * after which any number of threads may read it at once; the terrain's own noise caches are not safe to
+ * share between threads.
+ * @author Aron Isaacs
+ */
+public class GroundHeightCache {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final GroundHeightAt groundHeightAt;
+    private final int[] columns;
+    private final float[] heights;
+    private final int mask;
+    private int minColumn;
+    private int maxColumn = -1;
+
+    /**
+     * Constructs a cache of at least the given number of columns, rounded up to a power of two.
+     * @param groundHeightAt A function that provides the ground height at a given x-coordinate.
+     * @param capacity The number of columns the cache must hold.
+     */
+    public GroundHeightCache(GroundHeightAt groundHeightAt, int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.groundHeightAt = groundHeightAt;
+        this.columns = new int[size];
+        this.heights = new float[size];
+        this.mask = size - 1;
+        Arrays.fill(columns, EMPTY);
+    }
+
+    /**
+     * Makes the cache cover the columns spanning the given x-range, evaluating the ground height only of
+     * columns that were not covered before. The range must fit in the cache.
+     * @param minX The left end of the range.
+     * @param maxX The right end of the range.
+     */
+    public void cover(float minX, float maxX) {
+        minColumn = columnOf(minX);
+        maxColumn = Math.min(columnOf(maxX), minColumn + mask);
+        for (int column = minColumn; column <= maxColumn; column++) {
+            int slot = column & mask;
+            if (columns[slot] != column) {
+                heights[slot] = groundHeightAt.accept(column * GAME_BLOCK_SIZE);
+                columns[slot] = column;
+            }
+        }
+    }
+
+    /**
+     * Forgets every cached height, e.g. after the ground was edited, so the next {@link #cover(float, float)}
+     * evaluates the whole range again.
+     */
+    public void invalidate() {
+        Arrays.fill(columns, EMPTY);
+        maxColumn = minColumn - 1;
+    }
+
+    /**
+     * Returns the ground height of the column containing the given x-coordinate.
+     * @param x The x-coordinate.
+     * @return The ground height, or NaN if the column is outside the covered range.
+     */
+    public float heightAt(float x) {
+        int column = columnOf(x);
+        if (column < minColumn || column > maxColumn) {
+            return Float.NaN;
+        }
+        return heights[column & mask];
+    }
+
+    /*
+     * Returns the block column containing the given x-coordinate.
+     */
+    private static int columnOf(float x) {
+        return Math.floorDiv((int) Math.floor(x), GAME_BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,21 @@
+package pepse.world.infiniteworld;
+
+/**
+ * Determines how many chunks are kept loaded on each side of a viewer.
+ * "Before" is the side of smaller x-coordinates (left) and "after" the side of larger ones (right).
+ * The values are queried on every update, so implementations may change them over time.
+ * @author Aron Isaacs
+ */
+public interface LoadWindow {
+    /**
+     * Returns the number of chunks loaded to the left of a viewer's chunk.
+     * @return the number of chunks before the viewer.
+     */
+    int chunksBefore();
+
+    /**
+     * Returns the number of chunks loaded to the right of a viewer's chunk.
+     * @return the number of chunks after the viewer.
+     */
+    int chunksAfter();
+}
@@ -1,6 +1,10 @@
 package pepse.world.infiniteworld;
 
 import danogl.GameObject;
+import pepse.util.memory.MemoryBudget;
+import pepse.world.WorldClock;
+import pepse.world.events.WorldEvents;
+import pepse.world.pickups.PickupSystem;
 import java.util.List;
 import java.util.function.BiConsumer;
 import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
@@ -15,24 +19,36 @@ import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
  */
 public abstract class Scrollable<T extends ChunkLoadable> {
 
-    private static final int CHUNK_SIZE = GAME_BLOCK_SIZE * 8;
+    /** The width of a chunk, in pixels. */
+    public static final int CHUNK_SIZE = GAME_BLOCK_SIZE * 8;
     private static final int RANGE_BEFORE = 6;
     private static final int RANGE_AFTER = 6;
+    // Chunks up to this many chunks from a viewer are drawn in full detail.
+    private static final int NEAR_DETAIL_RANGE = 2;
+    // Chunks up to this many chunks from a viewer are drawn without animations; farther ones as silhouettes.
+    private static final int MID_DETAIL_RANGE = 4;
+    // The most chunks generated, and unloaded, per update, so big jumps are spread across frames.
+    private static final int MAX_CHUNK_LOADS_PER_UPDATE = 2;
+    private static final int MAX_CHUNK_UNLOADS_PER_UPDATE = 2;
 
     private final ChunkManager<T> chunkManager;
 
     /**
      * Constructs a Scrollable object with a ChunkManager to handle chunk loading and unloading.
-     * The ChunkManager is initialized with predefined chunk size and range parameters.
+     * The ChunkManager is initialized with predefined chunk size, range, level-of-detail and streaming
+     * budget parameters.
      * The createInRange method is used to generate the game objects within the specified chunk bounds.
      */
     public Scrollable() {
         this.chunkManager = new ChunkManager<>(
+                getClass().getSimpleName(),
                 CHUNK_SIZE,
                 RANGE_BEFORE,
                 RANGE_AFTER,
                 this::createInRange
         );
+        chunkManager.setDetailRanges(NEAR_DETAIL_RANGE, MID_DETAIL_RANGE);
+        chunkManager.setStreamingBudget(MAX_CHUNK_LOADS_PER_UPDATE, MAX_CHUNK_UNLOADS_PER_UPDATE);
     }
 
     /**
@@ -49,6 +65,172 @@ public abstract class Scrollable<T extends ChunkLoadable> {
         chunkManager.update(avatarX, addGameObject, destroyGameObject);
     }
 
+    /**
+     * Updates the loaded chunks based on the positions of several viewers (avatars, cameras...).
+     * The union of the windows around all viewers is kept loaded, and each chunk is generated only once
+     * regardless of how many viewers share it.
+     *
+     * @param viewerXs The x-coordinates of the viewers.
+     * @param viewerCount The number of valid entries in viewerXs.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    public final void updateAroundViewers(float[] viewerXs, int viewerCount,
+                                          BiConsumer<GameObject, Integer> addGameObject,
+                                          BiConsumer<GameObject, Integer> destroyGameObject) {
+        chunkManager.update(viewerXs, viewerCount, addGameObject, destroyGameObject);
+    }
+
+    /**
+     * Returns whether the chunk containing the given x-coordinate has been generated and added to the game.
+     *
+     * @param x The x-coordinate.
+     * @return true if the chunk is loaded.
+     */
+    public boolean isLoadedAt(float x) {
+        return chunkManager.isLoadedAt(x);
+    }
+
+    /**
+     * Regenerates the loaded chunk containing the given x-coordinate, so that a change to the content it is
+     * generated from (e.g. a terrain edit) shows.
+     *
+     * @param x The x-coordinate.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    public void reloadChunkAt(float x,
+                              BiConsumer<GameObject, Integer> addGameObject,
+                              BiConsumer<GameObject, Integer> destroyGameObject) {
+        chunkManager.reloadChunkAt(x, addGameObject, destroyGameObject);
+    }
+
+    /**
+     * Sets the window that determines how many chunks are loaded on each side of the viewers,
+     * replacing the default fixed range.
+     *
+     * @param loadWindow The load window to use.
+     * @see AdaptiveLoadWindow
+     */
+    public void setLoadWindow(LoadWindow loadWindow) {
+        chunkManager.setLoadWindow(loadWindow);
+    }
+
+    /**
+     * Sets the listener notified with the cost of every chunk generation.
+     *
+     * @param generationListener The listener, or null for none.
+     */
+    public void setGenerationListener(ChunkManager.GenerationListener generationListener) {
+        chunkManager.setGenerationListener(generationListener);
+    }
+
+    /**
+     * Sets the pickup system that the pickups of loaded chunks are registered with.
+     *
+     * @param pickupSystem The pickup system, or null for none.
+     */
+    public void setPickupSystem(PickupSystem pickupSystem) {
+        chunkManager.setPickupSystem(pickupSystem);
+    }
+
+    /**
+     * Sets the world clock that chunks set aside (unloaded or far away) measure elapsed time by, so that
+     * their objects catch up on it analytically when they come back instead of being simulated meanwhile.
+     *
+     * @param worldClock The world clock, or null for none.
+     * @see ChunkLoadable#captureState()
+     */
+    public void setWorldClock(WorldClock worldClock) {
+        chunkManager.setWorldClock(worldClock);
+    }
+
+    /**
+     * Sets the event bus the loading and unloading of chunks is published on, under the scrollable's class
+     * name.
+     *
+     * @param events The event bus, or null for none.
+     */
+    public void setEvents(WorldEvents events) {
+        chunkManager.setEvents(events);
+    }
+
+    /**
+     * Registers the memory this scrollable retains beyond its loaded chunks (e.g. the saved state of
+     * unloaded chunks) with a memory budget, which may evict it. The loaded chunks themselves are accounted
+     * for by the {@link AdaptiveLoadWindow} the scrollable is attached to.
+     *
+     * @param budget The memory budget.
+     */
+    public void registerMemory(MemoryBudget budget) {
+        budget.register(chunkManager);
+    }
+
+    /**
+     * Returns an estimate of the memory held by the loaded chunks, including their images.
+     *
+     * @return The memory held, in bytes.
+     * @see ChunkManager#loadedBytes()
+     */
+    public long loadedBytes() {
+        return chunkManager.loadedBytes();
+    }
+
+    /**
+     * Returns the memory held by the loaded chunks farther than the given distance from the nearest viewer.
+     *
+     * @param distance The distance, in chunks.
+     * @return The memory held, in bytes.
+     * @see ChunkManager#loadedBytesBeyond(int)
+     */
+    public long loadedBytesBeyond(int distance) {
+        return chunkManager.loadedBytesBeyond(distance);
+    }
+
+    /**
+     * Releases the images of the loaded chunks that are not presented right now.
+     *
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, in bytes.
+     * @see ChunkManager#dropUnusedImages(long)
+     */
+    public long dropUnusedImages(long bytes) {
+        return chunkManager.dropUnusedImages(bytes);
+    }
+
+    /**
+     * Passes the states of every chunk whose objects have any, loaded or not, e.g. to save them.
+     *
+     * @param visitor Receives the states of each chunk.
+     * @see ChunkManager#forEachChunkState(ChunkManager.StateVisitor)
+     */
+    public void forEachChunkState(ChunkManager.StateVisitor visitor) {
+        chunkManager.forEachChunkState(visitor);
+    }
+
+    /**
+     * Restores the states of a chunk's objects, e.g. from a saved game.
+     *
+     * @param chunkIndex The index of the chunk.
+     * @param capturedAt The world time the states were captured at.
+     * @param states The state of each object of the chunk.
+     * @see ChunkManager#restoreChunkStates(int, double, Object[])
+     */
+    public void restoreChunkStates(int chunkIndex, double capturedAt, Object[] states) {
+        chunkManager.restoreChunkStates(chunkIndex, capturedAt, states);
+    }
+
+    /**
+     * Sets whether static objects (objects that never change after creation) are pre-rendered into a single
+     * image per chunk when the chunk is loaded, keeping the objects only as colliders.
+     *
+     * @param prerenderStatics true to pre-render static objects of newly loaded chunks.
+     * @see ChunkBitmap
+     */
+    public void setPrerenderStatics(boolean prerenderStatics) {
+        chunkManager.setPrerenderStatics(prerenderStatics);
+    }
+
     /**
      * Creates a list of ChunkLoadable objects within the specified left and right bounds.
      * This method must be implemented by subclasses to define how game objects are created
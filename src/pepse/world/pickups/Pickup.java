@@ -0,0 +1,39 @@
+package pepse.world.pickups;
+
+import danogl.util.Vector2;
+import pepse.world.Avatar;
+import pepse.world.events.WorldEvents;
+
+/**
+ * An item the avatar collects by touching it, detected by the {@link PickupSystem} with a simple
+ * bounding-box test instead of physics collisions.
+ * The bounds of a pickup are read once, when it is registered, and must not change afterwards.
+ * @author Aron Isaacs
+ */
+public interface Pickup {
+    /**
+     * Returns the top-left corner of the pickup's bounding box.
+     * @return The top-left corner.
+     */
+    Vector2 getTopLeftCorner();
+
+    /**
+     * Returns the dimensions of the pickup's bounding box.
+     * @return The dimensions.
+     */
+    Vector2 getDimensions();
+
+    /**
+     * Returns whether the pickup can currently be collected.
+     * @return true if the pickup is available.
+     */
+    boolean isAvailable();
+
+    /**
+     * Called when an avatar touches the pickup while it is available. The pickup publishes what the avatar
+     * gains on the event bus instead of acting on the avatar directly.
+     * @param avatar The avatar collecting the pickup.
+     * @param events The event bus.
+     */
+    void pickUp(Avatar avatar, WorldEvents events);
+}
@@ -0,0 +1,110 @@
+package pepse.world.pickups;
+
+import danogl.util.Vector2;
+import pepse.world.Avatar;
+import pepse.world.events.WorldEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects avatars touching pickups without involving the physics engine.
+ * Pickups are registered in groups (normally one group per loaded chunk), each holding the bounding boxes
+ * of its pickups in primitive arrays together with the group's overall bounds. Every frame, only the
+ * avatar is tested, and only against the groups whose bounds it overlaps.
+ * @author Aron Isaacs
+ */
+public class PickupSystem {
+
+    /**
+     * A registered group of pickups, returned by {@link #register(List)} and used to unregister it.
+     */
+    public static final class Group {
+        private final Pickup[] pickups;
+        private final float[] minX, minY, maxX, maxY;
+        private float groupMinX = Float.MAX_VALUE, groupMinY = Float.MAX_VALUE;
+        private float groupMaxX = -Float.MAX_VALUE, groupMaxY = -Float.MAX_VALUE;
+
+        private Group(List<? extends Pickup> pickups) {
+            int count = pickups.size();
+            this.pickups = pickups.toArray(new Pickup[count]);
+            minX = new float[count];
+            minY = new float[count];
+            maxX = new float[count];
+            maxY = new float[count];
+            for (int i = 0; i < count; i++) {
+                Vector2 topLeft = this.pickups[i].getTopLeftCorner();
+                Vector2 dimensions = this.pickups[i].getDimensions();
+                minX[i] = topLeft.x();
+                minY[i] = topLeft.y();
+                maxX[i] = topLeft.x() + dimensions.x();
+                maxY[i] = topLeft.y() + dimensions.y();
+                groupMinX = Math.min(groupMinX, minX[i]);
+                groupMinY = Math.min(groupMinY, minY[i]);
+                groupMaxX = Math.max(groupMaxX, maxX[i]);
+                groupMaxY = Math.max(groupMaxY, maxY[i]);
+            }
+        }
+    }
+
+    private final List<Group> groups = new ArrayList<>();
+    private final WorldEvents events;
+
+    /**
+     * Constructs a pickup system.
+     * @param events The event bus pickups publish on when collected.
+     */
+    public PickupSystem(WorldEvents events) {
+        this.events = events;
+    }
+
+    /**
+     * Registers a group of pickups.
+     * @param pickups The pickups, whose bounds are read now.
+     * @return The registered group, or null if there were no pickups.
+     */
+    public Group register(List<? extends Pickup> pickups) {
+        if (pickups.isEmpty()) {
+            return null;
+        }
+        Group group = new Group(pickups);
+        groups.add(group);
+        return group;
+    }
+
+    /**
+     * Unregisters a group of pickups.
+     * @param group The group returned when registering, or null.
+     */
+    public void unregister(Group group) {
+        if (group != null) {
+            groups.remove(group);
+        }
+    }
+
+    /**
+     * Lets the given avatar collect every available pickup it touches.
+     * Called once per frame for every avatar.
+     * @param avatar The avatar.
+     */
+    public void update(Avatar avatar) {
+        Vector2 topLeft = avatar.getTopLeftCorner();
+        Vector2 dimensions = avatar.getDimensions();
+        float left = topLeft.x(), top = topLeft.y();
+        float right = left + dimensions.x(), bottom = top + dimensions.y();
+        for (int g = 0; g < groups.size(); g++) {
+            Group group = groups.get(g);
+            if (right < group.groupMinX || left > group.groupMaxX
+                    || bottom < group.groupMinY || top > group.groupMaxY) {
+                continue;
+            }
+            for (int i = 0; i < group.pickups.length; i++) {
+                if (right >= group.minX[i] && left <= group.maxX[i]
+                        && bottom >= group.minY[i] && top <= group.maxY[i]
+                        && group.pickups[i].isAvailable()) {
+                    group.pickups[i].pickUp(avatar, events);
+                }
+            }
+        }
+    }
+}
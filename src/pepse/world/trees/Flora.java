@@ -1,6 +1,7 @@
 package pepse.world.trees;
 
 import danogl.util.Vector2;
+import pepse.world.WorldArchive;
 import pepse.world.infiniteworld.GroundHeightAt;
 import pepse.world.infiniteworld.Scrollable;
 import java.util.*;
@@ -9,7 +10,8 @@ import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
 
 /**
  * Manages the creation and placement of trees in the game world.
- * Trees are generated based on a pseudo-random distribution and aligned to the ground height.
+ * Trees are generated based on a pseudo-random distribution, with a density that may vary along the world
+ * (e.g. by biome), and aligned to the ground height.
  * The class extends Scrollable to handle dynamic loading and unloading of trees as the avatar moves.
  *
  * @author Aron Isaacs
@@ -19,6 +21,8 @@ public class Flora extends Scrollable<Tree> {
     private static final float CHANCE_FOR_TREE = 0.15f;
     private final int seed;
     private final GroundHeightAt groundHeightAt;
+    private final TreeChanceAt treeChanceAt;
+    private WorldArchive archive;
 
 
     /**
@@ -29,8 +33,19 @@ public class Flora extends Scrollable<Tree> {
      * @param groundHeightAt a function that provides ground height at a given x-coordinate.
      */
     public Flora(int seed, GroundHeightAt groundHeightAt) {
+        this(seed, groundHeightAt, x -> CHANCE_FOR_TREE);
+    }
+
+    /**
+     * Creates a Flora instance whose tree density varies along the world.
+     * @param seed the seed for pseudo-random number generation.
+     * @param groundHeightAt a function that provides ground height at a given x-coordinate.
+     * @param treeChanceAt a function that provides the probability of a tree at a given x-coordinate.
+     */
+    public Flora(int seed, GroundHeightAt groundHeightAt, TreeChanceAt treeChanceAt) {
         this.seed = seed;
         this.groundHeightAt = groundHeightAt;
+        this.treeChanceAt = treeChanceAt;
     }
 
     /**
@@ -47,14 +62,35 @@ public class Flora extends Scrollable<Tree> {
         int end = (maxX / GAME_BLOCK_SIZE) * GAME_BLOCK_SIZE;
 
         for (int x = start; x <= end; x += GAME_BLOCK_SIZE) {
-            float y = pseudoRandomFloatAt(x);
-            if (y < CHANCE_FOR_TREE) {
+            if (hasTreeAt(x)) {
                 newTrees.add(placeTreeAt((float) x));
             }
         }
         return newTrees;
     }
 
+    /**
+     * Returns whether a tree grows in the column at the specified x-coordinate.
+     * The answer is deterministic for a given seed, so it may be queried without creating any trees.
+     * @param x the x-coordinate of the column, aligned to the block grid.
+     * @return true if a tree grows in the column.
+     */
+    public boolean hasTreeAt(int x) {
+        if (archive != null && archive.contains(x)) {
+            return archive.hasTreeAt(x);
+        }
+        return pseudoRandomFloatAt(x) < treeChanceAt.accept(x);
+    }
+
+    /**
+     * Makes tree placement read from a pre-generated world archive wherever the archive covers,
+     * instead of evaluating the tree density.
+     * @param archive the archive, or null to always generate.
+     */
+    public void setArchive(WorldArchive archive) {
+        this.archive = archive;
+    }
+
 
     /*
      * Places a tree at the specified x-coordinate.
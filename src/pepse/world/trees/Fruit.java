@@ -1,27 +1,39 @@
 package pepse.world.trees;
 
 import danogl.GameObject;
-import danogl.collisions.Collision;
-import danogl.components.ScheduledTask;
-import danogl.gui.rendering.OvalRenderable;
+import danogl.collisions.Layer;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.world.Avatar;
+import pepse.world.daynight.Palette;
+import pepse.world.events.WorldEvents;
+import pepse.world.pickups.Pickup;
 import java.awt.*;
 
 import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
 
 /**
  * Represents a fruit in the game that can be collected by the avatar to gain energy.
- * The fruit respawns after a certain period once collected.
+ * The fruit respawns after a certain period once collected, counted down while the fruit is in the game;
+ * the remaining time is part of its tree's state while the tree is set aside.
+ * Fruits take no part in physics collisions; touching them is detected by the pickup system.
+ * @see pepse.world.pickups.PickupSystem
  * @author Aron Isaacs
  */
-public class Fruit extends GameObject {
+public class Fruit extends GameObject implements Pickup {
+    /** The layer fruits are added to: drawn over the leaves, and not colliding with anything. */
+    public static final int LAYER = Layer.BACKGROUND;
+
     private static final Vector2 FRUIT_SIZE = new Vector2(GAME_BLOCK_SIZE, GAME_BLOCK_SIZE);
-    private static final Color FRUIT_COLOR = new Color(255, 69, 0);
-    private static final float RESPAWN_TIME_SECONDS = 15f;
-    private static final int ENERGY_VALUE = 10;
-    private static final Renderable FRUIT_RENDERABLE = new OvalRenderable(FRUIT_COLOR);
+    /** The colour of fruits. */
+    public static final Color FRUIT_COLOR = new Color(255, 69, 0);
+    /** The time an eaten fruit takes to grow back, in seconds. */
+    public static final float RESPAWN_TIME_SECONDS = 15f;
+    /** The energy an avatar gains by eating a fruit. */
+    public static final int ENERGY_VALUE = 10;
+    private static final Renderable FRUIT_RENDERABLE = Palette.oval(FRUIT_COLOR);
+
+    private float respawnIn;
 
     /**
      * Constructs a Fruit object at the specified position.
@@ -33,24 +45,65 @@ public class Fruit extends GameObject {
     }
 
     /**
-     * Handles collision events with other game objects.
-     * If the colliding object is an Avatar, the avatar gains energy and the fruit disappears,
-     * then respawns after a set time.
-     * @param other The other game object involved in the collision.
-     * @param collision Information about the collision event.
+     * Fruits never take part in physics collisions.
+     * @param other The other game object.
+     * @return false.
+     */
+    @Override
+    public boolean shouldCollideWith(GameObject other) {
+        return false;
+    }
+
+    /**
+     * Returns whether the fruit is on the tree (not eaten and waiting to respawn).
+     * @return true if the fruit can be eaten.
      */
     @Override
-    public void onCollisionEnter(GameObject other, Collision collision) {
-        if (renderer(). getRenderable() == null) return;
-
-        if (other instanceof Avatar avatar) {
-            avatar.gainEnergy(ENERGY_VALUE);
-            renderer(). setRenderable(null);
-            // Schedule respawn
-            new ScheduledTask(this, RESPAWN_TIME_SECONDS, false,
-                    () -> renderer().setRenderable(FRUIT_RENDERABLE));
+    public boolean isAvailable() {
+        return renderer().getRenderable() != null;
+    }
+
+    /**
+     * The fruit is eaten: it publishes its energy for the avatar and disappears, then respawns after a set
+     * time. If the event bus is full the fruit stays on the tree, so its energy is not lost; the avatar eats
+     * it on a later frame while still touching it.
+     * @param avatar The avatar eating the fruit.
+     * @param events The event bus.
+     */
+    @Override
+    public void pickUp(Avatar avatar, WorldEvents events) {
+        Vector2 center = getCenter();
+        if (events.publishFruitEaten(avatar, center.x(), center.y(), ENERGY_VALUE)) {
+            setRespawnIn(RESPAWN_TIME_SECONDS);
         }
     }
-}
 
+    /**
+     * Counts down to the respawn of an eaten fruit.
+     * @param deltaTime The time, in seconds, since the last update.
+     */
+    @Override
+    public void update(float deltaTime) {
+        super.update(deltaTime);
+        if (respawnIn > 0) {
+            setRespawnIn(respawnIn - deltaTime);
+        }
+    }
 
+    /**
+     * Returns the time left until an eaten fruit respawns.
+     * @return The time, in seconds, or 0 if the fruit is on the tree.
+     */
+    public float getRespawnIn() {
+        return respawnIn;
+    }
+
+    /**
+     * Sets the time left until the fruit respawns; the fruit is hidden until then.
+     * @param seconds The time, in seconds; 0 or less puts the fruit back on the tree.
+     */
+    public void setRespawnIn(float seconds) {
+        respawnIn = Math.max(0, seconds);
+        renderer().setRenderable(respawnIn > 0 ? null : FRUIT_RENDERABLE);
+    }
+}
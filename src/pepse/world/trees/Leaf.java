@@ -2,8 +2,9 @@ package pepse.world.trees;
 
 import danogl.GameObject;
 import danogl.components.Transition;
-import danogl.gui.rendering.RectangleRenderable;
+import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
 import java.awt.*;
 import java.util.Random;
 
@@ -16,7 +17,9 @@ import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
  */
 public class Leaf {
     private static final Vector2 LEAF_SIZE = new Vector2(GAME_BLOCK_SIZE, GAME_BLOCK_SIZE);
-    private static final Color LEAF_COLOR = new Color(34, 139, 34);
+    /** The colour of leaves. */
+    public static final Color LEAF_COLOR = new Color(34, 139, 34);
+    private static final Renderable LEAF_RENDERABLE = Palette.rectangle(LEAF_COLOR);
     private static final float SWAY_ANGLE = 5f; // degrees
     private static final float SCALE_VARIATION = 0.2f;
     private static final float SWAY_DURATION = 1.5f; // seconds
@@ -27,7 +30,7 @@ public class Leaf {
      * @return The created leaf GameObject.
      */
     public static GameObject create(Vector2 position) {
-        GameObject leaf = new GameObject(position, LEAF_SIZE, new RectangleRenderable(LEAF_COLOR));
+        GameObject leaf = new GameObject(position, LEAF_SIZE, LEAF_RENDERABLE);
         leaf.setTag("leaf");
         addSwayingAnimation(leaf);
         return leaf;
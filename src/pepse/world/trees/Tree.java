@@ -4,11 +4,14 @@ package pepse.world.trees;
 import danogl.GameObject;
 import danogl.collisions.Layer;
 import danogl.util.Vector2;
+import pepse.world.infiniteworld.ChunkBitmap;
 import pepse.world.infiniteworld.ChunkLoadable;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import pepse.world.infiniteworld.DetailLevel;
+import pepse.world.pickups.Pickup;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
 
@@ -16,22 +19,20 @@ import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
  * Represents a tree in the game world, consisting of a trunk, leaves, and fruits.
  * The tree is generated with a random height and foliage distribution.
  * Implements ChunkLoadable to allow for dynamic loading and unloading in an infinite world.
+ * Far from the viewers, the swaying leaves are replaced by a single static image of the foliage, and
+ * farther still by a flat silhouette without fruits.
  * @author Aron Isaacs
  */
 public class Tree implements ChunkLoadable {
-    private static final int TREE_WIDTH = GAME_BLOCK_SIZE;
-    private static final int TRUNK_HEIGHT_MIN = 4;
-    private static final int TRUNK_HEIGHT_MAX = 8;
-    private static final int FOLIAGE_WIDTH_BLOCKS = 5;
-    private static final int FOLIAGE_HEIGHT_BLOCKS = 6;
-    private static final float LEAF_RATIO = 0.7f;
-    private static final float FRUIT_RATIO = 0.2f;
-
+    private static final int TREE_WIDTH = TreeLayout.CELL_SIZE;
 
     private final GameObject trunk;
-    private final Set<GameObject> leaves;
-    private final Set<Fruit> fruits;
-    private final Random random;
+    private final List<GameObject> leaves;
+    private final List<Fruit> fruits;
+    private DetailLevel detailLevel = DetailLevel.NEAR;
+    // Created lazily, the first time the tree is presented at the matching level of detail.
+    private GameObject mergedFoliage;
+    private GameObject foliageSilhouette;
 
 
     /**
@@ -40,35 +41,33 @@ public class Tree implements ChunkLoadable {
      * @param position The position to place the base of the tree in the game world.
      */
     public Tree(Vector2 position) {
-
-        random = new Random((long) position.x() + (long) position.y() * 31);
-        int trunkHeightBlocks = TRUNK_HEIGHT_MIN + random.nextInt(TRUNK_HEIGHT_MAX - TRUNK_HEIGHT_MIN + 1);
-        int trunkHeight = trunkHeightBlocks * TREE_WIDTH;
+        TreeLayout layout = new TreeLayout(position.x(), position.y());
+        int trunkHeight = layout.getTrunkHeight();
         this.trunk = Trunk.create(position.add(new Vector2(0, -trunkHeight)), new Vector2(TREE_WIDTH, trunkHeight));
-        this.leaves = new HashSet<>();
-        this.fruits = new HashSet<>();
-        int startX = (int) position.x() - (FOLIAGE_WIDTH_BLOCKS / 2) * TREE_WIDTH;
-        int startY = (int) position.y() - trunkHeight - (FOLIAGE_HEIGHT_BLOCKS - 1) * TREE_WIDTH;
+        this.leaves = new ArrayList<>();
+        this.fruits = new ArrayList<>();
+        int startX = layout.getFoliageLeft();
+        int startY = layout.getFoliageTop();
         // Generate tree foliage
-        for (int i = 0; i < FOLIAGE_WIDTH_BLOCKS; i++) {
-            for (int j = 0; j < FOLIAGE_HEIGHT_BLOCKS; j++) {
-                makeTreeFoliage(startX + i * TREE_WIDTH, startY + j * TREE_WIDTH);
+        for (int i = 0; i < TreeLayout.FOLIAGE_WIDTH_BLOCKS; i++) {
+            for (int j = 0; j < TreeLayout.FOLIAGE_HEIGHT_BLOCKS; j++) {
+                makeTreeFoliage(layout.foliageAt(i, j), startX + i * TREE_WIDTH, startY + j * TREE_WIDTH);
             }
         }
     }
 
-    /* Generates foliage (leaves or fruits) at the specified coordinates based on predefined ratios.
+    /* Creates the foliage object (leaf or fruit) of one cell of the tree's layout.
+     * @param cell The content of the cell.
      * @param x The x-coordinate for the foliage placement.
      * @param y The y-coordinate for the foliage placement.
      */
-    private void makeTreeFoliage(float x, float y) {
-        float choice = random.nextFloat(1); // 0: leaf, 1: fruit, 2: nothing
+    private void makeTreeFoliage(byte cell, float x, float y) {
         Vector2 objPos = new Vector2(x, y);
 
-        if (choice < LEAF_RATIO) {
+        if (cell == TreeLayout.LEAF) {
             GameObject leaf = Leaf.create(objPos);
             this.leaves.add(leaf);
-        } else if (choice < LEAF_RATIO + FRUIT_RATIO) {
+        } else if (cell == TreeLayout.FRUIT) {
             Fruit fruit = new Fruit(objPos);
             this.fruits.add(fruit);
         }
@@ -81,12 +80,7 @@ public class Tree implements ChunkLoadable {
     @Override
     public void addToGame(BiConsumer<GameObject, Integer> addObject) {
         addObject.accept(trunk, Layer.STATIC_OBJECTS);
-        for (GameObject leaf : leaves) {
-            addObject.accept(leaf, Layer.BACKGROUND);
-        }
-        for (Fruit fruit : fruits) {
-            addObject.accept(fruit, Layer.STATIC_OBJECTS);
-        }
+        addFoliage(addObject);
     }
 
     /**
@@ -96,11 +90,165 @@ public class Tree implements ChunkLoadable {
     @Override
     public void destroy(BiConsumer<GameObject, Integer> removeObject) {
         removeObject.accept(trunk, Layer.STATIC_OBJECTS);
-        for (GameObject leaf : leaves) {
-            removeObject.accept(leaf, Layer.BACKGROUND);
+        removeFoliage(removeObject);
+    }
+
+    /**
+     * Switches the foliage between swaying leaves (near), a single static image of the leaves (mid)
+     * and a flat silhouette without fruits (far). The trunk is left to the chunk's static handling.
+     * @param level The new level of detail.
+     * @param addObject A BiConsumer to add game objects to the game.
+     * @param removeObject A BiConsumer to remove game objects from the game.
+     */
+    @Override
+    public void setDetailLevel(DetailLevel level,
+                               BiConsumer<GameObject, Integer> addObject,
+                               BiConsumer<GameObject, Integer> removeObject) {
+        if (level == detailLevel) {
+            return;
+        }
+        removeFoliage(removeObject);
+        detailLevel = level;
+        addFoliage(addObject);
+    }
+
+    /* Adds the foliage objects matching the current level of detail to the game.
+     * @param addObject A BiConsumer to add game objects to the game.
+     */
+    private void addFoliage(BiConsumer<GameObject, Integer> addObject) {
+        switch (detailLevel) {
+            case NEAR:
+                for (GameObject leaf : leaves) {
+                    addObject.accept(leaf, Layer.BACKGROUND);
+                }
+                break;
+            case MID:
+                if (mergedFoliage == null && !leaves.isEmpty()) {
+                    mergedFoliage = ChunkBitmap.flatten(leaves, null);
+                }
+                if (mergedFoliage != null) {
+                    addObject.accept(mergedFoliage, Layer.BACKGROUND);
+                }
+                break;
+            case FAR:
+                if (foliageSilhouette == null && !leaves.isEmpty()) {
+                    foliageSilhouette = ChunkBitmap.flatten(leaves, ChunkBitmap.SILHOUETTE_COLOR);
+                }
+                if (foliageSilhouette != null) {
+                    addObject.accept(foliageSilhouette, Layer.BACKGROUND);
+                }
+                return;
         }
         for (Fruit fruit : fruits) {
-            removeObject.accept(fruit, Layer.STATIC_OBJECTS);
+            addObject.accept(fruit, Fruit.LAYER);
+        }
+    }
+
+    /* Removes the foliage objects matching the current level of detail from the game.
+     * @param removeObject A BiConsumer to remove game objects from the game.
+     */
+    private void removeFoliage(BiConsumer<GameObject, Integer> removeObject) {
+        switch (detailLevel) {
+            case NEAR:
+                for (GameObject leaf : leaves) {
+                    removeObject.accept(leaf, Layer.BACKGROUND);
+                }
+                break;
+            case MID:
+                if (mergedFoliage != null) {
+                    removeObject.accept(mergedFoliage, Layer.BACKGROUND);
+                }
+                break;
+            case FAR:
+                if (foliageSilhouette != null) {
+                    removeObject.accept(foliageSilhouette, Layer.BACKGROUND);
+                }
+                return;
+        }
+        for (Fruit fruit : fruits) {
+            removeObject.accept(fruit, Fruit.LAYER);
+        }
+    }
+
+    /**
+     * The trunk, leaves and fruits, and the foliage images baked so far.
+     * @return The retained memory, in bytes.
+     */
+    @Override
+    public long retainedBytes() {
+        return (1 + leaves.size() + fruits.size()) * GAME_OBJECT_BYTES
+                + ChunkBitmap.imageBytes(mergedFoliage) + ChunkBitmap.imageBytes(foliageSilhouette);
+    }
+
+    /**
+     * Forgets the merged foliage unless the tree is mid-range, and the silhouette unless it is far.
+     * @return The memory freed, in bytes.
+     */
+    @Override
+    public long dropUnusedImages() {
+        long freed = 0;
+        if (detailLevel != DetailLevel.MID && mergedFoliage != null) {
+            freed += ChunkBitmap.imageBytes(mergedFoliage);
+            mergedFoliage = null;
+        }
+        if (detailLevel != DetailLevel.FAR && foliageSilhouette != null) {
+            freed += ChunkBitmap.imageBytes(foliageSilhouette);
+            foliageSilhouette = null;
+        }
+        return freed;
+    }
+
+    /**
+     * The trunk never changes after creation, so it may be pre-rendered; leaves sway and fruits
+     * disappear when eaten, so they are drawn individually.
+     * @param collector A Consumer receiving the static game objects.
+     */
+    @Override
+    public void collectStaticObjects(Consumer<GameObject> collector) {
+        collector.accept(trunk);
+    }
+
+    /**
+     * The fruits are collected by touching them.
+     * @param collector A Consumer receiving the pickups.
+     */
+    @Override
+    public void collectPickups(Consumer<Pickup> collector) {
+        for (Fruit fruit : fruits) {
+            collector.accept(fruit);
+        }
+    }
+
+    /**
+     * The time left until each eaten fruit respawns, by fruit; null if every fruit is on the tree.
+     * @return The fruits' respawn times, or null.
+     */
+    @Override
+    public Object captureState() {
+        float[] respawnTimes = null;
+        for (int i = 0; i < fruits.size(); i++) {
+            float respawnIn = fruits.get(i).getRespawnIn();
+            if (respawnIn > 0) {
+                if (respawnTimes == null) {
+                    respawnTimes = new float[fruits.size()];
+                }
+                respawnTimes[i] = respawnIn;
+            }
+        }
+        return respawnTimes;
+    }
+
+    /**
+     * Eaten fruits continue waiting to respawn for the time that remained, less the time that passed;
+     * fruits whose time ran out meanwhile are back on the tree.
+     * @param state The fruits' respawn times, as captured.
+     * @param elapsedSeconds The world time, in seconds, that passed since the state was captured.
+     */
+    @Override
+    public void restoreState(Object state, float elapsedSeconds) {
+        float[] respawnTimes = (float[]) state;
+        for (int i = 0; i < fruits.size() && i < respawnTimes.length; i++) {
+            fruits.get(i).setRespawnIn(respawnTimes[i] - elapsedSeconds);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,10 @@
+package pepse.world.trees;
+
+/**
+ * A functional interface representing a method to determine the probability of a tree growing at a given
+ * x-coordinate.
+ */
+@FunctionalInterface
+public interface TreeChanceAt {
+    float accept(int x);
+}
@@ -0,0 +1,91 @@
+package pepse.world.trees;
+
+import java.util.Random;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+
+/**
+ * The shape of a tree: its trunk height and which cells of its foliage hold a leaf or a fruit.
+ * The layout is a pure function of the tree's position, so it can be computed without creating the tree's
+ * game objects (e.g. for maps and image exports), and always matches the tree the game creates there.
+ * @author Aron Isaacs
+ */
+public class TreeLayout {
+    /** The width of a trunk, and of every foliage cell, in pixels. */
+    public static final int CELL_SIZE = GAME_BLOCK_SIZE;
+    /** The width of the foliage, in cells, centred on the trunk. */
+    public static final int FOLIAGE_WIDTH_BLOCKS = 5;
+    /** The height of the foliage, in cells; its bottom row is level with the top of the trunk. */
+    public static final int FOLIAGE_HEIGHT_BLOCKS = 6;
+    /** A foliage cell left empty. */
+    public static final byte EMPTY = 0;
+    /** A foliage cell holding a leaf. */
+    public static final byte LEAF = 1;
+    /** A foliage cell holding a fruit. */
+    public static final byte FRUIT = 2;
+
+    private static final int TRUNK_HEIGHT_MIN = 4;
+    private static final int TRUNK_HEIGHT_MAX = 8;
+    private static final float LEAF_RATIO = 0.7f;
+    private static final float FRUIT_RATIO = 0.2f;
+
+    private final float x;
+    private final float y;
+    private final int trunkHeightBlocks;
+    // Column-major: cell (i, j) is at index i * FOLIAGE_HEIGHT_BLOCKS + j.
+    private final byte[] foliage = new byte[FOLIAGE_WIDTH_BLOCKS * FOLIAGE_HEIGHT_BLOCKS];
+
+    /**
+     * Computes the layout of the tree growing at the given position.
+     * @param x The x-coordinate of the base of the trunk.
+     * @param y The y-coordinate of the base of the trunk (the ground height).
+     */
+    public TreeLayout(float x, float y) {
+        this.x = x;
+        this.y = y;
+        Random random = new Random((long) x + (long) y * 31);
+        trunkHeightBlocks = TRUNK_HEIGHT_MIN + random.nextInt(TRUNK_HEIGHT_MAX - TRUNK_HEIGHT_MIN + 1);
+        for (int i = 0; i < foliage.length; i++) {
+            float choice = random.nextFloat(1);
+            if (choice < LEAF_RATIO) {
+                foliage[i] = LEAF;
+            } else if (choice < LEAF_RATIO + FRUIT_RATIO) {
+                foliage[i] = FRUIT;
+            }
+        }
+    }
+
+    /**
+     * Returns the height of the trunk.
+     * @return The trunk height, in pixels.
+     */
+    public int getTrunkHeight() {
+        return trunkHeightBlocks * CELL_SIZE;
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of the foliage.
+     * @return The left edge of the foliage's first column of cells.
+     */
+    public int getFoliageLeft() {
+        return (int) x - (FOLIAGE_WIDTH_BLOCKS / 2) * CELL_SIZE;
+    }
+
+    /**
+     * Returns the y-coordinate of the top edge of the foliage.
+     * @return The top edge of the foliage's first row of cells.
+     */
+    public int getFoliageTop() {
+        return (int) y - getTrunkHeight() - (FOLIAGE_HEIGHT_BLOCKS - 1) * CELL_SIZE;
+    }
+
+    /**
+     * Returns the content of a foliage cell.
+     * @param i The column of the cell, from the left.
+     * @param j The row of the cell, from the top.
+     * @return {@link #EMPTY}, {@link #LEAF} or {@link #FRUIT}.
+     */
+    public byte foliageAt(int i, int j) {
+        return foliage[i * FOLIAGE_HEIGHT_BLOCKS + j];
+    }
+}
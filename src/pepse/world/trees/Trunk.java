@@ -2,8 +2,9 @@ package pepse.world.trees;
 
 import danogl.GameObject;
 import danogl.components.GameObjectPhysics;
-import danogl.gui.rendering.RectangleRenderable;
+import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
 import java.awt.*;
 
 /**
@@ -12,7 +13,9 @@ import java.awt.*;
  * @author Aron Isaacs
  */
 public class Trunk {
-    private static final Color TRUNK_COLOR = new Color(102, 51, 0);
+    /** The colour of tree trunks. */
+    public static final Color TRUNK_COLOR = new Color(102, 51, 0);
+    private static final Renderable TRUNK_RENDERABLE = Palette.rectangle(TRUNK_COLOR);
 
     /**
      * Creates a trunk GameObject at the specified position with the given dimensions.
@@ -22,7 +25,7 @@ public class Trunk {
      * @return The created trunk GameObject.
      */
     public static GameObject create(Vector2 position, Vector2 dimensions) {
-        GameObject trunk = new GameObject(position, dimensions, new RectangleRenderable(TRUNK_COLOR));
+        GameObject trunk = new GameObject(position, dimensions, TRUNK_RENDERABLE);
         trunk.physics().preventIntersectionsFromDirection(Vector2.ZERO);
         trunk.physics().setMass(GameObjectPhysics.IMMOVABLE_MASS);
         trunk.setTag("trunk");
@@ -0,0 +1,253 @@
+package pepse.world.water;
+
+import pepse.util.memory.MemoryBudget;
+import pepse.util.memory.MemoryConsumer;
+import pepse.world.infiniteworld.GroundHeightAt;
+import pepse.world.infiniteworld.Scrollable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * Flowing water, standing in the dips of the terrain and fed by springs.
+ * Water is simulated as a cellular automaton over block columns: at a fixed tick rate, every column
+ * exchanges water with its neighbours according to the difference in their water surface heights, and
+ * shallow films of water evaporate. Each loaded chunk keeps its columns in a {@link WaterChunk}; on every
+ * tick the chunks exchange their edge columns (halos) and are then stepped, in parallel when many are loaded.
+ * Chunks far from the viewers are frozen as they are, and unloaded chunks keep their water until they are
+ * loaded again. When blocks are dug or placed, the columns move onto the new ground: placed blocks push the
+ * water out, and dug pits fill from the water around them.
+ * @author Aron Isaacs
+ */
+public class Water extends Scrollable<WaterChunk> implements MemoryConsumer {
+    /** Water shallower than this, in pixels, evaporates; pools do not, thin films spreading out do. */
+    static final float SHALLOW_DEPTH = 3;
+    /** The water lost by every shallow column per tick, in pixels. */
+    static final float EVAPORATION = 0.05f;
+
+    private static final float TICK_SECONDS = 1 / 20f;
+    // Ticks beyond this many per update are dropped, so a slow frame does not snowball.
+    private static final int MAX_TICKS_PER_UPDATE = 4;
+    private static final float SPRING_CHANCE = 0.02f;
+    private static final float SPRING_RATE = 0.6f;
+    private static final Consumer<WaterChunk> STEP = WaterChunk::step;
+    // Below this many simulated chunks, a tick steps them on the calling thread only: a chunk is a handful of
+    // columns, so forking the common pool costs more than it saves for a normal load window.
+    private static final int PARALLEL_THRESHOLD = 64;
+    // The memory retained by the frozen depths and ground heights of one chunk, with its map entry.
+    private static final long FROZEN_CHUNK_BYTES = 96 + Float.BYTES * 2 * WaterChunk.CELLS;
+
+    private final int seed;
+    private final GroundHeightAt groundHeightAt;
+    // The loaded chunks by chunk index, and the depths of chunks that were unloaded with water in them,
+    // followed by the ground heights the water stood on.
+    private final Map<Integer, WaterChunk> loaded = new HashMap<>();
+    private final Map<Integer, float[]> frozen = new LinkedHashMap<>();
+    private long frozenLastUsedNanos = System.nanoTime();
+    // Reused between ticks to collect the chunks being simulated.
+    private WaterChunk[] active = new WaterChunk[16];
+    private float accumulator;
+
+    /**
+     * Creates the water of a world.
+     * @param seed the world seed, which determines where springs are.
+     * @param groundHeightAt a function that provides the height of the surface at a given x-coordinate,
+     *                       placed and dug blocks included.
+     */
+    public Water(int seed, GroundHeightAt groundHeightAt) {
+        this.seed = seed;
+        this.groundHeightAt = groundHeightAt;
+    }
+
+    /**
+     * Creates the water of the chunk starting at the given left bound. A chunk seen before gets its
+     * frozen water back, moved onto the ground as it is now; a new chunk starts with its dips filled up to
+     * their lower rim.
+     * @see Scrollable#createInRange(int, int)
+     * @param minX The left boundary of the chunk.
+     * @param maxX The right boundary of the chunk.
+     * @return The water of the chunk.
+     */
+    @Override
+    protected List<WaterChunk> createInRange(int minX, int maxX) {
+        int chunkIndex = Math.floorDiv(minX, CHUNK_SIZE);
+        int left = chunkIndex * CHUNK_SIZE;
+        float[] groundHeights = new float[WaterChunk.CELLS];
+        float[] springs = new float[WaterChunk.CELLS];
+        for (int i = 0; i < WaterChunk.CELLS; i++) {
+            int x = left + i * GAME_BLOCK_SIZE;
+            groundHeights[i] = groundHeightAt.accept(x);
+            springs[i] = hasSpringAt(x) ? SPRING_RATE : 0;
+        }
+        float[] depths = new float[WaterChunk.CELLS];
+        float[] state = frozen.remove(chunkIndex);
+        if (state != null) {
+            frozenLastUsedNanos = System.nanoTime();
+            for (int i = 0; i < WaterChunk.CELLS; i++) {
+                depths[i] = WaterChunk.depthOnGround(state[WaterChunk.CELLS + i], state[i], groundHeights[i]);
+            }
+        } else {
+            for (int i = 0; i < WaterChunk.CELLS; i++) {
+                int x = left + i * GAME_BLOCK_SIZE;
+                float lowerRim = Math.max(groundHeightAt.accept(x - GAME_BLOCK_SIZE),
+                        groundHeightAt.accept(x + GAME_BLOCK_SIZE));
+                depths[i] = Math.min(WaterChunk.MAX_DEPTH, Math.max(0, groundHeights[i] - lowerRim));
+            }
+        }
+        return Collections.singletonList(new WaterChunk(this, chunkIndex, groundHeights, depths, springs));
+    }
+
+    /**
+     * Advances the simulation by the given time, in whole ticks.
+     * @param deltaTime The time, in seconds, since the last update.
+     */
+    public void update(float deltaTime) {
+        accumulator = Math.min(accumulator + deltaTime, MAX_TICKS_PER_UPDATE * TICK_SECONDS);
+        while (accumulator >= TICK_SECONDS) {
+            accumulator -= TICK_SECONDS;
+            tick();
+        }
+    }
+
+    /**
+     * Moves the water of the loaded chunks onto the ground after blocks were dug or placed. The water of
+     * unloaded chunks is moved when they are loaded again.
+     */
+    public void groundChanged() {
+        float[] groundHeights = new float[WaterChunk.CELLS];
+        for (WaterChunk chunk : loaded.values()) {
+            int left = chunk.getChunkIndex() * CHUNK_SIZE;
+            for (int i = 0; i < WaterChunk.CELLS; i++) {
+                groundHeights[i] = groundHeightAt.accept(left + i * GAME_BLOCK_SIZE);
+            }
+            chunk.setGround(groundHeights);
+        }
+    }
+
+    /*
+     * Runs one tick: exchanges the halos of the simulated chunks, then steps them, in parallel if there are
+     * enough of them.
+     */
+    private void tick() {
+        int count = 0;
+        for (WaterChunk chunk : loaded.values()) {
+            if (chunk.isActive()) {
+                if (count == active.length) {
+                    active = Arrays.copyOf(active, count * 2);
+                }
+                active[count++] = chunk;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            exchangeHalos(active[i]);
+        }
+        if (count >= PARALLEL_THRESHOLD) {
+            Arrays.stream(active, 0, count).parallel().forEach(STEP);
+        } else {
+            for (int i = 0; i < count; i++) {
+                active[i].step();
+            }
+        }
+    }
+
+    /*
+     * Copies the edge columns of a chunk's simulated neighbours into its halos. A missing or frozen
+     * neighbour acts as a wall.
+     */
+    private void exchangeHalos(WaterChunk chunk) {
+        WaterChunk left = loaded.get(chunk.getChunkIndex() - 1);
+        WaterChunk right = loaded.get(chunk.getChunkIndex() + 1);
+        chunk.hasNeighbour[0] = left != null && left.isActive();
+        chunk.hasNeighbour[1] = right != null && right.isActive();
+        if (chunk.hasNeighbour[0]) {
+            chunk.depth[0] = left.depth[WaterChunk.CELLS];
+            chunk.ground[0] = left.ground[WaterChunk.CELLS];
+        }
+        if (chunk.hasNeighbour[1]) {
+            chunk.depth[WaterChunk.CELLS + 1] = right.depth[1];
+            chunk.ground[WaterChunk.CELLS + 1] = right.ground[1];
+        }
+    }
+
+    /*
+     * Returns whether a spring feeds the column at the given x-coordinate.
+     */
+    private boolean hasSpringAt(int x) {
+        int z = x * 0x9E3779B9 ^ seed;
+        z = (z ^ (z >>> 15)) * 0x2C1B3C6D;
+        z = z ^ (z >>> 12);
+        return (z & 0x7FFFFFFF) / (float) Integer.MAX_VALUE < SPRING_CHANCE;
+    }
+
+    /*
+     * Starts simulating a chunk that was added to the game.
+     */
+    void register(WaterChunk chunk) {
+        loaded.put(chunk.getChunkIndex(), chunk);
+    }
+
+    /*
+     * Stops simulating a chunk that was removed from the game, keeping its water if it has any.
+     */
+    void unregister(WaterChunk chunk) {
+        loaded.remove(chunk.getChunkIndex());
+        if (chunk.hasWater()) {
+            frozen.put(chunk.getChunkIndex(), chunk.copyState());
+            frozenLastUsedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Registers the saved chunk states and the frozen water of unloaded chunks with a memory budget.
+     * @param budget The memory budget.
+     */
+    @Override
+    public void registerMemory(MemoryBudget budget) {
+        super.registerMemory(budget);
+        budget.register(this);
+    }
+
+    @Override
+    public String getName() {
+        return "Water frozen chunks";
+    }
+
+    @Override
+    public long retainedBytes() {
+        return frozen.size() * FROZEN_CHUNK_BYTES;
+    }
+
+    /**
+     * An evicted chunk's water is generated again, with its dips filled, when it is loaded.
+     * @return The relative cost of evicting a byte.
+     */
+    @Override
+    public float evictionCost() {
+        return 2;
+    }
+
+    @Override
+    public long lastUsedNanos() {
+        return frozenLastUsedNanos;
+    }
+
+    /**
+     * Forgets the water of the chunks frozen longest ago.
+     * @param bytes The amount of memory to free, in bytes.
+     * @return The amount freed, in bytes.
+     */
+    @Override
+    public long trim(long bytes) {
+        long freed = 0;
+        Iterator<float[]> oldestFirst = frozen.values().iterator();
+        while (freed < bytes && oldestFirst.hasNext()) {
+            oldestFirst.next();
+            oldestFirst.remove();
+            freed += FROZEN_CHUNK_BYTES;
+        }
+        return freed;
+    }
+}
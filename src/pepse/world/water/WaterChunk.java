@@ -0,0 +1,233 @@
+package pepse.world.water;
+
+import danogl.GameObject;
+import danogl.collisions.Layer;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
+import pepse.world.infiniteworld.ChunkLoadable;
+import pepse.world.infiniteworld.DetailLevel;
+
+import java.awt.*;
+import java.util.function.BiConsumer;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+import static pepse.world.infiniteworld.Scrollable.CHUNK_SIZE;
+
+/**
+ * The water of one chunk: the depth of water standing on each block column, stored in primitive arrays
+ * with one halo cell on each side holding a copy of the neighbouring chunk's edge column, so that chunks
+ * can be stepped independently (and in parallel) once the halos are exchanged.
+ * The whole chunk's water is drawn by a single game object, straight from the depth array.
+ * @author Aron Isaacs
+ */
+public class WaterChunk implements ChunkLoadable {
+    /** The number of simulated columns in a chunk. */
+    public static final int CELLS = CHUNK_SIZE / GAME_BLOCK_SIZE;
+    /** The deepest water a column can hold, in pixels. */
+    public static final float MAX_DEPTH = GAME_BLOCK_SIZE * 4;
+
+    private static final Palette.Shade WATER_SHADE = Palette.rectangle(new Color(54, 112, 190, 170));
+    private static final Palette.Shade SURFACE_SHADE = Palette.rectangle(new Color(150, 200, 240, 200));
+    // The share of the difference in water surface height that flows between two columns per tick.
+    // At most a quarter keeps neighbouring columns from overshooting each other.
+    private static final float FLOW_RATE = 0.25f;
+
+    private final Water water;
+    private final int chunkIndex;
+    // Indices 1..CELLS are the chunk's columns; 0 and CELLS + 1 are the halos.
+    final float[] depth = new float[CELLS + 2];
+    final float[] ground = new float[CELLS + 2];
+    final boolean[] hasNeighbour = new boolean[2];
+    private final float[] springs;
+    // The flow across each edge, from the cell on its left to the cell on its right: edge e lies between
+    // cells e and e + 1.
+    private final float[] flux = new float[CELLS + 1];
+    private final GameObject surface;
+    private float top;
+    private boolean active = true;
+
+    /**
+     * Constructs the water of a chunk.
+     * @param water the water subsystem the chunk belongs to.
+     * @param chunkIndex the index of the chunk.
+     * @param groundHeights the ground height of each of the chunk's columns.
+     * @param depths the initial water depth of each of the chunk's columns.
+     * @param springs the water added to each of the chunk's columns per tick.
+     */
+    WaterChunk(Water water, int chunkIndex, float[] groundHeights, float[] depths, float[] springs) {
+        this.water = water;
+        this.chunkIndex = chunkIndex;
+        this.springs = springs;
+        System.arraycopy(groundHeights, 0, ground, 1, CELLS);
+        System.arraycopy(depths, 0, depth, 1, CELLS);
+        this.surface = new GameObject(Vector2.ZERO, Vector2.ZERO, new SurfaceRenderable()) {
+            @Override
+            public boolean shouldCollideWith(GameObject other) {
+                return false;
+            }
+        };
+        surface.setTag("water");
+        fitSurface();
+    }
+
+    /*
+     * Sizes the water surface object to span every column, from the deepest water the highest column can
+     * hold down to the lowest ground.
+     */
+    private void fitSurface() {
+        float highestGround = Float.MAX_VALUE;
+        float lowestGround = -Float.MAX_VALUE;
+        for (int i = 1; i <= CELLS; i++) {
+            highestGround = Math.min(highestGround, ground[i]);
+            lowestGround = Math.max(lowestGround, ground[i]);
+        }
+        top = highestGround - MAX_DEPTH;
+        surface.setTopLeftCorner(new Vector2(chunkIndex * CHUNK_SIZE, top));
+        surface.setDimensions(new Vector2(CHUNK_SIZE, lowestGround - top));
+    }
+
+    /*
+     * Moves the chunk's columns onto a new ground, after blocks were dug or placed. Water above a placed
+     * block is pushed out of the column; a dug column keeps its water, which then flows into the pit with
+     * that of its neighbours.
+     */
+    void setGround(float[] groundHeights) {
+        for (int i = 0; i < CELLS; i++) {
+            depth[i + 1] = depthOnGround(ground[i + 1], depth[i + 1], groundHeights[i]);
+            ground[i + 1] = groundHeights[i];
+        }
+        fitSurface();
+    }
+
+    /*
+     * Returns the depth left of water standing on a column whose ground moved: a rising ground takes the
+     * place of the water it rises into, and a sinking ground leaves the water as deep as it was.
+     */
+    static float depthOnGround(float oldGround, float depth, float newGround) {
+        // The ground height grows downwards, so ground that rose has a smaller y.
+        return Math.max(0, depth - Math.max(0, oldGround - newGround));
+    }
+
+    /**
+     * Returns the index of the chunk.
+     * @return the chunk index.
+     */
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    /**
+     * Returns whether the chunk is simulated. Chunks far from every viewer are frozen as they are.
+     * @return true if the chunk is simulated.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /*
+     * Advances the chunk by one tick, after its halos were filled: computes the flow across every edge from
+     * the current depths, then applies it, so the result does not depend on the order of the columns.
+     * Both chunks sharing a border compute the same flow across it from the same values, so water is
+     * conserved across chunks without any synchronisation.
+     */
+    void step() {
+        for (int e = 0; e <= CELLS; e++) {
+            boolean border = e == 0 || e == CELLS;
+            if (border && !hasNeighbour[e == 0 ? 0 : 1]) {
+                flux[e] = 0;
+                continue;
+            }
+            // The ground height grows downwards, so the higher surface is the one with the smaller y.
+            float flow = FLOW_RATE * ((ground[e + 1] - depth[e + 1]) - (ground[e] - depth[e]));
+            // A column gives away at most half its water on each side, so it never goes below zero.
+            flux[e] = flow > 0 ? Math.min(flow, depth[e] / 2) : Math.max(flow, -depth[e + 1] / 2);
+        }
+        for (int i = 1; i <= CELLS; i++) {
+            float next = depth[i] + flux[i - 1] - flux[i] + springs[i - 1];
+            if (next < Water.SHALLOW_DEPTH) {
+                next -= Water.EVAPORATION;
+            }
+            depth[i] = Math.max(0, Math.min(MAX_DEPTH, next));
+        }
+    }
+
+    /*
+     * Returns whether any of the chunk's columns holds water.
+     */
+    boolean hasWater() {
+        for (int i = 1; i <= CELLS; i++) {
+            if (depth[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Copies the depths of the chunk's columns, followed by the ground heights they stand on.
+     */
+    float[] copyState() {
+        float[] copy = new float[2 * CELLS];
+        System.arraycopy(depth, 1, copy, 0, CELLS);
+        System.arraycopy(ground, 1, copy, CELLS, CELLS);
+        return copy;
+    }
+
+    /**
+     * Adds the water surface to the game and starts simulating the chunk.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     */
+    @Override
+    public void addToGame(BiConsumer<GameObject, Integer> addGameObject) {
+        addGameObject.accept(surface, Layer.BACKGROUND);
+        water.register(this);
+    }
+
+    /**
+     * Removes the water surface from the game, and freezes the chunk's water until it is loaded again.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    @Override
+    public void destroy(BiConsumer<GameObject, Integer> destroyGameObject) {
+        destroyGameObject.accept(surface, Layer.BACKGROUND);
+        water.unregister(this);
+    }
+
+    /**
+     * Simulates the chunk unless it is far from every viewer.
+     * @param level The new level of detail.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     * @param destroyGameObject A BiConsumer to remove game objects from the game.
+     */
+    @Override
+    public void setDetailLevel(DetailLevel level,
+                               BiConsumer<GameObject, Integer> addGameObject,
+                               BiConsumer<GameObject, Integer> destroyGameObject) {
+        active = level != DetailLevel.FAR;
+    }
+
+    /*
+     * Draws the water of every column of the chunk, with a lighter line along its surface.
+     */
+    private class SurfaceRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            int left = Math.round(topLeftCorner.x());
+            for (int i = 1; i <= CELLS; i++) {
+                int height = Math.round(depth[i]);
+                if (height <= 0) {
+                    continue;
+                }
+                int x = left + (i - 1) * GAME_BLOCK_SIZE;
+                int y = Math.round(topLeftCorner.y() + ground[i] - top) - height;
+                g.setColor(WATER_SHADE.getColor());
+                g.fillRect(x, y, GAME_BLOCK_SIZE, height);
+                g.setColor(SURFACE_SHADE.getColor());
+                g.drawLine(x, y, x + GAME_BLOCK_SIZE - 1, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package pepse.world.weather;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.daynight.Palette;
+import pepse.world.infiniteworld.GroundHeightAt;
+import pepse.world.infiniteworld.GroundHeightCache;
+
+import java.awt.*;
+
+import static pepse.PepseGameManager.GAME_BLOCK_SIZE;
+
+/**
+ * A pool of falling particles, such as raindrops or snowflakes, around the screen.
+ * The particles are not game objects: their state is kept in preallocated parallel primitive arrays, with the
+ * live particles packed at the front, and they are all moved in one loop per frame. A particle that reaches
+ * the ground height map (the surface, dug and placed blocks included, cached per column until
+ * {@link #groundChanged()}) settles there for a while and then returns to the pool; one that drifts too far
+ * from the screen returns at once. The whole system is drawn by a single renderable covering the screen, in
+ * its palette shade, so once the pool is full no memory is allocated.
+ * @author Aron Isaacs
+ */
+public class ParticleSystem {
+    // Opaque, since translucent shapes are blended through a slow path that allocates on every draw.
+    private static final Color RAIN_COLOR = new Color(170, 190, 230);
+    private static final Color SNOW_COLOR = new Color(245, 245, 255);
+    private static final float RAIN_FALL_SPEED = 900; // pixels per second
+    private static final float RAIN_DRIFT = -120;
+    private static final float RAIN_SETTLE_SECONDS = 0.08f;
+    // The length of a raindrop's streak, as the distance it falls in this time.
+    private static final float RAIN_STREAK_SECONDS = 0.015f;
+    private static final float SNOW_FALL_SPEED = 70;
+    private static final float SNOW_DRIFT = 15;
+    private static final float SNOW_SWAY = 25;
+    private static final float SNOW_SWAY_FREQUENCY = 0.03f; // radians per pixel fallen
+    private static final float SNOW_SETTLE_SECONDS = 3;
+    private static final int SNOW_FLAKE_SIZE = 3;
+    // The fraction by which the speed of a particle may differ from the speed of its kind.
+    private static final float SPEED_VARIATION = 0.25f;
+    // The fraction of the screen's width particles are spawned and kept beyond each of its sides, since
+    // they drift sideways as they fall.
+    private static final float MARGIN_RATIO = 0.25f;
+
+    private final Palette.Shade shade;
+    private final float fallSpeed;
+    private final float drift;
+    private final float sway;
+    private final float settleSeconds;
+    private final boolean streaks;
+    private final GroundHeightCache heights;
+    private final GameObject view;
+    // Particle i is at index i of every array; the first count entries are live.
+    private final float[] x;
+    private final float[] y;
+    private final float[] vx;
+    private final float[] vy;
+    private final float[] swayPhase;
+    // The time a particle has lain on the ground, or a negative value while it is falling.
+    private final float[] settledFor;
+    private int count;
+    private float spawnRate;
+    private float spawnDebt;
+    private int randomState;
+    // The screen, in world coordinates, as of the last update.
+    private float viewMinX;
+    private float viewTop;
+
+    /*
+     * Constructs a particle system of the given kind.
+     */
+    private ParticleSystem(int capacity, Color color, float fallSpeed, float drift, float sway,
+                           float settleSeconds, boolean streaks, GroundHeightAt groundHeightAt,
+                           Vector2 windowDimensions, int seed) {
+        this.shade = Palette.rectangle(color);
+        this.fallSpeed = fallSpeed;
+        this.drift = drift;
+        this.sway = sway;
+        this.settleSeconds = settleSeconds;
+        this.streaks = streaks;
+        float reach = windowDimensions.x() * (1 + 4 * MARGIN_RATIO);
+        this.heights = new GroundHeightCache(groundHeightAt, (int) (reach / GAME_BLOCK_SIZE) + 2);
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        swayPhase = new float[capacity];
+        settledFor = new float[capacity];
+        randomState = seed == 0 ? 1 : seed;
+        view = new GameObject(Vector2.ZERO, windowDimensions, new ParticlesRenderable());
+        view.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        view.setTag("particles");
+    }
+
+    /**
+     * Creates a pool of raindrops, falling fast at a slant and drawn as short streaks.
+     * @param capacity the most raindrops alive at once.
+     * @param groundHeightAt a function that provides the surface height at a given x-coordinate.
+     * @param windowDimensions the dimensions of the screen.
+     * @param seed the seed of the particles' random variation.
+     * @return the particle system.
+     */
+    public static ParticleSystem rain(int capacity, GroundHeightAt groundHeightAt, Vector2 windowDimensions,
+                                      int seed) {
+        return new ParticleSystem(capacity, RAIN_COLOR, RAIN_FALL_SPEED, RAIN_DRIFT, 0, RAIN_SETTLE_SECONDS,
+                true, groundHeightAt, windowDimensions, seed);
+    }
+
+    /**
+     * Creates a pool of snowflakes, drifting down slowly, swaying, and lying on the ground for a while.
+     * @param capacity the most snowflakes alive at once.
+     * @param groundHeightAt a function that provides the surface height at a given x-coordinate.
+     * @param windowDimensions the dimensions of the screen.
+     * @param seed the seed of the particles' random variation.
+     * @return the particle system.
+     */
+    public static ParticleSystem snow(int capacity, GroundHeightAt groundHeightAt, Vector2 windowDimensions,
+                                      int seed) {
+        return new ParticleSystem(capacity, SNOW_COLOR, SNOW_FALL_SPEED, SNOW_DRIFT, SNOW_SWAY,
+                SNOW_SETTLE_SECONDS, false, groundHeightAt, windowDimensions, seed);
+    }
+
+    /**
+     * Sets how many particles are spawned per second.
+     * @param particlesPerSecond the spawn rate; 0 lets the remaining particles fall without new ones.
+     */
+    public void setSpawnRate(float particlesPerSecond) {
+        spawnRate = Math.max(0, particlesPerSecond);
+    }
+
+    /**
+     * Returns how many particles are spawned per second.
+     * @return the spawn rate.
+     */
+    public float getSpawnRate() {
+        return spawnRate;
+    }
+
+    /**
+     * Returns the number of live particles.
+     * @return the number of particles falling or lying on the ground.
+     */
+    public int liveCount() {
+        return count;
+    }
+
+    /**
+     * Makes the particles land on the current ground after it was edited.
+     */
+    public void groundChanged() {
+        heights.invalidate();
+    }
+
+    /**
+     * Returns the game object the particles are drawn by, to be added to the game once.
+     * @return the game object, in camera coordinates and covering the screen.
+     */
+    public GameObject getView() {
+        return view;
+    }
+
+    /**
+     * Spawns new particles above the screen, and moves, settles and retires the live ones.
+     * @param deltaTime the time, in seconds, since the last update.
+     * @param viewMinX the left edge of the screen, in world coordinates.
+     * @param viewTop the top edge of the screen, in world coordinates.
+     */
+    public void update(float deltaTime, float viewMinX, float viewTop) {
+        this.viewMinX = viewMinX;
+        this.viewTop = viewTop;
+        float width = view.getDimensions().x();
+        float margin = width * MARGIN_RATIO;
+        float minX = viewMinX - 2 * margin;
+        float maxX = viewMinX + width + 2 * margin;
+        heights.cover(minX, maxX);
+        spawn(deltaTime, viewMinX - margin, width + 2 * margin);
+        int i = 0;
+        while (i < count) {
+            if (settledFor[i] >= 0) {
+                settledFor[i] += deltaTime;
+                if (settledFor[i] >= settleSeconds) {
+                    retire(i);
+                } else {
+                    i++;
+                }
+                continue;
+            }
+            float swayVelocity = sway == 0 ? 0 : sway * (float) Math.sin(y[i] * SNOW_SWAY_FREQUENCY + swayPhase[i]);
+            x[i] += (vx[i] + swayVelocity) * deltaTime;
+            y[i] += vy[i] * deltaTime;
+            float ground = heights.heightAt(x[i]);
+            if (x[i] < minX || x[i] > maxX || Float.isNaN(ground)) {
+                retire(i);
+                continue;
+            }
+            if (y[i] >= ground) {
+                y[i] = ground;
+                settledFor[i] = 0;
+            }
+            i++;
+        }
+    }
+
+    /*
+     * Spawns the particles due since the last update along the top of the screen, as long as the pool has
+     * room; particles due while it is full are skipped.
+     */
+    private void spawn(float deltaTime, float left, float width) {
+        spawnDebt += spawnRate * deltaTime;
+        while (spawnDebt >= 1 && count < x.length) {
+            float speed = 1 + (nextFloat() * 2 - 1) * SPEED_VARIATION;
+            x[count] = left + nextFloat() * width;
+            y[count] = viewTop - nextFloat() * fallSpeed * 0.1f;
+            vx[count] = drift * speed;
+            vy[count] = fallSpeed * speed;
+            swayPhase[count] = nextFloat() * (float) (2 * Math.PI);
+            settledFor[count] = -1;
+            count++;
+            spawnDebt--;
+        }
+        spawnDebt -= (float) Math.floor(spawnDebt);
+    }
+
+    /*
+     * Returns a particle to the pool by moving the last live particle into its place.
+     */
+    private void retire(int i) {
+        count--;
+        x[i] = x[count];
+        y[i] = y[count];
+        vx[i] = vx[count];
+        vy[i] = vy[count];
+        swayPhase[i] = swayPhase[count];
+        settledFor[i] = settledFor[count];
+    }
+
+    /*
+     * Returns a pseudo-random number in [0, 1) from the system's xorshift generator.
+     */
+    private float nextFloat() {
+        int r = randomState;
+        r ^= r << 13;
+        r ^= r >>> 17;
+        r ^= r << 5;
+        randomState = r;
+        return (r >>> 8) / (float) (1 << 24);
+    }
+
+    /*
+     * Draws every live particle, relative to the screen as of the last update.
+     */
+    private class ParticlesRenderable implements Renderable {
+        @Override
+        public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions,
+                           double degreesCounterClockwise, boolean isFlippedHorizontally,
+                           boolean isFlippedVertically, double opaqueness) {
+            float offsetX = topLeftCorner.x() - viewMinX;
+            float offsetY = topLeftCorner.y() - viewTop;
+            g.setColor(shade.getColor());
+            for (int i = 0; i < count; i++) {
+                int px = Math.round(x[i] + offsetX);
+                int py = Math.round(y[i] + offsetY);
+                if (!streaks) {
+                    g.fillRect(px - SNOW_FLAKE_SIZE / 2, py - SNOW_FLAKE_SIZE + 1, SNOW_FLAKE_SIZE, SNOW_FLAKE_SIZE);
+                } else if (settledFor[i] >= 0) {
+                    // A splash where the drop hit the ground.
+                    g.drawLine(px - 2, py - 1, px + 2, py - 1);
+                } else {
+                    g.drawLine(px, py, Math.round(px - vx[i] * RAIN_STREAK_SECONDS),
+                            Math.round(py - vy[i] * RAIN_STREAK_SECONDS));
+                }
+            }
+        }
+    }
+}
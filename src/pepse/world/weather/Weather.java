@@ -0,0 +1,127 @@
+package pepse.world.weather;
+
+import danogl.GameObject;
+import danogl.collisions.Layer;
+import danogl.util.Vector2;
+import pepse.world.daynight.DayPhase;
+import pepse.world.events.WorldEvents;
+import pepse.world.infiniteworld.GroundHeightAt;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Rain and snow, changing with the day-night cycle.
+ * Whenever the cycle enters a new phase (published on the world's event bus), the weather of the phase is
+ * drawn from the world seed: clear, or precipitation of some intensity, which falls as rain by day and
+ * dusk and as snow by night and dawn. The spawn rates ease towards the new weather instead of switching
+ * at once, and particles already falling finish their fall.
+ * @author Aron Isaacs
+ */
+public class Weather {
+    /** The layer the weather is drawn in: in front of the world. */
+    public static final int LAYER = Layer.FOREGROUND;
+
+    private static final int RAIN_CAPACITY = 4000;
+    private static final int SNOW_CAPACITY = 3000;
+    private static final float MAX_RAIN_RATE = 1500; // drops per second
+    private static final float MAX_SNOW_RATE = 300; // flakes per second
+    private static final float CHANCE_OF_PRECIPITATION = 0.4f;
+    private static final float MIN_INTENSITY = 0.3f;
+    // The time, in seconds, the spawn rates take to go from nothing to their maximum.
+    private static final float RAMP_SECONDS = 3;
+
+    private final ParticleSystem rain;
+    private final ParticleSystem snow;
+    private float rainTarget;
+    private float snowTarget;
+    private int randomState;
+
+    /**
+     * Creates the weather, clear until the first day phase is published.
+     * @param seed the world seed, which determines the weather of every phase.
+     * @param groundHeightAt a function that provides the ground height at a given x-coordinate.
+     * @param windowDimensions the dimensions of the screen.
+     * @param events the event bus the day phases are published on.
+     */
+    public Weather(int seed, GroundHeightAt groundHeightAt, Vector2 windowDimensions, WorldEvents events) {
+        rain = ParticleSystem.rain(RAIN_CAPACITY, groundHeightAt, windowDimensions, seed * 31 + 1);
+        snow = ParticleSystem.snow(SNOW_CAPACITY, groundHeightAt, windowDimensions, seed * 31 + 2);
+        randomState = seed * 0x9E3779B9 ^ 0x5BD1E995;
+        if (randomState == 0) {
+            randomState = 1;
+        }
+        events.onDayPhaseChanged(this::changeWeather);
+    }
+
+    /**
+     * Adds the game objects the weather is drawn by to the game.
+     * @param addGameObject A BiConsumer to add game objects to the game.
+     */
+    public void addToGame(BiConsumer<GameObject, Integer> addGameObject) {
+        addGameObject.accept(rain.getView(), LAYER);
+        addGameObject.accept(snow.getView(), LAYER);
+    }
+
+    /**
+     * Eases the spawn rates towards the current weather, and updates the particles around the screen.
+     * @param deltaTime the time, in seconds, since the last update.
+     * @param viewMinX the left edge of the screen, in world coordinates.
+     * @param viewTop the top edge of the screen, in world coordinates.
+     */
+    public void update(float deltaTime, float viewMinX, float viewTop) {
+        ease(rain, rainTarget, MAX_RAIN_RATE, deltaTime);
+        ease(snow, snowTarget, MAX_SNOW_RATE, deltaTime);
+        rain.update(deltaTime, viewMinX, viewTop);
+        snow.update(deltaTime, viewMinX, viewTop);
+    }
+
+    /**
+     * Makes the rain and snow land on the current ground after it was edited.
+     */
+    public void groundChanged() {
+        rain.groundChanged();
+        snow.groundChanged();
+    }
+
+    /**
+     * Returns the number of raindrops and snowflakes alive.
+     * @return the number of particles.
+     */
+    public int particleCount() {
+        return rain.liveCount() + snow.liveCount();
+    }
+
+    /*
+     * Draws the weather of a new day phase.
+     */
+    private void changeWeather(DayPhase phase) {
+        float intensity = 0;
+        if (nextFloat() < CHANCE_OF_PRECIPITATION) {
+            intensity = MIN_INTENSITY + (1 - MIN_INTENSITY) * nextFloat();
+        }
+        boolean cold = phase == DayPhase.NIGHT || phase == DayPhase.DAWN;
+        rainTarget = cold ? 0 : intensity * MAX_RAIN_RATE;
+        snowTarget = cold ? intensity * MAX_SNOW_RATE : 0;
+    }
+
+    /*
+     * Moves a system's spawn rate towards its target, by at most the part of its range allowed in the time.
+     */
+    private static void ease(ParticleSystem system, float target, float maxRate, float deltaTime) {
+        float step = maxRate * deltaTime / RAMP_SECONDS;
+        float rate = system.getSpawnRate();
+        system.setSpawnRate(rate < target ? Math.min(target, rate + step) : Math.max(target, rate - step));
+    }
+
+    /*
+     * Returns a pseudo-random number in [0, 1) from the weather's xorshift generator.
+     */
+    private float nextFloat() {
+        int r = randomState;
+        r ^= r << 13;
+        r ^= r >>> 17;
+        r ^= r << 5;
+        randomState = r;
+        return (r >>> 8) / (float) (1 << 24);
+    }
+}